@@ -0,0 +1,48 @@
+/**
+ * A single benchmark run by {@link BenchmarkRunner}. <p>
+ * {@link Benchmark#run()} is called over and over for a fixed length of time and the average time per call is
+ * reported. Anything that should not be timed goes in the setup methods.
+ * @author Lyeeedar
+ *
+ */
+public abstract class Benchmark {
+
+	/**
+	 * The name of the code being measured, e.g. Entity.checkCollision
+	 */
+	final String name;
+
+	/**
+	 * The fixture or parameter the benchmark is run with, e.g. the level name
+	 */
+	final String param;
+
+	public Benchmark(String name, String param)
+	{
+		this.name = name;
+		this.param = param;
+	}
+
+	/**
+	 * Called once before any iterations are run
+	 */
+	public void setupTrial()
+	{
+
+	}
+
+	/**
+	 * Called before every iteration (warmup and measured). Use to reset any state the benchmark changes
+	 */
+	public void setupIteration()
+	{
+
+	}
+
+	/**
+	 * Runs a single operation. The value returned is consumed by the runner so the work cannot be optimised away.
+	 * @return
+	 */
+	public abstract long run();
+
+}
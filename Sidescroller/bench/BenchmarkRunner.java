@@ -0,0 +1,178 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+/**
+ * Class that runs the benchmarks in {@link SimulationBenchmarks} and prints the average time each operation took. <p>
+ * Each benchmark is warmed up first so the JIT has compiled it, then measured over several fixed length iterations.
+ * Must be run from the same directory as the game (so the Data folder can be found). <p>
+ * Usage: BenchmarkRunner [-wi warmupIterations] [-i iterations] [-t iterationMillis] [-csv file] [filter] <p>
+ * Only benchmarks whose name or parameter contains the filter are run. If a csv file is given the results are appended
+ * to it, so runs from before and after a change can be compared.
+ * @author Lyeeedar
+ *
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * Where the results of every operation are written to stop the JIT removing the work
+	 */
+	public static volatile long sink;
+
+	int warmupIterations = 5;
+	int iterations = 10;
+	long iterationTime = 500000000L;
+
+	public static void main(String[] args)
+	{
+		BenchmarkRunner runner = new BenchmarkRunner();
+
+		String filter = null;
+		String csv = null;
+
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-wi"))
+				runner.warmupIterations = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-i"))
+				runner.iterations = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-t"))
+				runner.iterationTime = Long.parseLong(args[++i]) * 1000000L;
+			else if (args[i].equals("-csv"))
+				csv = args[++i];
+			else
+				filter = args[i];
+		}
+
+		HeadlessRunner.init();
+
+		ArrayList<Benchmark> benchmarks = SimulationBenchmarks.create();
+
+		PrintWriter out = null;
+		if (csv != null)
+		{
+			try {
+				out = new PrintWriter(new FileWriter(csv, true));
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+
+		System.out.println(String.format("%-40s %-16s %14s %12s", "Benchmark", "Param", "ns/op", "error"));
+
+		long timestamp = System.currentTimeMillis();
+
+		for (Benchmark b : benchmarks)
+		{
+			if ((filter != null) && (!b.name.contains(filter)) && (!b.param.contains(filter)))
+				continue;
+
+			double[] result = runner.measure(b);
+
+			if (result == null)
+			{
+				System.out.println(String.format("%-40s %-16s %14s", b.name, b.param, "skipped"));
+				continue;
+			}
+
+			System.out.println(String.format("%-40s %-16s %14.1f %12.1f", b.name, b.param, result[0], result[1]));
+
+			if (out != null)
+			{
+				out.println(timestamp + "," + b.name + "," + b.param + "," + result[0] + "," + result[1]);
+				out.flush();
+			}
+		}
+
+		if (out != null)
+			out.close();
+
+		System.exit(0);
+	}
+
+	/**
+	 * Method to run the benchmark and return the mean time per operation (in ns) and the error (standard deviation
+	 * between iterations). Returns null if the benchmark could not be set up.
+	 * @param b
+	 * @return
+	 */
+	public double[] measure(Benchmark b)
+	{
+		try {
+			b.setupTrial();
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
+
+		// The number of operations run between checks of the clock. Worked out during warmup so that checking the
+		// time does not add to short operations
+		long batch = 1;
+
+		for (int i = 0; i < warmupIterations; i++)
+		{
+			b.setupIteration();
+
+			long[] result = iteration(b, batch);
+
+			batch = Math.max(1, result[0] / 1000);
+		}
+
+		double[] times = new double[iterations];
+		for (int i = 0; i < iterations; i++)
+		{
+			b.setupIteration();
+
+			long[] result = iteration(b, batch);
+
+			times[i] = (double) result[1] / result[0];
+		}
+
+		double mean = 0;
+		for (double t : times)
+			mean += t;
+		mean /= times.length;
+
+		double variance = 0;
+		for (double t : times)
+			variance += (t - mean) * (t - mean);
+		variance /= Math.max(1, times.length - 1);
+
+		return new double[]{mean, Math.sqrt(variance)};
+	}
+
+	/**
+	 * Method to run the benchmark for {@link BenchmarkRunner#iterationTime}. Returns the number of operations run
+	 * and the time taken (in ns).
+	 * @param b
+	 * @param batch
+	 * @return
+	 */
+	private long[] iteration(Benchmark b, long batch)
+	{
+		long total = 0;
+		long ops = 0;
+
+		long start = System.nanoTime();
+		long end = start + iterationTime;
+		long now;
+
+		do
+		{
+			for (long i = 0; i < batch; i++)
+			{
+				total += b.run();
+			}
+
+			ops += batch;
+			now = System.nanoTime();
+		} while (now < end);
+
+		sink = total;
+
+		return new long[]{ops, now - start};
+	}
+
+}
@@ -0,0 +1,465 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The benchmarks for the hot paths of the game simulation, run by {@link BenchmarkRunner}. <p>
+ * The fixtures are built from the levels shipped with the game. Unless a benchmark is measuring the collision map
+ * itself the map is fully preloaded first, so the numbers do not depend on which pixels earlier benchmarks touched.
+ * @author Lyeeedar
+ *
+ */
+public class SimulationBenchmarks {
+
+	/**
+	 * The shipped levels used as fixtures. Level data file, level image folder
+	 */
+	static final String[][] levels = {
+		{"Tutorial", "Tutorial"},
+		{"Tutorial2", "Tutorial2"},
+		{"Level1", "level1"},
+		{"level2", "level2"}
+	};
+
+	/**
+	 * The number of entities used for the entity collision benchmarks
+	 */
+	static final int[] entityCounts = {10, 100, 1000, 5000};
+
+	/**
+	 * The number of enemies used for the crowded AI benchmarks
+	 */
+	static final int crowdSize = 200;
+
+	/**
+	 * The level images currently loaded into {@link Main#gamedata}
+	 */
+	private static String loadedImages = null;
+
+	/**
+	 * Method to create every benchmark
+	 * @return
+	 */
+	public static ArrayList<Benchmark> create()
+	{
+		ArrayList<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+		for (String[] level : levels)
+		{
+			benchmarks.add(checkCollision(level[0], level[1]));
+		}
+		for (String[] level : levels)
+		{
+			benchmarks.add(bresenham(level[0], level[1]));
+		}
+		for (String[] level : levels)
+		{
+			benchmarks.add(rayCast(level[0], level[1]));
+		}
+		for (String[] level : levels)
+		{
+			benchmarks.add(enemyRayCast(level[0], level[1]));
+		}
+		for (int count : entityCounts)
+		{
+			benchmarks.add(collideEntities(count, false));
+		}
+		for (int count : entityCounts)
+		{
+			benchmarks.add(collideEntities(count, true));
+		}
+		for (String[] level : levels)
+		{
+			benchmarks.add(mapCheckCollision(level[0], level[1], true));
+			benchmarks.add(mapCheckCollision(level[0], level[1], false));
+		}
+		for (String[] level : levels)
+		{
+			benchmarks.add(evaluateAI(level[0], level[1]));
+		}
+		benchmarks.add(evaluateAICrowd(crowdSize, false));
+		benchmarks.add(evaluateAICrowd(crowdSize, true));
+
+		return benchmarks;
+	}
+
+	// ----------- Fixtures ----------- //
+
+	/**
+	 * Method to load the given level into {@link Main#gamedata}. The images are only loaded if they are not already,
+	 * but the entities are always reloaded from the level data.
+	 * @param data
+	 * @param images
+	 */
+	static void useLevel(String data, String images)
+	{
+		GameData gamedata = Main.gamedata;
+
+		Level level = Level.load(data+".data");
+		if (level == null)
+			throw new IllegalStateException("Could not load level " + data);
+
+		HashMap<String, Entity> entities = level.gameEntities;
+
+		for (Map.Entry<String, Entity> entry : entities.entrySet())
+		{
+			Entity ent = entry.getValue();
+			ent.processSpritesheet();
+			ent.infoText = new ArrayList<SystemMessage>();
+		}
+
+		// Levels that are only reached from another level have no player of their own
+		if (!entities.containsKey("Player"))
+		{
+			Entity e = new Entity("Player", 80, 8, 8, new int[]{20, 20, 0}, 8, "male.png", new int[]{46, 18, 27, 69}, new boolean[]{true, true, false, false}, null);
+			e.setFaction("Player");
+			entities.put("Player", e);
+		}
+
+		gamedata.setGameEntities(entities);
+		gamedata.levelName = level.name;
+		gamedata.transformAllowed = level.transformAllowed;
+
+		if (!images.equals(loadedImages))
+		{
+			gamedata.loadLevelImages(images);
+
+			if (gamedata.getBackground()[3] == null)
+				throw new IllegalStateException("Could not load images for level " + images);
+
+			loadedImages = images;
+		}
+	}
+
+	/**
+	 * Returns an array of random positions inside the level (seeded so every run uses the same positions)
+	 * @param count
+	 * @param seed
+	 * @return
+	 */
+	static int[][] randomPositions(int count, long seed)
+	{
+		Random ran = new Random(seed);
+
+		int[][] positions = new int[count][];
+		for (int i = 0; i < count; i++)
+		{
+			positions[i] = new int[]{ran.nextInt(GameData.levelSize[0]), ran.nextInt(GameData.levelSize[1]), ran.nextInt(2)};
+		}
+
+		return positions;
+	}
+
+	/**
+	 * Returns an array of random positions within the given distance of the given position
+	 * @param centre
+	 * @param distance
+	 * @param count
+	 * @param seed
+	 * @return
+	 */
+	static int[][] randomPositionsAround(int[] centre, int distance, int count, long seed)
+	{
+		Random ran = new Random(seed);
+
+		int[][] positions = new int[count][];
+		for (int i = 0; i < count; i++)
+		{
+			int x = centre[0] + ran.nextInt(2*distance) - distance;
+			int y = centre[1] + ran.nextInt(2*distance) - distance;
+
+			x = Math.max(0, Math.min(x, GameData.levelSize[0]-1));
+			y = Math.max(0, Math.min(y, GameData.levelSize[1]-1));
+
+			positions[i] = new int[]{x, y, ran.nextInt(2)};
+		}
+
+		return positions;
+	}
+
+	// ----------- Fixtures ----------- //
+
+	/**
+	 * Entity.checkCollision for the player at random positions in the level
+	 */
+	static Benchmark checkCollision(final String data, final String images)
+	{
+		return new Benchmark("Entity.checkCollision", data) {
+			Entity player;
+			int[][] positions;
+			int index = 0;
+
+			@Override
+			public void setupTrial()
+			{
+				useLevel(data, images);
+				Main.gamedata.fillCollisionMap();
+
+				player = Main.gamedata.getEntities().get("Player");
+				positions = randomPositions(1024, 1);
+			}
+
+			@Override
+			public long run()
+			{
+				index = (index + 1) & 1023;
+				return (player.checkCollision(positions[index]) == null) ? 0 : 1;
+			}
+		};
+	}
+
+	/**
+	 * Entity.BresenhamsLineAlgorithm for lines of up to 250 pixels (the enemy sight range)
+	 */
+	static Benchmark bresenham(final String data, final String images)
+	{
+		return new Benchmark("Entity.BresenhamsLineAlgorithm", data) {
+			Entity player;
+			int[][] targets;
+			int index = 0;
+
+			@Override
+			public void setupTrial()
+			{
+				useLevel(data, images);
+
+				player = Main.gamedata.getEntities().get("Player");
+				targets = randomPositionsAround(player.getPos(), 250, 1024, 2);
+			}
+
+			@Override
+			public long run()
+			{
+				index = (index + 1) & 1023;
+				int[] pos = player.getPos();
+				return player.BresenhamsLineAlgorithm(pos[0], pos[1], targets[index][0], targets[index][1]).size();
+			}
+		};
+	}
+
+	/**
+	 * Entity.rayCast from the player to random points up to 250 pixels away
+	 */
+	static Benchmark rayCast(final String data, final String images)
+	{
+		return new Benchmark("Entity.rayCast", data) {
+			Entity player;
+			int[][] targets;
+			int index = 0;
+
+			@Override
+			public void setupTrial()
+			{
+				useLevel(data, images);
+				Main.gamedata.fillCollisionMap();
+
+				player = Main.gamedata.getEntities().get("Player");
+				targets = randomPositionsAround(player.getPos(), 250, 1024, 3);
+			}
+
+			@Override
+			public long run()
+			{
+				index = (index + 1) & 1023;
+				return player.rayCast(targets[index]) ? 1 : 0;
+			}
+		};
+	}
+
+	/**
+	 * Entity.enemyRayCast for every entity in the level that belongs to a faction, in turn
+	 */
+	static Benchmark enemyRayCast(final String data, final String images)
+	{
+		return new Benchmark("Entity.enemyRayCast", data) {
+			ArrayList<Entity> casters = new ArrayList<Entity>();
+			int index = 0;
+
+			@Override
+			public void setupTrial()
+			{
+				useLevel(data, images);
+				Main.gamedata.fillCollisionMap();
+
+				EntityRegistry entities = Main.gamedata.getEntities();
+				for (int i = 0; i < entities.size(); i++)
+				{
+					Entity e = entities.get(i);
+					if (!e.getFaction().equals(""))
+						casters.add(e);
+				}
+			}
+
+			@Override
+			public long run()
+			{
+				index = (index + 1) % casters.size();
+				return (casters.get(index).enemyRayCast() == null) ? 0 : 1;
+			}
+		};
+	}
+
+	/**
+	 * Entity.collideEntitiesOther or Entity.collideEntitiesCombat for the player at random positions, with the given
+	 * number of entities spread over the Tutorial level. Half the entities are enemies, half are neutral.
+	 */
+	static Benchmark collideEntities(final int count, final boolean combat)
+	{
+		return new Benchmark(combat ? "Entity.collideEntitiesCombat" : "Entity.collideEntitiesOther", count + " entities") {
+			Entity player;
+			int[][] positions;
+			int index = 0;
+
+			@Override
+			public void setupTrial()
+			{
+				useLevel("Tutorial", "Tutorial");
+
+				player = Main.gamedata.getEntities().get("Player");
+
+				HashMap<String, Entity> entities = new HashMap<String, Entity>();
+				entities.put("Player", player);
+
+				int[][] spawns = randomPositions(count, 4);
+				for (int i = 0; i < count; i++)
+				{
+					Entity e = new Entity("Bench"+i, 80, 8, 8, spawns[i], 8, null, new int[]{46, 18, 27, 69}, new boolean[]{true, true, false, false}, null);
+					e.setFaction((i % 2 == 0) ? "Enemy" : "");
+					entities.put(e.getName(), e);
+				}
+
+				Main.gamedata.setGameEntities(entities);
+
+				positions = randomPositions(1024, 5);
+			}
+
+			@Override
+			public long run()
+			{
+				index = (index + 1) & 1023;
+
+				String s = (combat) ? player.collideEntitiesCombat(positions[index]) : player.collideEntitiesOther(positions[index]);
+
+				return (s == null) ? 0 : 1;
+			}
+		};
+	}
+
+	/**
+	 * GameData.checkCollision at random points, either on a fully preloaded map or on a lazy map that is cleared
+	 * before every iteration (so most checks have to read the pixel from the image)
+	 */
+	static Benchmark mapCheckCollision(final String data, final String images, final boolean preloaded)
+	{
+		return new Benchmark(preloaded ? "GameData.checkCollision (preloaded)" : "GameData.checkCollision (lazy)", data) {
+			int[][] points;
+			int index = 0;
+
+			@Override
+			public void setupTrial()
+			{
+				useLevel(data, images);
+
+				if (preloaded)
+					Main.gamedata.fillCollisionMap();
+
+				points = randomPositions(1 << 20, 6);
+			}
+
+			@Override
+			public void setupIteration()
+			{
+				if (!preloaded)
+					Main.gamedata.createCollisionMap();
+			}
+
+			@Override
+			public long run()
+			{
+				index = (index + 1) & ((1 << 20) - 1);
+				return Main.gamedata.checkCollision(points[index][0], points[index][1]) ? 1 : 0;
+			}
+		};
+	}
+
+	/**
+	 * One GameData.evaluateAI tick over the whole level. The entities are reloaded before every iteration so the
+	 * level does not drift too far from its starting state
+	 */
+	static Benchmark evaluateAI(final String data, final String images)
+	{
+		return new Benchmark("GameData.evaluateAI", data) {
+
+			@Override
+			public void setupTrial()
+			{
+				Main.parallelAI = false;
+
+				useLevel(data, images);
+				Main.gamedata.fillCollisionMap();
+			}
+
+			@Override
+			public void setupIteration()
+			{
+				useLevel(data, images);
+			}
+
+			@Override
+			public long run()
+			{
+				Main.gamedata.evaluateAI();
+				return Main.gamedata.getEntities().size();
+			}
+		};
+	}
+
+	/**
+	 * One GameData.evaluateAI tick over the given number of enemies from two factions crowded around the player in the
+	 * Tutorial level, with the enemies looking for targets on one thread or several (see {@link AIPerception})
+	 */
+	static Benchmark evaluateAICrowd(final int count, final boolean parallel)
+	{
+		return new Benchmark(parallel ? "GameData.evaluateAI parallel" : "GameData.evaluateAI serial", count + " enemies") {
+
+			@Override
+			public void setupTrial()
+			{
+				Main.parallelAI = parallel;
+
+				useLevel("Tutorial", "Tutorial");
+				Main.gamedata.fillCollisionMap();
+			}
+
+			@Override
+			public void setupIteration()
+			{
+				useLevel("Tutorial", "Tutorial");
+
+				Entity player = Main.gamedata.getEntities().get("Player");
+
+				HashMap<String, Entity> entities = new HashMap<String, Entity>();
+				entities.put("Player", player);
+
+				int[][] spawns = randomPositionsAround(player.getPos(), 600, count, 6);
+				for (int i = 0; i < count; i++)
+				{
+					Entity e = new Entity("Crowd"+i, 80, 8, 8, spawns[i], 4, null, new int[]{46, 18, 27, 69}, new boolean[]{false, true, true, false}, null);
+					e.setFaction((i % 2 == 0) ? "Enemy" : "Ally");
+					entities.put(e.getName(), e);
+				}
+
+				Main.gamedata.setGameEntities(entities);
+			}
+
+			@Override
+			public long run()
+			{
+				Main.gamedata.evaluateAI();
+				return Main.gamedata.getEntities().size();
+			}
+		};
+	}
+
+}
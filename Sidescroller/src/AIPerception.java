@@ -0,0 +1,145 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Class used to split each AI tick into two phases. <p>
+ * First every enemy looks for a target ({@link Entity#perceive()}), all against the world as it was at the start of
+ * the tick. This only reads the world, so it can be spread over several threads. Then the AI of every entity is run
+ * one after the other in entity order, using the targets found in the first phase, which is where everything that
+ * changes the world (moving, damage, spawning, dialogue) happens. <p>
+ * The first phase gives the same targets whether it is run on one thread or many, so a parallel tick has exactly the
+ * same result as a serial one. It is only run in parallel when {@link Main#parallelAI} is set and the collision map is
+ * complete (reading an incomplete map fills it in, which is not safe across threads).
+ * @author Lyeeedar
+ *
+ */
+public class AIPerception {
+
+	/**
+	 * The fewest entities worth splitting over several threads. Any fewer are done on the calling thread
+	 */
+	static final int MIN_PARALLEL = 16;
+
+	/**
+	 * The entities that need to look for a target this tick
+	 */
+	private final ArrayList<Entity> perceivers = new ArrayList<Entity>();
+
+	/**
+	 * The threads used for the parallel phase. Created the first time it is needed
+	 */
+	private ExecutorService executor;
+
+	/**
+	 * One task per thread, each doing every nth entity. Reused every tick
+	 */
+	private final ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+
+	/**
+	 * Method to add an entity that needs to look for a target this tick
+	 * @param e
+	 */
+	public void add(Entity e)
+	{
+		perceivers.add(e);
+	}
+
+	/**
+	 * Method to make every added entity look for its target, then forget them ready for the next tick
+	 * @param parallel whether the work can be spread over several threads
+	 */
+	public void run(boolean parallel)
+	{
+		try {
+			if ((parallel) && (perceivers.size() >= MIN_PARALLEL))
+			{
+				runParallel();
+			}
+			else
+			{
+				for (int i = 0; i < perceivers.size(); i++)
+				{
+					perceivers.get(i).perceive();
+				}
+			}
+		} finally {
+			perceivers.clear();
+		}
+	}
+
+	private void runParallel()
+	{
+		if (executor == null)
+		{
+			int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+			executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "AI Perception");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+
+			for (int i = 0; i < threads; i++)
+			{
+				final int start = i;
+				final int step = threads;
+
+				tasks.add(new Callable<Object>() {
+					@Override
+					public Object call()
+					{
+						for (int j = start; j < perceivers.size(); j += step)
+						{
+							perceivers.get(j).perceive();
+						}
+						return null;
+					}
+				});
+			}
+		}
+
+		List<Future<Object>> results;
+		try {
+			results = executor.invokeAll(tasks);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while evaluating the AI", e);
+		}
+
+		for (Future<Object> result : results)
+		{
+			try {
+				result.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while evaluating the AI", e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException("Error evaluating the AI", e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Method to stop the threads used by the parallel phase. They are started again if needed
+	 */
+	public void shutdown()
+	{
+		if (executor == null)
+			return;
+
+		executor.shutdown();
+		executor = null;
+		tasks.clear();
+	}
+
+}
@@ -175,7 +175,7 @@ public class Character {
 			
 			if (genderSwapAnimCD < 0)
 			{
-				genderSwapAnimCD = 50;
+				genderSwapAnimCD += 50;
 				genderSwapAnimStage += 1;
 				
 				if (genderSwapAnimStage == 3)
@@ -220,14 +220,14 @@ public class Character {
 		if (gender == 0)
 		{
 			gender = 1;
-			Main.gamedata.getGameEntities().get("Player").setSpriteSheet(GameData.getImage("Spritesheet", "male.png"));
-			Main.gamedata.getGameEntities().get("Player").setSpriteFile("male.png");
+			Main.gamedata.getEntities().get("Player").setSpriteSheet(GameData.getImage("Spritesheet", "male.png"));
+			Main.gamedata.getEntities().get("Player").setSpriteFile("male.png");
 		}
 		else
 		{
 			gender = 0;
-			Main.gamedata.getGameEntities().get("Player").setSpriteSheet(GameData.getImage("Spritesheet", "female.png"));
-			Main.gamedata.getGameEntities().get("Player").setSpriteFile("female.png");
+			Main.gamedata.getEntities().get("Player").setSpriteSheet(GameData.getImage("Spritesheet", "female.png"));
+			Main.gamedata.getEntities().get("Player").setSpriteFile("female.png");
 		}
 		
 	}
@@ -683,7 +683,7 @@ class SpellsStageEntry implements Serializable
 		{
 			unlocked = 3;
 			Main.gamedata.systemMessages.add(new SystemMessage("Mastered "+name, Color.ORANGE, 10000));
-			Main.gamedata.getGameEntities().get("Player").infoText.add(new SystemMessage("Spell Mastered", Color.ORANGE, 3000));
+			Main.gamedata.getEntities().get("Player").infoText.add(new SystemMessage("Spell Mastered", Color.ORANGE, 3000));
 			Character.unlockSpells(Character.getSpell(element));
 		}
 	}
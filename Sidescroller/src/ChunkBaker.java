@@ -0,0 +1,265 @@
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Class used to turn levels into streamed levels (see {@link LevelStream}). For each of the level's layers a chunk
+ * file is written next to its png (back0.chunks beside back0.png). The collision map is baked into the collision
+ * layer's chunk file (see {@link CollisionBaker}), as a streamed level has no png to read it from. <p>
+ * Once baked the level is always streamed, so the chunk files have to be baked again (or deleted) whenever the pngs
+ * change. The pngs are not needed by the game after that and can be left out of a release. <p>
+ * Each layer is decoded whole while it is being cut into chunks, so baking needs the memory of the largest layer,
+ * but playing the level does not. <p>
+ * Must be run from the same directory as the game (so the Data folder can be found). <p>
+ * Usage: ChunkBaker level ...
+ * @author Lyeeedar
+ *
+ */
+public class ChunkBaker {
+
+	public static void main(String[] args)
+	{
+		if (args.length == 0)
+		{
+			System.err.println("Usage: ChunkBaker level ...");
+			System.exit(1);
+		}
+
+		for (String level : args)
+		{
+			try {
+				long time = System.nanoTime();
+
+				if (bake(level))
+					System.out.println(level + ": baked in " + ((System.nanoTime() - time) / 1000000) + " ms");
+			} catch (IOException e) {
+				System.err.println(level + ": could not bake");
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Method to bake the chunk files of the given level. Returns false if any of the level's pngs
+	 * could not be found
+	 * @param level
+	 * @return
+	 * @throws IOException
+	 */
+	static boolean bake(String level) throws IOException
+	{
+		File[] pngs = new File[LevelStream.LAYERS];
+
+		for (int i = 0; i < LevelStream.LAYERS; i++)
+		{
+			pngs[i] = CollisionBaker.findLevelFile(level, "back" + i + ".png");
+
+			if (pngs[i] == null)
+			{
+				System.err.println(level + ": no back" + i + ".png found");
+				return false;
+			}
+		}
+
+		for (int i = 0; i < LevelStream.LAYERS; i++)
+		{
+			File png = pngs[i];
+
+			long[] checksum = CollisionBaker.checksum(png);
+			File chunks = getChunkFile(png);
+
+			// Only decode the layers that have changed
+			if (isUpToDate(chunks, checksum))
+				continue;
+
+			BufferedImage layer = ImageIO.read(png);
+
+			CollisionMap collision = (i == 3) ? CollisionBaker.fill(layer) : null;
+
+			write(layer, chunks, checksum, collision);
+			System.out.println(level + ": wrote " + chunks.getPath());
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the chunk file for the given png
+	 * @param png
+	 * @return
+	 */
+	static File getChunkFile(File png)
+	{
+		String name = png.getName();
+		name = name.substring(0, name.lastIndexOf('.')) + LevelStream.EXTENSION;
+
+		return new File(png.getParentFile(), name);
+	}
+
+	/**
+	 * Returns true if the chunk file exists, is from this version and was made from a png with the given checksum
+	 * @param chunks
+	 * @param checksum
+	 * @return
+	 */
+	static boolean isUpToDate(File chunks, long[] checksum)
+	{
+		if (!chunks.exists())
+			return false;
+
+		try {
+			RandomAccessFile file = new RandomAccessFile(chunks, "r");
+
+			try {
+				if (file.length() < LevelStream.HEADER_SIZE)
+					return false;
+
+				ByteBuffer header = ByteBuffer.allocate(LevelStream.HEADER_SIZE);
+				header.order(ByteOrder.LITTLE_ENDIAN);
+
+				file.readFully(header.array());
+
+				return (header.getInt() == LevelStream.MAGIC) && (header.getInt() == LevelStream.VERSION)
+						&& (header.getLong() == checksum[0]) && (header.getLong() == checksum[1])
+						&& (header.getInt(32) == LevelStream.CHUNK_SIZE);
+			} finally {
+				file.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Method to cut the layer into chunks and write them to the chunk file, followed by the collision map if there is
+	 * one. Chunks with nothing in them are not written. The file is written under a temporary name first so a half
+	 * written file is never read
+	 * @param layer
+	 * @param chunks
+	 * @param checksum
+	 * @param collision the layer's complete collision map, or null if it is not the collision layer
+	 * @throws IOException
+	 */
+	static void write(BufferedImage layer, File chunks, long[] checksum, CollisionMap collision) throws IOException
+	{
+		int size = LevelStream.CHUNK_SIZE;
+
+		int columns = (layer.getWidth() + size - 1) / size;
+		int rows = (layer.getHeight() + size - 1) / size;
+
+		int tableSize = columns * rows * 12;
+
+		ByteBuffer header = ByteBuffer.allocate(LevelStream.HEADER_SIZE + tableSize);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+
+		header.putInt(LevelStream.MAGIC);
+		header.putInt(LevelStream.VERSION);
+		header.putLong(checksum[0]);
+		header.putLong(checksum[1]);
+		header.putInt(layer.getWidth());
+		header.putInt(layer.getHeight());
+		header.putInt(size);
+		header.putLong(0);
+
+		File temp = new File(chunks.getPath() + ".tmp");
+
+		FileOutputStream out = new FileOutputStream(temp);
+		try {
+			FileChannel channel = out.getChannel();
+
+			// Leave room for the table, which is written once the chunks are
+			long offset = header.capacity();
+			channel.position(offset);
+
+			ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+
+			for (int cy = 0; cy < rows; cy++)
+			{
+				for (int cx = 0; cx < columns; cx++)
+				{
+					int x = cx * size;
+					int y = cy * size;
+					int w = Math.min(size, layer.getWidth() - x);
+					int h = Math.min(size, layer.getHeight() - y);
+
+					if (isEmpty(layer, x, y, w, h))
+					{
+						header.putLong(0);
+						header.putInt(0);
+						continue;
+					}
+
+					encoded.reset();
+					ImageIO.write(layer.getSubimage(x, y, w, h), "PNG", encoded);
+
+					ByteBuffer data = ByteBuffer.wrap(encoded.toByteArray());
+					while (data.hasRemaining())
+						channel.write(data);
+
+					header.putLong(offset);
+					header.putInt(encoded.size());
+
+					offset += encoded.size();
+				}
+			}
+
+			if (collision != null)
+			{
+				ByteBuffer map = CollisionBaker.encode(collision, checksum);
+				while (map.hasRemaining())
+					channel.write(map);
+
+				header.putLong(36, offset);
+			}
+
+			header.rewind();
+			while (header.hasRemaining())
+				channel.write(header, header.position());
+		} finally {
+			out.close();
+		}
+
+		CollisionBaker.replace(temp, chunks);
+	}
+
+	/**
+	 * Returns true if every pixel in the given part of the layer is transparent
+	 * @param layer
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	static boolean isEmpty(BufferedImage layer, int x, int y, int width, int height)
+	{
+		if (layer.getTransparency() == Transparency.OPAQUE)
+			return false;
+
+		int[] row = new int[width];
+
+		for (int j = y; j < y + height; j++)
+		{
+			layer.getRGB(x, j, width, 1, row, 0, width);
+
+			for (int i = 0; i < width; i++)
+			{
+				if ((row[i] >>> 24) != 0)
+					return false;
+			}
+		}
+
+		return true;
+	}
+
+}
@@ -0,0 +1,542 @@
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Class used to bake a level's collision map into a file next to its collision layer (back3.collision beside
+ * back3.png), so the map does not have to be read from the image pixel by pixel every time the level is loaded. <p>
+ * The file holds the bits of a complete {@link CollisionMap} along with the CRC32 checksum, length and modified time
+ * of the png it was made from. When a level is loaded the file is read straight into the map's words. If the png's
+ * length and modified time match the file the png is not read at all, otherwise its checksum is worked out and
+ * compared (so a png that was only touched, e.g. checked out again, does not need the map baked again). If the file
+ * is missing, from an older version or its checksum does not match the png, the map is read from the image and the
+ * file is baked again. <p>
+ * File layout (little endian): int magic, int version, long png checksum, long png length, long png modified time,
+ * int width, int height, then the map words row by row. <p>
+ * Can also be run on its own to bake levels ahead of time. Must be run from the same directory as the game (so the
+ * Data folder can be found). <p>
+ * Usage: CollisionBaker [level ...] (no levels = every level in the Levels folder)
+ * @author Lyeeedar
+ *
+ */
+public class CollisionBaker {
+
+	/**
+	 * "SCMP"
+	 */
+	static final int MAGIC = 0x53434D50;
+
+	/**
+	 * Increase whenever the file layout changes, so old files are baked again
+	 */
+	static final int VERSION = 2;
+
+	static final int HEADER_SIZE = 40;
+
+	/**
+	 * The extension used for the baked files
+	 */
+	static final String EXTENSION = ".collision";
+
+	public static void main(String[] args)
+	{
+		String[] levels = (args.length == 0) ? findLevels() : args;
+
+		for (String level : levels)
+		{
+			File png = findLayer(level);
+			if (png == null)
+			{
+				System.err.println(level + ": no back3.png found");
+				continue;
+			}
+
+			try {
+				long time = System.nanoTime();
+
+				long[] checksum = checksum(png);
+				File baked = getBakedFile(png);
+
+				BufferedImage layer = ImageIO.read(png);
+
+				if (read(baked, checksum, layer.getWidth(), layer.getHeight()) != null)
+				{
+					System.out.println(level + ": up to date");
+					continue;
+				}
+
+				bake(layer, baked, checksum);
+
+				System.out.println(level + ": baked " + baked.getPath() + " in " + ((System.nanoTime() - time) / 1000000) + " ms");
+			} catch (IOException e) {
+				System.err.println(level + ": could not bake");
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Returns the name of every level in the Levels folder. Exits if the folder cannot be found
+	 * @return
+	 */
+	static String[] findLevels()
+	{
+		File dir = new File("Data/Resources/Levels");
+		if (!dir.exists())
+			dir = new File("src/Data/Resources/Levels");
+
+		File[] files = dir.listFiles();
+		if (files == null)
+		{
+			System.err.println("Could not find the Levels folder");
+			System.exit(1);
+		}
+
+		String[] levels = new String[files.length];
+		int count = 0;
+		for (File f : files)
+		{
+			if (f.isDirectory())
+				levels[count++] = f.getName();
+		}
+
+		String[] found = new String[count];
+		System.arraycopy(levels, 0, found, 0, count);
+
+		return found;
+	}
+
+	/**
+	 * Method to get the collision map for the given level. Uses the baked file if it is up to date, otherwise reads the
+	 * map from the collision layer and bakes the file again. <p>
+	 * Returns null if the level's png is not a file on disk (e.g. it is inside a jar), in which case the map has to be
+	 * read from the image as normal.
+	 * @param level
+	 * @param layer the decoded collision layer (back3.png)
+	 * @return
+	 */
+	public static CollisionMap load(String level, BufferedImage layer)
+	{
+		File png = findLayer(level);
+		if (png == null)
+			return null;
+
+		File baked = getBakedFile(png);
+
+		CollisionMap map = read(baked, png, layer.getWidth(), layer.getHeight());
+
+		if (map == null)
+		{
+			map = fill(layer);
+
+			try {
+				write(baked, map, checksum(png));
+			} catch (IOException e) {
+				// The map is still fine, it just could not be saved for next time
+				e.printStackTrace();
+			}
+		}
+
+		return map;
+	}
+
+	/**
+	 * Method to read the whole collision layer into a map and write it to the baked file. Returns the map
+	 * @param layer
+	 * @param baked
+	 * @param checksum
+	 * @return
+	 * @throws IOException
+	 */
+	static CollisionMap bake(BufferedImage layer, File baked, long[] checksum) throws IOException
+	{
+		CollisionMap map = fill(layer);
+
+		write(baked, map, checksum);
+
+		return map;
+	}
+
+	/**
+	 * Method to read the whole collision layer into a complete map
+	 * @param layer
+	 * @return
+	 */
+	static CollisionMap fill(BufferedImage layer)
+	{
+		CollisionMap map = new CollisionMap(layer);
+		map.fill();
+
+		return map;
+	}
+
+	/**
+	 * Method to get the collision map for a streamed level (see {@link LevelStream}) from the collision layer's chunk
+	 * file. The map must have been baked from the same png as the chunks. Returns null if the chunk file has no such
+	 * map
+	 * @param stream
+	 * @return
+	 */
+	public static CollisionMap load(LevelStream stream)
+	{
+		File chunks = findLevelFile(stream.getLevel(), "back3" + LevelStream.EXTENSION);
+		if ((chunks == null) || (stream.getCollisionOffset() == 0))
+			return null;
+
+		return read(chunks, stream.getCollisionOffset(), stream.getChecksum(3), stream.getWidth(3), stream.getHeight(3));
+	}
+
+	/**
+	 * Method to find the collision layer png of the given level on disk. Returns null if it is not a file on disk
+	 * @param level
+	 * @return
+	 */
+	static File findLayer(String level)
+	{
+		return findLevelFile(level, "back3.png");
+	}
+
+	/**
+	 * Method to find one of the given level's files on disk. Looks in the same places as
+	 * {@link GameData#loadLevelImages(String)}. Returns null if it is not a file on disk
+	 * @param level
+	 * @param name
+	 * @return
+	 */
+	static File findLevelFile(String level, String name)
+	{
+		String path = "Data/Resources/Levels/"+level+"/"+name;
+
+		URL url = Thread.currentThread().getContextClassLoader().getResource(path);
+		if ((url != null) && (url.getProtocol().equals("file")))
+		{
+			try {
+				return new File(url.toURI());
+			} catch (URISyntaxException e) {
+				e.printStackTrace();
+			}
+		}
+
+		File file = new File(path);
+		if (file.exists())
+			return file;
+
+		file = new File("src/"+path);
+		if (file.exists())
+			return file;
+
+		return null;
+	}
+
+	/**
+	 * Returns the baked file for the given png
+	 * @param png
+	 * @return
+	 */
+	static File getBakedFile(File png)
+	{
+		String name = png.getName();
+		name = name.substring(0, name.lastIndexOf('.')) + EXTENSION;
+
+		return new File(png.getParentFile(), name);
+	}
+
+	/**
+	 * Returns the CRC32 checksum, length and modified time of the given file
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	static long[] checksum(File file) throws IOException
+	{
+		CRC32 crc = new CRC32();
+		long length = 0;
+
+		// Taken before reading, so a change made while reading is caught next time
+		long modified = file.lastModified();
+
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[65536];
+
+			int read;
+			while ((read = in.read(buffer)) != -1)
+			{
+				crc.update(buffer, 0, read);
+				length += read;
+			}
+		} finally {
+			in.close();
+		}
+
+		return new long[]{crc.getValue(), length, modified};
+	}
+
+	/**
+	 * Method to read the baked file into a complete map if it was made from the given png. The png is only read (to
+	 * work out its checksum) if its length or modified time do not match the file. Returns null if the file does not
+	 * exist, is from a different version, was made from a different png or is damaged.
+	 * @param baked
+	 * @param png
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	static CollisionMap read(File baked, File png, int width, int height)
+	{
+		try {
+			ByteBuffer header = readHeader(baked, 0, width, height);
+			if (header == null)
+				return null;
+
+			if ((header.getLong(16) != png.length()) || (header.getLong(24) != png.lastModified()))
+			{
+				long[] checksum = checksum(png);
+
+				if ((header.getLong(8) != checksum[0]) || (header.getLong(16) != checksum[1]))
+					return null;
+
+				// Only the modified time changed, so store the new one and the png does not have to be read next time
+				updateModified(baked, checksum[2]);
+			}
+
+			return readMap(baked, 0, width, height);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Method to read the baked file into a complete map if it was made from a png with the given checksum and length.
+	 * Returns null if the file does not exist, is from a different version, does not match or is damaged.
+	 * @param baked
+	 * @param checksum
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	static CollisionMap read(File baked, long[] checksum, int width, int height)
+	{
+		return read(baked, 0, checksum, width, height);
+	}
+
+	/**
+	 * Method to read a map stored at the given place in a file (at the end of it) into a complete map, if it was made
+	 * from a png with the given checksum and length. See {@link CollisionBaker#read(File, long[], int, int)}
+	 * @param file
+	 * @param offset
+	 * @param checksum
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	static CollisionMap read(File file, long offset, long[] checksum, int width, int height)
+	{
+		try {
+			ByteBuffer header = readHeader(file, offset, width, height);
+			if (header == null)
+				return null;
+
+			if ((header.getLong(8) != checksum[0]) || (header.getLong(16) != checksum[1]))
+				return null;
+
+			return readMap(file, offset, width, height);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the header of the map stored at the given place in the file if it is from this version, is for a map of
+	 * the given size and runs to the end of the file. Returns null otherwise
+	 * @param file
+	 * @param offset
+	 * @param width
+	 * @param height
+	 * @return
+	 * @throws IOException
+	 */
+	private static ByteBuffer readHeader(File file, long offset, int width, int height) throws IOException
+	{
+		if (!file.exists())
+			return null;
+
+		long words = (long) ((width + 63) / 64) * height;
+
+		if (file.length() != offset + HEADER_SIZE + (words * 8))
+			return null;
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			if (in.skip(offset) != offset)
+				return null;
+
+			in.readFully(header.array());
+		} finally {
+			in.close();
+		}
+
+		if ((header.getInt(0) != MAGIC) || (header.getInt(4) != VERSION))
+			return null;
+
+		if ((header.getInt(32) != width) || (header.getInt(36) != height))
+			return null;
+
+		return header;
+	}
+
+	/**
+	 * Method to store a new png modified time in the baked file's header. Failing to is not a problem, the checksum is
+	 * just worked out again next time
+	 * @param baked
+	 * @param modified
+	 */
+	private static void updateModified(File baked, long modified)
+	{
+		ByteBuffer time = ByteBuffer.allocate(8);
+		time.order(ByteOrder.LITTLE_ENDIAN);
+		time.putLong(0, modified);
+
+		try {
+			RandomAccessFile file = new RandomAccessFile(baked, "rw");
+			try {
+				file.seek(24);
+				file.write(time.array());
+			} finally {
+				file.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Method to read the words of a map whose header has been checked into a new complete map
+	 * @param file
+	 * @param offset where the map's header starts in the file
+	 * @param width
+	 * @param height
+	 * @return
+	 * @throws IOException
+	 */
+	private static CollisionMap readMap(File file, long offset, int width, int height) throws IOException
+	{
+		CollisionMap map = new CollisionMap(width, height);
+
+		ByteBuffer words = ByteBuffer.allocate(map.solid.length * 8);
+		words.order(ByteOrder.LITTLE_ENDIAN);
+
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			channel.position(offset + HEADER_SIZE);
+
+			while (words.hasRemaining())
+			{
+				if (channel.read(words) < 0)
+					throw new IOException("Unexpected end of " + file.getPath());
+			}
+		} finally {
+			in.close();
+		}
+
+		words.flip();
+		words.asLongBuffer().get(map.solid);
+
+		map.complete();
+
+		return map;
+	}
+
+	/**
+	 * Method to write the given complete map to the baked file. The file is written under a temporary name first so a
+	 * half written file is never read
+	 * @param baked
+	 * @param map
+	 * @param checksum the checksum, length and modified time of the png (see {@link CollisionBaker#checksum(File)})
+	 * @throws IOException
+	 */
+	static void write(File baked, CollisionMap map, long[] checksum) throws IOException
+	{
+		ByteBuffer buffer = encode(map, checksum);
+
+		File temp = new File(baked.getPath() + ".tmp");
+
+		FileOutputStream out = new FileOutputStream(temp);
+		try {
+			FileChannel channel = out.getChannel();
+
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		} finally {
+			out.close();
+		}
+
+		replace(temp, baked);
+	}
+
+	/**
+	 * Returns the given complete map laid out as a baked file, ready to be written
+	 * @param map
+	 * @param checksum the checksum, length and modified time of the png (see {@link CollisionBaker#checksum(File)})
+	 * @return
+	 */
+	static ByteBuffer encode(CollisionMap map, long[] checksum)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (map.solid.length * 8));
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putLong(checksum[0]);
+		buffer.putLong(checksum[1]);
+		buffer.putLong(checksum[2]);
+		buffer.putInt(map.width);
+		buffer.putInt(map.height);
+
+		buffer.asLongBuffer().put(map.solid);
+		buffer.rewind();
+
+		return buffer;
+	}
+
+	/**
+	 * Method to replace the baked file with the finished temporary file
+	 * @param temp
+	 * @param baked
+	 * @throws IOException
+	 */
+	static void replace(File temp, File baked) throws IOException
+	{
+		if (baked.exists() && !baked.delete())
+		{
+			temp.delete();
+			throw new IOException("Could not replace " + baked.getPath());
+		}
+
+		if (!temp.renameTo(baked))
+		{
+			temp.delete();
+			throw new IOException("Could not rename " + temp.getPath() + " to " + baked.getPath());
+		}
+	}
+
+}
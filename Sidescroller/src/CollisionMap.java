@@ -0,0 +1,554 @@
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Class that stores which pixels of a level are solid, one bit per pixel. <p>
+ * The bits are stored row by row in a long[], 64 pixels to a word. The map can either be filled in completely up
+ * front ({@link CollisionMap#fill()}) or lazily: each word is read from the collision layer the first time any pixel
+ * in it is checked, and a second bitmap (one bit per word) records which words have been read. A complete map can
+ * also be loaded from a baked file by {@link CollisionBaker}. <p>
+ * Once every pixel is known an occupancy pyramid is built over the map. Each level of the pyramid splits the map into
+ * square blocks (8, 64 and 512 pixels across) flagged as all empty, all solid or mixed, so
+ * {@link CollisionMap#isSolid(int, int, int, int)} can skip over large empty or solid areas without looking at the
+ * pixels.
+ * @author Lyeeedar
+ *
+ */
+public class CollisionMap {
+
+	/**
+	 * Size of the map in pixels
+	 */
+	final int width, height;
+
+	/**
+	 * The number of longs used for each row of the map
+	 */
+	final int wordsPerRow;
+
+	/**
+	 * The solid bits. Pixel (x, y) is bit (x & 63) of word (y * wordsPerRow) + (x >> 6)
+	 */
+	final long[] solid;
+
+	/**
+	 * One bit per word of {@link CollisionMap#solid}, set once that word has been read from the collision layer
+	 */
+	private final long[] computed;
+
+	/**
+	 * The number of words that have not been read yet. 0 = the map is complete
+	 */
+	private int remaining;
+
+	/**
+	 * The collision layer. Non transparent pixels are solid. Null if the map was loaded from a baked file
+	 */
+	private final BufferedImage layer;
+
+	/**
+	 * Used to read a single word of pixels from the collision layer
+	 */
+	private final int[] rowBuffer = new int[64];
+
+	// ----------- Pyramid ----------- //
+	/**
+	 * Block states
+	 */
+	static final byte EMPTY = 1;
+	static final byte SOLID = 2;
+	static final byte MIXED = 3;
+
+	/**
+	 * log2 of the block size of each level of the pyramid. Level 0 is the smallest blocks
+	 */
+	private static final int[] blockShift = {3, 6, 9};
+
+	/**
+	 * The state of every block in each level of the pyramid, row by row. Null until the map is complete
+	 */
+	private byte[][] pyramid;
+
+	/**
+	 * The number of blocks across each level of the pyramid
+	 */
+	private final int[] blocksX = new int[blockShift.length];
+	private final int[] blocksY = new int[blockShift.length];
+	// ----------- Pyramid ----------- //
+
+	/**
+	 * Creates an empty map for the given collision layer. Nothing is read from the layer until it is needed.
+	 * @param layer
+	 */
+	public CollisionMap(BufferedImage layer)
+	{
+		this(layer, layer.getWidth(), layer.getHeight());
+	}
+
+	/**
+	 * Creates an empty map with no collision layer. Used by {@link CollisionBaker}, which reads the bits straight into
+	 * {@link CollisionMap#solid} and then calls {@link CollisionMap#complete()}.
+	 * @param width
+	 * @param height
+	 */
+	CollisionMap(int width, int height)
+	{
+		this(null, width, height);
+	}
+
+	private CollisionMap(BufferedImage layer, int width, int height)
+	{
+		this.layer = layer;
+
+		this.width = width;
+		this.height = height;
+		this.wordsPerRow = (width + 63) >>> 6;
+
+		int words = wordsPerRow * height;
+		this.solid = new long[words];
+		this.computed = new long[(words + 63) >>> 6];
+		this.remaining = words;
+
+		for (int level = 0; level < blockShift.length; level++)
+		{
+			int size = 1 << blockShift[level];
+			blocksX[level] = (width + size - 1) >>> blockShift[level];
+			blocksY[level] = (height + size - 1) >>> blockShift[level];
+		}
+	}
+
+	/**
+	 * Returns true if the given pixel is solid. Pixels outside of the map are always solid.
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public boolean isSolid(int x, int y)
+	{
+		if ((x < 0) || (y < 0) || (x >= width) || (y >= height))
+			return true;
+
+		int word = (y * wordsPerRow) + (x >>> 6);
+
+		if ((computed[word >>> 6] & (1L << word)) == 0)
+			computeWord(word);
+
+		return (solid[word] & (1L << x)) != 0;
+	}
+
+	/**
+	 * Returns true if any pixel in the given rectangle is solid. Pixels outside of the map are always solid.
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @return
+	 */
+	public boolean isSolid(int x, int y, int w, int h)
+	{
+		if ((w <= 0) || (h <= 0))
+			return false;
+
+		if ((x < 0) || (y < 0) || (x + w > width) || (y + h > height))
+			return true;
+
+		if (pyramid == null)
+			return isSolidPixels(x, y, x + w, y + h);
+
+		return isSolidBlocks(blockShift.length - 1, x, y, x + w, y + h);
+	}
+
+	/**
+	 * Returns true if none of the pixels on the line between the two points (inclusive) are solid. The line is stepped
+	 * pixel by pixel with Bresenham's line algorithm, stopping at the first solid pixel. Once the pyramid is built, the
+	 * line is walked through empty blocks without looking at the pixels, and the check stops as soon as it enters a
+	 * solid block.
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 * @return
+	 */
+	public boolean isLineClear(int x0, int y0, int x1, int y1)
+	{
+		int dx = Math.abs(x1-x0);
+		int dy = Math.abs(y1-y0);
+
+		int sx = (x0 < x1) ? 1 : -1;
+		int sy = (y0 < y1) ? 1 : -1;
+
+		int err = dx-dy;
+		int e2;
+
+		byte[][] blocks = pyramid;
+
+		while (true)
+		{
+			if ((x0 < 0) || (y0 < 0) || (x0 >= width) || (y0 >= height))
+				return false;
+
+			if (blocks != null)
+			{
+				// Find the largest empty block the point is in
+				int emptyShift = -1;
+				for (int level = blockShift.length - 1; level >= 0; level--)
+				{
+					int shift = blockShift[level];
+					byte state = blocks[level][((y0 >>> shift) * blocksX[level]) + (x0 >>> shift)];
+
+					if (state == SOLID)
+						return false;
+
+					if (state == EMPTY)
+					{
+						emptyShift = shift;
+						break;
+					}
+				}
+
+				if (emptyShift != -1)
+				{
+					// Step to the first point outside the block (or the end of the line). Blocks on the right and bottom
+					// edges can reach past the map, so leaving the map also ends the block
+					int bx = x0 >>> emptyShift;
+					int by = y0 >>> emptyShift;
+
+					do
+					{
+						if ((x0 == x1) && (y0 == y1))
+							return true;
+
+						e2 = 2*err;
+						if (e2 > -dy)
+						{
+							err = err - dy;
+							x0 = x0 + sx;
+						}
+						if (e2 < dx)
+						{
+							err = err + dx;
+							y0 = y0 + sy;
+						}
+					} while (((x0 >> emptyShift) == bx) && ((y0 >> emptyShift) == by) && (x0 < width) && (y0 < height));
+
+					continue;
+				}
+			}
+
+			if (isSolid(x0, y0))
+				return false;
+
+			if ((x0 == x1) && (y0 == y1))
+				return true;
+
+			e2 = 2*err;
+			if (e2 > -dy)
+			{
+				err = err - dy;
+				x0 = x0 + sx;
+			}
+			if (e2 < dx)
+			{
+				err = err + dx;
+				y0 = y0 + sy;
+			}
+		}
+	}
+
+	/**
+	 * Method to check a rectangle against the blocks of the given pyramid level, descending into the mixed blocks.
+	 * The rectangle is given by its top left (inclusive) and bottom right (exclusive) corners.
+	 * @param level
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 * @return
+	 */
+	private boolean isSolidBlocks(int level, int x0, int y0, int x1, int y1)
+	{
+		int shift = blockShift[level];
+		byte[] blocks = pyramid[level];
+		int across = blocksX[level];
+
+		int bx0 = x0 >>> shift;
+		int bx1 = (x1 - 1) >>> shift;
+		int by0 = y0 >>> shift;
+		int by1 = (y1 - 1) >>> shift;
+
+		for (int by = by0; by <= by1; by++)
+		{
+			for (int bx = bx0; bx <= bx1; bx++)
+			{
+				byte state = blocks[(by * across) + bx];
+
+				if (state == EMPTY)
+					continue;
+				if (state == SOLID)
+					return true;
+
+				// The part of the rectangle inside this block
+				int cx0 = Math.max(x0, bx << shift);
+				int cy0 = Math.max(y0, by << shift);
+				int cx1 = Math.min(x1, (bx + 1) << shift);
+				int cy1 = Math.min(y1, (by + 1) << shift);
+
+				// A mixed block has at least one solid pixel, so if the rectangle covers all of it there is a collision
+				if ((cx0 == bx << shift) && (cy0 == by << shift) && (cx1 == Math.min(width, (bx + 1) << shift)) && (cy1 == Math.min(height, (by + 1) << shift)))
+					return true;
+
+				if (level == 0)
+				{
+					if (isSolidPixels(cx0, cy0, cx1, cy1))
+						return true;
+				}
+				else if (isSolidBlocks(level - 1, cx0, cy0, cx1, cy1))
+				{
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Method to check a rectangle pixel row by pixel row, 64 pixels at a time. The rectangle is given by its top left
+	 * (inclusive) and bottom right (exclusive) corners.
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 * @return
+	 */
+	private boolean isSolidPixels(int x0, int y0, int x1, int y1)
+	{
+		int w0 = x0 >>> 6;
+		int w1 = (x1 - 1) >>> 6;
+
+		// Masks for the bits of the first and last word that are inside the rectangle
+		long firstMask = -1L << x0;
+		long lastMask = -1L >>> (63 - ((x1 - 1) & 63));
+
+		for (int y = y0; y < y1; y++)
+		{
+			int rowStart = y * wordsPerRow;
+
+			for (int w = w0; w <= w1; w++)
+			{
+				int word = rowStart + w;
+
+				if ((computed[word >>> 6] & (1L << word)) == 0)
+					computeWord(word);
+
+				long mask = -1L;
+				if (w == w0)
+					mask &= firstMask;
+				if (w == w1)
+					mask &= lastMask;
+
+				if ((solid[word] & mask) != 0)
+					return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Method to read every pixel that has not been read yet from the collision layer
+	 */
+	public void fill()
+	{
+		if (remaining == 0)
+			return;
+
+		int[] row = new int[width];
+
+		for (int y = 0; (y < height) && (remaining > 0); y++)
+		{
+			layer.getRGB(0, y, width, 1, row, 0, width);
+
+			int rowStart = y * wordsPerRow;
+			for (int w = 0; w < wordsPerRow; w++)
+			{
+				int word = rowStart + w;
+
+				if ((computed[word >>> 6] & (1L << word)) != 0)
+					continue;
+
+				solid[word] = packWord(row, w << 6);
+				markComputed(word);
+			}
+		}
+	}
+
+	/**
+	 * Method to mark every word as read, for when {@link CollisionMap#solid} has been filled in from somewhere other
+	 * than the collision layer
+	 */
+	void complete()
+	{
+		if (remaining == 0)
+			return;
+
+		Arrays.fill(computed, -1L);
+		remaining = 0;
+
+		buildPyramid();
+	}
+
+	/**
+	 * Returns true if every pixel has been read from the collision layer
+	 * @return
+	 */
+	public boolean isComplete()
+	{
+		return remaining == 0;
+	}
+
+	/**
+	 * Returns the number of bytes used by the map
+	 * @return
+	 */
+	public long getMemoryUsage()
+	{
+		long size = ((long) solid.length + computed.length) * 8;
+
+		if (pyramid != null)
+		{
+			for (byte[] level : pyramid)
+				size += level.length;
+		}
+
+		return size;
+	}
+
+	/**
+	 * Method to read a single word of 64 pixels from the collision layer
+	 * @param word
+	 */
+	private void computeWord(int word)
+	{
+		int y = word / wordsPerRow;
+		int x = (word - (y * wordsPerRow)) << 6;
+		int count = Math.min(64, width - x);
+
+		layer.getRGB(x, y, count, 1, rowBuffer, 0, 64);
+
+		long bits = 0;
+		for (int i = 0; i < count; i++)
+		{
+			// Non transparent pixels are solid
+			if ((rowBuffer[i] >>> 24) != 0)
+				bits |= 1L << i;
+		}
+
+		solid[word] = bits;
+		markComputed(word);
+	}
+
+	/**
+	 * Returns the 64 pixels of the row starting at the given x packed into a word
+	 * @param row
+	 * @param x
+	 * @return
+	 */
+	private long packWord(int[] row, int x)
+	{
+		int count = Math.min(64, width - x);
+
+		long bits = 0;
+		for (int i = 0; i < count; i++)
+		{
+			// Non transparent pixels are solid
+			if ((row[x + i] >>> 24) != 0)
+				bits |= 1L << i;
+		}
+
+		return bits;
+	}
+
+	/**
+	 * Method to record that the given word has been read
+	 * @param word
+	 */
+	private void markComputed(int word)
+	{
+		computed[word >>> 6] |= 1L << word;
+		remaining--;
+
+		if (remaining == 0)
+			buildPyramid();
+	}
+
+	/**
+	 * Method to work out the state of every block in the pyramid. Can only be done once every pixel is known
+	 */
+	private void buildPyramid()
+	{
+		byte[][] levels = new byte[blockShift.length][];
+
+		// The smallest blocks are 8 pixels across, so each one is 8 bits from 8 rows
+		byte[] blocks = new byte[blocksX[0] * blocksY[0]];
+		for (int by = 0; by < blocksY[0]; by++)
+		{
+			int rows = Math.min(8, height - (by << 3));
+
+			for (int bx = 0; bx < blocksX[0]; bx++)
+			{
+				int x = bx << 3;
+				int shift = x & 63;
+				long valid = (width - x >= 8) ? 0xFFL : (1L << (width - x)) - 1;
+
+				long any = 0;
+				long all = valid;
+				for (int r = 0; r < rows; r++)
+				{
+					long bits = (solid[(((by << 3) + r) * wordsPerRow) + (x >>> 6)] >>> shift) & valid;
+					any |= bits;
+					all &= bits;
+				}
+
+				blocks[(by * blocksX[0]) + bx] = (any == 0) ? EMPTY : ((all == valid) ? SOLID : MIXED);
+			}
+		}
+		levels[0] = blocks;
+
+		// Each larger block is made up of 8x8 blocks from the level below
+		for (int level = 1; level < blockShift.length; level++)
+		{
+			byte[] below = levels[level - 1];
+			int belowX = blocksX[level - 1];
+			int belowY = blocksY[level - 1];
+
+			blocks = new byte[blocksX[level] * blocksY[level]];
+			for (int by = 0; by < blocksY[level]; by++)
+			{
+				for (int bx = 0; bx < blocksX[level]; bx++)
+				{
+					byte state = 0;
+
+					for (int cy = by << 3; (cy < (by + 1) << 3) && (cy < belowY); cy++)
+					{
+						for (int cx = bx << 3; (cx < (bx + 1) << 3) && (cx < belowX); cx++)
+						{
+							byte child = below[(cy * belowX) + cx];
+
+							if (state == 0)
+								state = child;
+							else if (state != child)
+								state = MIXED;
+						}
+					}
+
+					blocks[(by * blocksX[level]) + bx] = state;
+				}
+			}
+			levels[level] = blocks;
+		}
+
+		pyramid = levels;
+	}
+
+}
@@ -1,6 +1,7 @@
 import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 
 
 /**
@@ -177,7 +178,7 @@ public class Dialogue implements Serializable{
 	 */
 	private String kill (ArrayList<String> stagetext)
 	{
-		Entity e = Main.gamedata.getGameEntities().get(stagetext.get(1));
+		Entity e = Main.gamedata.getEntities().get(stagetext.get(1));
 		if ((e != null) && (e.isAlive()))
 		{
 			return stagetext.get(2);
@@ -193,7 +194,7 @@ public class Dialogue implements Serializable{
 	 */
 	private void incrKill()
 	{
-		Entity e = Main.gamedata.getGameEntities().get(getQuest().get(getStage()).get(1));
+		Entity e = Main.gamedata.getEntities().get(getQuest().get(getStage()).get(1));
 		if ((e != null) && (!e.isAlive()))
 		{
 			setStage(getStage()+1);
@@ -203,10 +204,10 @@ public class Dialogue implements Serializable{
 	
 	private String changeLevel(ArrayList<String> stagetext)
 	{
-		Entity player = Main.gamedata.getGameEntities().get("Player");
+		Entity player = Main.gamedata.getEntities().get("Player");
 		player.velocity = new int[]{0, 0};
 		
-		Entity me = Main.gamedata.getGameEntities().get(parent);
+		Entity me = Main.gamedata.getEntities().get(parent);
 		
 		int[] pos = {me.pos[0]-player.collisionShape[2]-player.collisionShape[0]-5, player.pos[1], player.pos[2]};
 		
@@ -223,7 +224,7 @@ public class Dialogue implements Serializable{
 		Main.gamedata.saveGame(new File("Data/Saves/autosave.sav"));
 		Main.gamedata.loadLevel(stagetext.get(1));
 	
-		player = Main.gamedata.getGameEntities().get("Player");
+		player = Main.gamedata.getEntities().get("Player");
 		
 		int posX = Integer.parseInt(stagetext.get(2)) - player.getCollisionShape()[0];
 		int posY = Integer.parseInt(stagetext.get(3)) - player.getCollisionShape()[1];
@@ -237,13 +238,35 @@ public class Dialogue implements Serializable{
 		return "Loading Level "+stagetext.get(1);
 	}
 	
+	/**
+	 * Method to add the name of every level this dialogue can change to (in either quest) to the given collection
+	 * @param targets
+	 */
+	public void addLevelTargets(Collection<String> targets)
+	{
+		addLevelTargets(quest1, targets);
+		addLevelTargets(quest2, targets);
+	}
+	
+	private static void addLevelTargets(ArrayList<ArrayList<String>> quest, Collection<String> targets)
+	{
+		if (quest == null)
+			return;
+		
+		for (ArrayList<String> stagetext : quest)
+		{
+			if ((stagetext.size() > 1) && (stagetext.get(0).equals("ChangeLevel")))
+				targets.add(stagetext.get(1));
+		}
+	}
+	
 	private String changePosition(ArrayList<String> stagetext)
 	{	
 		int posX = Integer.parseInt(stagetext.get(1));
 		int posY = Integer.parseInt(stagetext.get(2));
 		int dir = Integer.parseInt(stagetext.get(3));
 		
-		Main.gamedata.getGameEntities().get("Player").setPos(new int[]{posX, posY, dir});
+		Main.gamedata.getEntities().get("Player").setPos(new int[]{posX, posY, dir});
 		
 		setStage(getStage()+1);
 		setInternalstage(0);
@@ -263,7 +286,7 @@ public class Dialogue implements Serializable{
 	{
 		boolean passable = stagetext.get(2).equals("true");
 		
-		Main.gamedata.getGameEntities().get(stagetext.get(1)).setPassable(passable);
+		Main.gamedata.getEntities().get(stagetext.get(1)).setPassable(passable);
 		
 		setStage(getStage()+1);
 		setInternalstage(0);
@@ -275,7 +298,7 @@ public class Dialogue implements Serializable{
 	{
 		boolean visible = stagetext.get(2).equals("true");
 		
-		Main.gamedata.getGameEntities().get(stagetext.get(1)).setVisible(visible);
+		Main.gamedata.getEntities().get(stagetext.get(1)).setVisible(visible);
 		
 		setStage(getStage()+1);
 		setInternalstage(0);
@@ -317,7 +340,7 @@ public class Dialogue implements Serializable{
 	
 	private String suicide(ArrayList<String> stagetext)
 	{
-		Main.gamedata.getGameEntities().get(stagetext.get(1)).death();
+		Main.gamedata.getEntities().get(stagetext.get(1)).death();
 		
 		setStage(getStage()+1);
 		setInternalstage(0);
@@ -20,6 +20,16 @@ public class EXPOrb extends Item {
 		super("EXP", "", "exp.png", pos, number, 3);
 	}
 	
+	/**
+	 * Method to set an orb taken from the pool in {@link ItemList} back up with the given values
+	 * @param pos
+	 * @param number
+	 */
+	void reinit(int[] pos, int number)
+	{
+		reinit("EXP", "", "exp.png", pos, number, 3);
+	}
+	
 	@Override
 	public void AI()
 	{
@@ -32,7 +42,7 @@ public class EXPOrb extends Item {
 	@Override
 	protected void move()
 	{
-		Entity p = Main.gamedata.getGameEntities().get("Player");
+		Entity p = Main.gamedata.getEntities().get("Player");
 		
 		pos[0] += velocity[0];
 		pos[1] += velocity[1];
@@ -97,7 +107,7 @@ public class EXPOrb extends Item {
 		{
 			Character.addEXP(number);
 			
-			Main.gamedata.getGameEntities().get("Player").getInfoText().add(new SystemMessage("+"+number+" EXP", Color.GREEN, 3000));
+			Main.gamedata.getEntities().get("Player").getInfoText().add(new SystemMessage("+"+number+" EXP", Color.GREEN, 3000));
 			
 			SoundEffect.EXP.play();
 			this.setAlive(false);
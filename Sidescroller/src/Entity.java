@@ -70,6 +70,63 @@ public class Entity implements Serializable{
 	 */
 	protected int[] pos = new int[3];
 
+	/**
+	 * Position at the start of the last simulation tick. X, Y <p>
+	 * Used to interpolate where the entity is drawn between ticks. Null means the entity should be drawn at {@link Entity#pos}
+	 */
+	protected transient int[] lastPos;
+
+	/**
+	 * The next and previous entity in this entity's {@link SpatialGrid} cell, and the cell it is in (+1, 0 = not in
+	 * the grid)
+	 */
+	transient Entity gridNext, gridPrev;
+	transient int gridCell;
+
+	/**
+	 * Reused to hold the entities found by {@link Entity#findEntities(int, int, int, int)}
+	 */
+	private transient ArrayList<Entity> nearbyEntities;
+
+	/**
+	 * Reused to hold the entities near enough to be found by {@link Entity#findEnemy()}
+	 */
+	private transient ArrayList<Entity> enemyCandidates;
+
+	/**
+	 * This entity's place in the {@link EntityRegistry}: its index (+1, 0 = not in the registry), its handle and the
+	 * name it can be found by (null = it cant be found by name)
+	 */
+	transient int registryIndex;
+	transient int registryHandle;
+	transient String registryName;
+
+	/**
+	 * Whether this entity is waiting to be removed at the end of the tick. See {@link GameData#despawnEntity(Entity)}
+	 */
+	transient boolean despawnQueued;
+
+	/**
+	 * The handle of the target found by {@link Entity#perceive()} at the start of the tick (0 = none), and whether it
+	 * has been found yet this tick. Kept as a handle so a target removed before the AI runs is not used
+	 */
+	private transient int perceivedTarget;
+	private transient boolean perceived;
+
+	/**
+	 * Whether the AI is run for this entity this tick, whether it is asleep (far from the screen and not run at all)
+	 * and how many more ticks it must stay awake for after being woken. See {@link GameData#evaluateAI()}
+	 */
+	transient boolean aiScheduled;
+	transient boolean asleep;
+	transient int awakeTicks;
+
+	/**
+	 * Whether the AI budget ran out before this entity's AI was run last tick, so it must be run this tick. See
+	 * {@link GameData#aiBudget}
+	 */
+	transient boolean aiDeferred;
+
 	/**
 	 * Velocity. X, Y
 	 */
@@ -185,10 +242,20 @@ public class Entity implements Serializable{
 	protected HashMap<String, Integer> spellsList = new HashMap<String, Integer>();
 
 	/**
-	 * Whether this entity has been damaged
+	 * Whether this entity has been damaged. Holds the remaining time (in ms) the damage tint is shown for
 	 */
 	protected int damaged = 0;
 
+	/**
+	 * The time (in ms) the damage tint is shown for after the entity is damaged
+	 */
+	public static final int damageFlashTime = 150;
+
+	/**
+	 * Whether the animation advanced a frame during the last call to {@link Entity#animate(long)}
+	 */
+	protected transient boolean animStepped = false;
+
 	/**
 	 * The new animation strip to be changed to
 	 */
@@ -301,6 +368,92 @@ public class Entity implements Serializable{
 
 	}
 
+	/**
+	 * Method to set an entity taken from an {@link EntityPool} back to how the constructor leaves it, with the given
+	 * values. The given arrays are copied into the entity's own arrays, so they are not shared with anything else. <p>
+	 * The dialogue, defense, spells and drops are left as they are.
+	 * @param name
+	 * @param animateTime
+	 * @param totalAnimateStrip
+	 * @param totalAnimateStages
+	 * @param pos
+	 * @param speed
+	 * @param spritefile
+	 * @param collision
+	 * @param behaviour
+	 */
+	protected void reset(String name, long animateTime, int totalAnimateStrip, int totalAnimateStages, int[] pos, int speed, String spritefile, int[] collision, boolean[] behaviour)
+	{
+		this.name = name;
+		this.faction = "";
+		this.animateTime = animateTime;
+		this.remainingAnimateTime = animateTime;
+		this.totalAnimateStrip = totalAnimateStrip;
+		this.animateStage = 1;
+		this.animateStrip = 1;
+		this.pos[0] = pos[0];
+		this.pos[1] = pos[1];
+		this.pos[2] = pos[2];
+		this.lastPos = null;
+		this.velocity[0] = 0;
+		this.velocity[1] = 0;
+		this.animStages = totalAnimateStages;
+		this.speed = speed;
+
+		if ((behaviour != null) && (behavior != null) && (behavior.length == behaviour.length))
+			System.arraycopy(behaviour, 0, behavior, 0, behaviour.length);
+		else
+			behavior = (behaviour == null) ? null : behaviour.clone();
+
+		if ((collisionShape != null) && (collisionShape.length == collision.length))
+			System.arraycopy(collision, 0, collisionShape, 0, collision.length);
+		else
+			collisionShape = collision.clone();
+
+		weight = 1;
+		grounded = false;
+		animChangeCtr = 0;
+		visible = true;
+		passable = false;
+		talking = false;
+		talkingTimer = 0;
+		alive = true;
+		maxHealth = 100;
+		health = 100;
+		spellCD = 0;
+		damaged = 0;
+		animStepped = false;
+		newAnimStrip = 1;
+		newAnimStage = 0;
+		isAnimating = false;
+		spellToCast = null;
+		castSpellAt = 0;
+		castSpellOffset = null;
+		castSpellIndex = 0;
+		expAmount = 0;
+		jumpCD = 0;
+		crouched = false;
+		alerted = false;
+		patrolDistance = 300;
+		lastTargetPos = null;
+		showDeathMessage = false;
+		asleep = false;
+		awakeTicks = 0;
+		aiDeferred = false;
+
+		if (infoText == null)
+			infoText = new ArrayList<SystemMessage>();
+		else
+			infoText.clear();
+
+		this.spriteFile = spritefile;
+		this.spriteSheet = null;
+		this.size[0] = 0;
+		this.size[1] = 0;
+
+		processSpritesheet();
+	}
+
 	/**
 	 * Method to evaluate the AI for the Entity. <p>
 	 * Looks through the {@link Entity#behavior} for 'true's and then evaluates the AI packages in order from 0++
@@ -448,15 +601,11 @@ public class Entity implements Serializable{
 			}
 
 			// See if any Entities lie within this rectangle
-			for (Map.Entry<String, Entity> entry : Main.gamedata.getGameEntities().entrySet())
+			for (Entity e : findEntities(r.x, r.y, r.width, r.height))
 			{
-				Entity e = entry.getValue();
-
-				Rectangle rn = new Rectangle(e.getPos()[0]+e.getCollisionShape()[0], e.getPos()[1]+e.getCollisionShape()[1],
-						e.getCollisionShape()[2], e.getCollisionShape()[3]);
-
-				if ((!e.equals(this)) && (r.intersects(rn)))
+				if (!e.equals(this))
 				{
+					e.wake();
 					e.activate();
 				}
 			}
@@ -1032,16 +1181,19 @@ public class Entity implements Serializable{
 
 		}
 
-		String s = enemyRayCast();
+		// Use the target found at the start of the tick if there is one (see AIPerception)
+		Entity e = (perceived) ? Main.gamedata.getEntities().getByHandle(perceivedTarget) : findEnemy();
+		perceived = false;
+		perceivedTarget = 0;
 
-		if ((s != null) && (s != this.getName()))
+		if ((e != null) && (e != this))
 		{
-			Entity e = Main.gamedata.getGameEntities().get(s);
-			if (e != null)
-			{
-				alerted = true;
-				lastTargetPos = e.getPos();
-			}
+			alerted = true;
+
+			// Copy the position, the target may be removed and its position reused by another entity
+			if (lastTargetPos == null)
+				lastTargetPos = new int[3];
+			System.arraycopy(e.getPos(), 0, lastTargetPos, 0, 3);
 		}
 		else
 		{
@@ -1055,7 +1207,7 @@ public class Entity implements Serializable{
 	 */
 	public void behavior3()
 	{
-		Entity p = Main.gamedata.getGameEntities().get("Player");
+		Entity p = Main.gamedata.getEntities().get("Player");
 
 		Rectangle rp = new Rectangle(p.getPos()[0]+p.getCollisionShape()[0], p.getPos()[1]+p.getCollisionShape()[1],
 				p.getCollisionShape()[2], p.getCollisionShape()[3]);
@@ -1106,81 +1258,109 @@ public class Entity implements Serializable{
 		velocity[0] = 0;
 	}
 
+	/**
+	 * Returns the name of the closest entity of another faction in front of this entity and in sight, or null if there
+	 * isnt one. See {@link Entity#findEnemy()}
+	 * @return
+	 */
 	public String enemyRayCast()
 	{
-		int totDist = 250*250;
+		Entity e = findEnemy();
 
-		ArrayList<Entity> rayEntities = new ArrayList<Entity>();
+		return (e == null) ? null : e.getName();
+	}
 
-		for (Map.Entry<String, Entity> entry : Main.gamedata.getGameEntities().entrySet())
-		{
-			Entity e = entry.getValue();
+	/**
+	 * Returns the closest entity of another faction within 250 pixels in front of this entity that it can see, or null
+	 * if there isnt one. Only the entities near it in the {@link SpatialGrid} are looked at
+	 * @return
+	 */
+	public Entity findEnemy()
+	{
+		int totDist = 250*250;
 
-			if ((!e.getFaction().equals("")) && (!e.getFaction().equals(faction)) && (!e.getName().equals(name)) && (!e.isPassable()))
-			{
-				if (pos[2] == 0)
-				{
-					if (e.getPos()[0] < pos[0])
-					{
-						if (((e.getPos()[0]-pos[0])*(e.getPos()[0]-pos[0]))+((e.getPos()[1]-pos[1])*(e.getPos()[1]-pos[1])) < totDist)
-						{
-							rayEntities.add(e);
-						}
-					}
-				}
-				else
-				{
-					if (e.getPos()[0] > pos[0])
-					{
-						if (((e.getPos()[0]-pos[0])*(e.getPos()[0]-pos[0]))+((e.getPos()[1]-pos[1])*(e.getPos()[1]-pos[1])) < totDist)
-						{
-							rayEntities.add(e);
-						}
-					}
-				}
-			}
-		}
+		if (enemyCandidates == null)
+			enemyCandidates = new ArrayList<Entity>();
+
+		// Collision boxes sit inside the sprite, below and to the right of the position, so reach a cell further that
+		// way to find every entity whose position is in range
+		Main.gamedata.getEntityGrid().query(pos[0]-250, pos[1]-250, 500+SpatialGrid.CELL_SIZE, 500+SpatialGrid.CELL_SIZE, enemyCandidates);
 
-		String s = null;
+		Entity s = null;
 
 		int minDist = totDist;
 
-		for (Entity e : rayEntities)
+		for (int i = 0; i < enemyCandidates.size(); i++)
 		{
-			if (rayCast(e.getPos()))
+			Entity e = enemyCandidates.get(i);
+
+			if ((e.getFaction().equals("")) || (e.getFaction().equals(faction)) || (e.getName().equals(name)) || (e.isPassable()))
+				continue;
+
+			// Only look the way this entity is facing
+			if ((pos[2] == 0) ? (e.getPos()[0] >= pos[0]) : (e.getPos()[0] <= pos[0]))
+				continue;
+
+			int dist = ((e.getPos()[0]-pos[0])*(e.getPos()[0]-pos[0]))+((e.getPos()[1]-pos[1])*(e.getPos()[1]-pos[1]));
+
+			// The ray is only cast for entities closer than the closest one seen so far
+			if ((dist < minDist) && (rayCast(e.getPos())))
 			{
-				if (((e.getPos()[0]-pos[0])*(e.getPos()[0]-pos[0]))+((e.getPos()[1]-pos[1])*(e.getPos()[1]-pos[1])) < minDist)
-				{
-					s = e.getName();
-					minDist = ((e.getPos()[0]-pos[0])*(e.getPos()[0]-pos[0]))+((e.getPos()[1]-pos[1])*(e.getPos()[1]-pos[1]));
-				}
+				s = e;
+				minDist = dist;
 			}
 		}
 
+		enemyCandidates.clear();
+
 		return s;
 	}
 
-	public boolean rayCast(int[] targetpos)
+	/**
+	 * Method to wake the entity up if it is asleep far from the screen, so its AI is run again for at least
+	 * {@link GameData#lodWakeTicks} ticks. See {@link GameData#evaluateAI()}
+	 */
+	public void wake()
 	{
-		ArrayList<int[]> pointList = BresenhamsLineAlgorithm(pos[0]+collisionShape[0], pos[1]+collisionShape[1], targetpos[0], targetpos[1]);
+		asleep = false;
+		awakeTicks = GameData.lodWakeTicks;
+	}
 
-		for (int[] point : pointList)
-		{
-			if ((point[0] < 0) || (point[0] > Main.gamedata.collisionX)
-					|| (point[1] < 0) || (point[1] > Main.gamedata.collisionY))
-			{
-				return false;
-			}
+	/**
+	 * Returns true if the entity has come to rest, so it can be put to sleep when it is far from the screen without
+	 * being left hanging in the air. Entities not affected by physics are always at rest
+	 * @return
+	 */
+	public boolean isAtRest()
+	{
+		if ((behavior == null) || (behavior.length < 2) || (!behavior[1]))
+			return true;
 
-			if (Main.gamedata.checkCollision(point[0], point[1]))
-			{
-				return false;
-			}
+		return (grounded) && (velocity[1] == 0);
+	}
 
-		}
+	/**
+	 * Method to look for a target (see {@link Entity#findEnemy()}) ahead of running the AI, so it can be used by
+	 * {@link Entity#behavior2()} later in the tick. Only reads the world, so can be called for many entities at once
+	 * on different threads. See {@link AIPerception}
+	 */
+	public void perceive()
+	{
+		Entity e = findEnemy();
 
+		perceivedTarget = (e == null) ? 0 : e.registryHandle;
+		perceived = true;
+	}
 
-		return true;
+	/**
+	 * Returns true if there is a clear line of sight (no solid pixels) from the top left of this entity's collision box
+	 * to the given position
+	 * @param targetpos
+	 * @return
+	 */
+	public boolean rayCast(int[] targetpos)
+	{
+		return Main.gamedata.checkLineOfSight(pos[0]+collisionShape[0], pos[1]+collisionShape[1], targetpos[0], targetpos[1]);
 	}
 
 	public ArrayList<int[]> BresenhamsLineAlgorithm(int x0,int y0,int x1, int y1) {
@@ -1237,56 +1417,24 @@ public class Entity implements Serializable{
 		if (s != null)
 			return s;
 
-		// Check base
-		for (int nx = x; nx < x+collisionShape[2]; nx++)
-		{
-			for (int ny = y+collisionShape[3]-1; ny >= y+collisionShape[3]-4; ny--)
-			{
-				if (nx >= Main.gamedata.collisionX)
-					return this.getName();
-				else if (Main.gamedata.checkCollision(nx, ny))
-					return this.getName();
-			}
-		}
+		// Check base (the bottom 4 rows)
+		if (Main.gamedata.checkCollision(x, y+collisionShape[3]-4, collisionShape[2], 4))
+			return this.getName();
 
-		// Check top
-		for (int nx = x; nx < x+collisionShape[2]; nx++)
-		{
-			for (int ny = y; ny < y+3; ny++)
-			{
-				if (nx >= Main.gamedata.collisionX)
-					return this.getName();
-				else if (Main.gamedata.checkCollision(nx, ny))
-					return this.getName();
-			}
-		}
+		// Check top (the top 3 rows)
+		if (Main.gamedata.checkCollision(x, y, collisionShape[2], 3))
+			return this.getName();
 
-		//Check side
+		//Check side (the 3 columns on the left, or the 4 columns up to and including the pixel past the right edge)
 		if (this.pos[2] == 0)
 		{
-			for (int nx = x; nx < x+3; nx++)
-			{
-				for (int ny = y; ny < y+collisionShape[3]; ny++)
-				{
-					if (nx >= Main.gamedata.collisionX)
-						return this.getName();
-					else if (Main.gamedata.checkCollision(nx, ny))
-						return this.getName();
-				}
-			}
+			if (Main.gamedata.checkCollision(x, y, 3, collisionShape[3]))
+				return this.getName();
 		}
 		else
 		{
-			for (int nx = x+collisionShape[2]; nx > x+collisionShape[2]-4; nx--)
-			{
-				for (int ny = y; ny < y+collisionShape[3]; ny++)
-				{
-					if (nx >= Main.gamedata.collisionX)
-						return this.getName();
-					else if (Main.gamedata.checkCollision(nx, ny))
-						return this.getName();
-				}
-			}
+			if (Main.gamedata.checkCollision(x+collisionShape[2]-3, y, 4, collisionShape[3]))
+				return this.getName();
 		}
 
 		return null;
@@ -1297,13 +1445,9 @@ public class Entity implements Serializable{
 		int x = pos[0]+collisionShape[0];
 		int y = pos[1]+collisionShape[1];
 
-		// Create a rectangle simulating the collision box of the entity
-		Rectangle r = new Rectangle(x, y, collisionShape[2], collisionShape[3]);
-
-		// Iterate through all the game Entities and check if there is a collision is an entity that isnt passable
-		for (Map.Entry<String, Entity> entry : Main.gamedata.getGameEntities().entrySet())
+		// Check all the game Entities whose collision box overlaps the collision box of this entity for one that isnt passable
+		for (Entity e : findEntities(x, y, collisionShape[2], collisionShape[3]))
 		{
-			Entity e = entry.getValue();
 			if ((e.getName().equals(this.getName())) || (e.isPassable()) || ((e.getFaction() != null) && (e.getFaction().equals(this.getFaction()))))
 				continue;
 
@@ -1312,15 +1456,8 @@ public class Entity implements Serializable{
 				continue;
 			}
 
-			// Create a collision box for the entity that is being checked
-			Rectangle rn = new Rectangle(e.getPos()[0]+e.getCollisionShape()[0], e.getPos()[1]+e.getCollisionShape()[1],
-					e.getCollisionShape()[2], e.getCollisionShape()[3]);
-
-			// If the two rectangles intersect (overlap) then return the entity name that the collision happened with
-			if (r.intersects(rn))
-			{
-				return e.getName();
-			}
+			// Return the entity name that the collision happened with
+			return e.getName();
 		}
 
 		return null;
@@ -1331,30 +1468,47 @@ public class Entity implements Serializable{
 		int x = pos[0]+collisionShape[0];
 		int y = pos[1]+collisionShape[1];
 
-		// Create a rectangle simulating the collision box of the entity
-		Rectangle r = new Rectangle(x, y, collisionShape[2], collisionShape[3]);
-
-		// Iterate through all the game Entities and check if there is a collision is an entity that isnt passable
-		for (Map.Entry<String, Entity> entry : Main.gamedata.getGameEntities().entrySet())
+		// Check all the game Entities whose collision box overlaps the collision box of this entity for one that isnt passable
+		for (Entity e : findEntities(x, y, collisionShape[2], collisionShape[3]))
 		{
-			Entity e = entry.getValue();
 			if ((e.getName().equals(this.getName())) || (e.isPassable()) || ((e.getFaction() != null) && (e.getFaction().equals(this.getFaction()))))
 				continue;
 
-			// Create a collision box for the entity that is being checked
-			Rectangle rn = new Rectangle(e.getPos()[0]+e.getCollisionShape()[0], e.getPos()[1]+e.getCollisionShape()[1],
-					e.getCollisionShape()[2], e.getCollisionShape()[3]);
-
-			// If the two rectangles intersect (overlap) then return the entity name that the collision happened with
-			if (r.intersects(rn))
-			{
-				return e.getName();
-			}
+			// Return the entity name that the collision happened with
+			return e.getName();
 		}
 
 		return null;
 	}
 
+	/**
+	 * Returns the game entities whose collision box intersects the given rectangle (including this entity if it does).
+	 * The same list is reused by every call, so it must not be kept.
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	protected ArrayList<Entity> findEntities(int x, int y, int width, int height)
+	{
+		if (nearbyEntities == null)
+			nearbyEntities = new ArrayList<Entity>();
+
+		Main.gamedata.getEntityGrid().query(x, y, width, height, nearbyEntities);
+
+		return nearbyEntities;
+	}
+
+	/**
+	 * Method to move this entity to the right {@link SpatialGrid} cell after its position has changed
+	 */
+	protected void updateGrid()
+	{
+		if (gridCell != 0)
+			Main.gamedata.getEntityGrid().update(this);
+	}
+
 	/**
 	 * Method that allows this entity to be talked to
 	 */
@@ -1393,18 +1547,27 @@ public class Entity implements Serializable{
 		if (jumpCD > 0)
 			this.jumpCD -= time;
 
+		if (damaged > 0)
+			this.damaged -= time;
+
 		animate(time);
 
-		ArrayList<SystemMessage> newInfoText = new ArrayList<SystemMessage>();
-		for (SystemMessage sysM : infoText)
+		// Remove the timed out messages in place, keeping the rest in order
+		int kept = 0;
+		for (int i = 0; i < infoText.size(); i++)
 		{
+			SystemMessage sysM = infoText.get(i);
 			sysM.aliveTime -= time;
 			if (sysM.aliveTime > 0)
 			{
-				newInfoText.add(sysM);
+				infoText.set(kept, sysM);
+				kept++;
 			}
 		}
-		infoText = newInfoText;
+		while (infoText.size() > kept)
+		{
+			infoText.remove(infoText.size()-1);
+		}
 	}
 
 	/**
@@ -1413,6 +1576,8 @@ public class Entity implements Serializable{
 	 */
 	public void animate(long time)
 	{
+		animStepped = false;
+
 		if (!this.isAlive())
 		{
 			this.setAnimateStrip(2);
@@ -1425,7 +1590,7 @@ public class Entity implements Serializable{
 		if (this.remainingAnimateTime <= 0)
 		{
 			// --------------------------------------------------------------------------------------------------------			
-			this.remainingAnimateTime = this.animateTime;
+			stepAnimateTime();
 
 			// IsAnimating
 			if (isAnimating)
@@ -1444,7 +1609,7 @@ public class Entity implements Serializable{
 							spellToCast.pos[0] -= spellToCast.collisionShape[2];
 						}
 
-						Main.gamedata.getGameEntities().put(spellToCast.getName()+System.currentTimeMillis(), spellToCast);
+						Main.gamedata.spawnEntity(spellToCast);
 						
 						spellCD = spellToCast.spellCDTime;
 
@@ -1519,6 +1684,41 @@ public class Entity implements Serializable{
 		}
 	}
 
+	/**
+	 * Method to reset the animation timer after an animation update. Any time overshot is carried into the next frame so the
+	 * animation runs at the same average speed regardless of the length of the simulation tick.
+	 */
+	protected void stepAnimateTime()
+	{
+		this.remainingAnimateTime += this.animateTime;
+
+		if (this.remainingAnimateTime <= 0)
+			this.remainingAnimateTime = this.animateTime;
+
+		animStepped = true;
+	}
+
+	/**
+	 * Method to store the current position as the position at the start of the tick. See {@link Entity#lastPos}
+	 */
+	public void storeLastPosition()
+	{
+		if (lastPos == null)
+			lastPos = new int[2];
+
+		lastPos[0] = pos[0];
+		lastPos[1] = pos[1];
+	}
+
+	/**
+	 * Returns {@link Entity#lastPos}. May be null if the entity has not been through a tick yet
+	 * @return
+	 */
+	public int[] getLastPos()
+	{
+		return lastPos;
+	}
+
 	/**
 	 * Method to change the Entity position. {@link Entity#pos}
 	 * @param X
@@ -1530,6 +1730,8 @@ public class Entity implements Serializable{
 		pos[0] = X;
 		pos[1] = Y;
 		pos[2] = dir;
+
+		updateGrid();
 	}
 
 	/**
@@ -1563,6 +1765,8 @@ public class Entity implements Serializable{
 	 */
 	public void damage(double amount, String type)
 	{
+		wake();
+
 		if (!alive)
 			return;
 
@@ -1584,7 +1788,7 @@ public class Entity implements Serializable{
 			this.setAlive(false);
 		}
 
-		this.setDamaged(15);
+		this.setDamaged(damageFlashTime);
 	}
 
 	public void heal(double amount)
@@ -1614,7 +1818,7 @@ public class Entity implements Serializable{
 		{
 			if (Main.ran.nextInt(100) < entry.getValue())
 			{
-				Main.gamedata.getGameEntities().put(entry.getKey()+System.currentTimeMillis(), ItemList.getItem(entry.getKey(), new int[]{pos[0], pos[1], pos[2]}, 1));
+				Main.gamedata.spawnEntity(ItemList.getItem(entry.getKey(), new int[]{pos[0], pos[1], pos[2]}, 1));
 			}
 
 		}
@@ -1625,7 +1829,7 @@ public class Entity implements Serializable{
 		{
 			for (int i = 0; i < 5; i++)
 			{
-				Main.gamedata.getGameEntities().put("EXP"+System.currentTimeMillis()+i, new EXPOrb(new int[]{pos[0], pos[1], pos[2]}, orbExp));
+				Main.gamedata.spawnEntity(ItemList.getEXPOrb(pos, orbExp));
 			}
 		}
 
@@ -1744,6 +1948,11 @@ public class Entity implements Serializable{
 	 */
 	public void setPos(int[] pos) {
 		this.pos = pos;
+
+		// The entity has been teleported, so dont interpolate from the old position
+		this.lastPos = null;
+
+		updateGrid();
 	}
 
 	/**
@@ -0,0 +1,70 @@
+import java.util.ArrayList;
+
+/**
+ * Class that holds entities that have been removed from the game so they can be used again, instead of creating a
+ * new entity (and all the arrays and maps inside it) every time one is spawned. <p>
+ * Only entities that are spawned and removed often while playing are pooled (see {@link SpellList} and
+ * {@link ItemList}). An entity must not be used by anything else once it has been put back in the pool.
+ * @author Lyeeedar
+ *
+ */
+public class EntityPool<T extends Entity> {
+
+	/**
+	 * The entities waiting to be used again
+	 */
+	private final ArrayList<T> free = new ArrayList<T>();
+
+	/**
+	 * The most entities the pool will hold. Any more are left for the garbage collector
+	 */
+	private final int capacity;
+
+	public EntityPool(int capacity)
+	{
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Returns an entity from the pool, or null if the pool is empty. The entity still holds its old values and must
+	 * be initialised again before it is used
+	 * @return
+	 */
+	public T obtain()
+	{
+		int size = free.size();
+
+		if (size == 0)
+			return null;
+
+		return free.remove(size-1);
+	}
+
+	/**
+	 * Method to put an entity that has been removed from the game back in the pool
+	 * @param e
+	 */
+	public void recycle(T e)
+	{
+		if (free.size() < capacity)
+			free.add(e);
+	}
+
+	/**
+	 * Method to empty the pool
+	 */
+	public void clear()
+	{
+		free.clear();
+	}
+
+	/**
+	 * Returns the number of entities in the pool
+	 * @return
+	 */
+	public int size()
+	{
+		return free.size();
+	}
+
+}
@@ -0,0 +1,332 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class that holds all the entities in the game. <p>
+ * The entities are kept packed together in an array, so they can be walked with a plain for loop
+ * ({@link EntityRegistry#size()} and {@link EntityRegistry#get(int)}). Removing an entity moves the last entity into
+ * its place, so adding and removing are both O(1) but the order of the entities changes. <p>
+ * Every entity is given an integer handle when it is added, which stays the same until it is removed (unlike its
+ * index). A handle kept after its entity is removed finds nothing, unless its slot has since been reused 32767 times
+ * (see {@link EntityRegistry#SLOT_BITS}), so handles are only kept for a short time (e.g. a target found at the start
+ * of a tick). Entities that need to be found by name (the player, quest targets, anything placed in the level) are also
+ * added to a name index. Entities spawned while playing (spells, dropped items, exp orbs) have no name in the index.
+ * @author Lyeeedar
+ *
+ */
+public class EntityRegistry {
+
+	/**
+	 * The number of bits of a handle used for the slot, which limits how many entities there can be at once. The other
+	 * 15 bits count how many times the slot has been used, so an old handle does not find a new entity in its slot
+	 * until the slot has been reused 32767 times
+	 */
+	private static final int SLOT_BITS = 16;
+	private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+
+	/**
+	 * The entities, packed into the first {@link EntityRegistry#size} places
+	 */
+	private Entity[] entities = new Entity[64];
+	private int size = 0;
+
+	/**
+	 * The entity using each handle slot, and how many times each slot has been used
+	 */
+	private Entity[] slots = new Entity[64];
+	private int[] generations = new int[64];
+	private int slotCount = 0;
+
+	/**
+	 * Slots that are free to be used again
+	 */
+	private int[] freeSlots = new int[64];
+	private int freeCount = 0;
+
+	/**
+	 * The entities that can be found by name
+	 */
+	private final HashMap<String, Entity> names = new HashMap<String, Entity>();
+
+	/**
+	 * The number of times every entity has been replaced by {@link EntityRegistry#load(HashMap)}
+	 */
+	private int loadCount = 0;
+
+	/**
+	 * Returns the number of entities
+	 * @return
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the entity at the given index (0 to {@link EntityRegistry#size()}-1). The index of an entity changes
+	 * when other entities are removed
+	 * @param index
+	 * @return
+	 */
+	public Entity get(int index)
+	{
+		return entities[index];
+	}
+
+	/**
+	 * Returns the entity with the given name, or null if there isnt one
+	 * @param name
+	 * @return
+	 */
+	public Entity get(String name)
+	{
+		return names.get(name);
+	}
+
+	/**
+	 * Returns the entity with the given handle, or null if it has been removed
+	 * @param handle
+	 * @return
+	 */
+	public Entity getByHandle(int handle)
+	{
+		int slot = handle & SLOT_MASK;
+
+		if (slot >= slotCount)
+			return null;
+
+		Entity e = slots[slot];
+
+		if ((e == null) || (e.registryHandle != handle))
+			return null;
+
+		return e;
+	}
+
+	/**
+	 * Returns the slot part of the given handle. Unlike the handle itself this does not depend on how many times the
+	 * slot has been used before
+	 * @param handle
+	 * @return
+	 */
+	public static int slotOf(int handle)
+	{
+		return handle & SLOT_MASK;
+	}
+
+	/**
+	 * Returns true if the entity is in the registry
+	 * @param e
+	 * @return
+	 */
+	public boolean contains(Entity e)
+	{
+		int index = e.registryIndex - 1;
+
+		return (index >= 0) && (index < size) && (entities[index] == e);
+	}
+
+	/**
+	 * Method to add an entity that does not need to be found by name. Returns its handle
+	 * @param e
+	 * @return
+	 */
+	public int add(Entity e)
+	{
+		if (contains(e))
+			return e.registryHandle;
+
+		if (size == entities.length)
+		{
+			Entity[] grown = new Entity[size * 2];
+			System.arraycopy(entities, 0, grown, 0, size);
+			entities = grown;
+		}
+
+		entities[size] = e;
+		size++;
+		e.registryIndex = size;
+
+		int slot;
+		if (freeCount > 0)
+		{
+			freeCount--;
+			slot = freeSlots[freeCount];
+		}
+		else
+		{
+			if (slotCount > SLOT_MASK)
+				throw new IllegalStateException("Too many entities, at most " + (SLOT_MASK + 1) + " can be added at once");
+
+			if (slotCount == slots.length)
+			{
+				Entity[] grownSlots = new Entity[slotCount * 2];
+				System.arraycopy(slots, 0, grownSlots, 0, slotCount);
+				slots = grownSlots;
+
+				int[] grownGenerations = new int[slotCount * 2];
+				System.arraycopy(generations, 0, grownGenerations, 0, slotCount);
+				generations = grownGenerations;
+			}
+
+			slot = slotCount;
+			slotCount++;
+		}
+
+		// Generations start at 1 so no handle is ever 0
+		int generation = generations[slot] + 1;
+		if (generation >= (1 << (31 - SLOT_BITS)))
+			generation = 1;
+		generations[slot] = generation;
+
+		slots[slot] = e;
+
+		e.registryHandle = (generation << SLOT_BITS) | slot;
+		e.registryName = null;
+
+		return e.registryHandle;
+	}
+
+	/**
+	 * Method to add an entity that can be found by the given name. If there is already an entity with that name it is
+	 * removed. Returns the handle of the entity
+	 * @param name
+	 * @param e
+	 * @return
+	 */
+	public int add(String name, Entity e)
+	{
+		Entity old = names.get(name);
+		if ((old != null) && (old != e))
+			remove(old);
+
+		// An entity can only have one name
+		if ((e.registryName != null) && (contains(e)))
+			names.remove(e.registryName);
+
+		int handle = add(e);
+
+		names.put(name, e);
+		e.registryName = name;
+
+		return handle;
+	}
+
+	/**
+	 * Method to remove an entity. Does nothing if it is not in the registry. The last entity is moved into its place
+	 * @param e
+	 */
+	public void remove(Entity e)
+	{
+		if (!contains(e))
+			return;
+
+		int index = e.registryIndex - 1;
+
+		size--;
+		Entity last = entities[size];
+		entities[index] = last;
+		last.registryIndex = index + 1;
+		entities[size] = null;
+
+		int slot = e.registryHandle & SLOT_MASK;
+		slots[slot] = null;
+
+		if (freeCount == freeSlots.length)
+		{
+			int[] grown = new int[freeCount * 2];
+			System.arraycopy(freeSlots, 0, grown, 0, freeCount);
+			freeSlots = grown;
+		}
+		freeSlots[freeCount] = slot;
+		freeCount++;
+
+		if (e.registryName != null)
+		{
+			names.remove(e.registryName);
+			e.registryName = null;
+		}
+
+		e.registryIndex = 0;
+		e.registryHandle = 0;
+	}
+
+	/**
+	 * Method to remove the entity with the given name. Does nothing if there isnt one
+	 * @param name
+	 */
+	public void remove(String name)
+	{
+		Entity e = names.get(name);
+
+		if (e != null)
+			remove(e);
+	}
+
+	/**
+	 * Method to remove every entity
+	 */
+	public void clear()
+	{
+		while (size > 0)
+		{
+			remove(entities[size-1]);
+		}
+	}
+
+	/**
+	 * Method to replace every entity with the ones in the given map (the format levels and saves store their entities
+	 * in). Every entity is added under its key in the map.
+	 * @param map
+	 */
+	public void load(HashMap<String, Entity> map)
+	{
+		clear();
+		loadCount++;
+
+		// Hand the slots out again from 0 up, so the same entities always get the same slots whatever was loaded before
+		freeCount = slotCount;
+		for (int i = 0; i < slotCount; i++)
+		{
+			freeSlots[i] = slotCount - 1 - i;
+		}
+
+		for (Map.Entry<String, Entity> entry : map.entrySet())
+		{
+			add(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Returns the number of times {@link EntityRegistry#load(HashMap)} has been called. Used to tell if the entities
+	 * were replaced (e.g. by a level change) while they were being walked
+	 * @return
+	 */
+	public int getLoadCount()
+	{
+		return loadCount;
+	}
+
+	/**
+	 * Returns every entity in a map, in the format levels and saves store their entities in. Named entities use their
+	 * name as the key, the rest are given a key made from their name and handle.
+	 * @return
+	 */
+	public HashMap<String, Entity> toMap()
+	{
+		HashMap<String, Entity> map = new HashMap<String, Entity>();
+
+		for (int i = 0; i < size; i++)
+		{
+			Entity e = entities[i];
+
+			if (e.registryName != null)
+				map.put(e.registryName, e);
+			else
+				map.put(e.getName() + "#" + e.registryHandle, e);
+		}
+
+		return map;
+	}
+
+}
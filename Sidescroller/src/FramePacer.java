@@ -0,0 +1,126 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class used to limit the rate the game loop runs at. <p>
+ * Instead of spinning until the next frame is due it parks the thread, and only spins for the last fraction of a
+ * millisecond where parking is not accurate enough. This leaves the cpu free while waiting for the next frame.
+ * @author Lyeeedar
+ *
+ */
+public class FramePacer {
+
+	/**
+	 * The remaining time (in ns) below which the pacer will spin instead of parking
+	 */
+	private static final long spinTime = 500000L;
+
+	/**
+	 * The largest park overshoot that will be compensated for. Stops a coarse system timer turning the wait into a long spin
+	 */
+	private static final long maxParkOvershoot = 2000000L;
+
+	/**
+	 * The longest the pacer will park for in one go. Keeps the pacer responsive to frame rate changes
+	 */
+	private static final long maxParkTime = 100000000L;
+
+	/**
+	 * The length of a frame in ns. 0 = uncapped
+	 */
+	private long frameTime = 0;
+
+	/**
+	 * The time (from System.nanoTime) the next frame is due at
+	 */
+	private long nextFrame = System.nanoTime();
+
+	/**
+	 * The average amount (in ns) that parking overshoots the requested time by. Used to wake up early enough to hit the deadline
+	 */
+	private long parkOvershoot = 0;
+
+	/**
+	 * @param fps the target frames per second. 0 = uncapped
+	 */
+	public FramePacer(int fps)
+	{
+		setTargetFPS(fps);
+	}
+
+	/**
+	 * Method to change the target frame rate.
+	 * @param fps the target frames per second. 0 or below = uncapped
+	 */
+	public void setTargetFPS(int fps)
+	{
+		long newFrameTime = (fps > 0) ? 1000000000L / fps : 0;
+
+		if (newFrameTime != frameTime)
+		{
+			frameTime = newFrameTime;
+			nextFrame = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Returns whether the pacer is not limiting the frame rate
+	 * @return
+	 */
+	public boolean isUncapped()
+	{
+		return frameTime == 0;
+	}
+
+	/**
+	 * Method that waits until the next frame is due. Call once per frame.
+	 */
+	public void sync()
+	{
+		long now = System.nanoTime();
+
+		if (frameTime == 0)
+		{
+			nextFrame = now;
+			return;
+		}
+
+		nextFrame += frameTime;
+
+		// If the game has fallen more than a frame behind then start timing again from now rather than rushing to catch up
+		if (now - nextFrame > frameTime)
+		{
+			nextFrame = now;
+			return;
+		}
+
+		// Park for most of the remaining time
+		long remaining = nextFrame - now;
+		while (remaining > spinTime + parkOvershoot)
+		{
+			long park = remaining - spinTime - parkOvershoot;
+			if (park > maxParkTime)
+				park = maxParkTime;
+
+			long parkStart = System.nanoTime();
+			LockSupport.parkNanos(park);
+			long parked = System.nanoTime() - parkStart;
+
+			// Keep a running average of how late the thread wakes up
+			long overshoot = parked - park;
+			if (overshoot < 0)
+				overshoot = 0;
+			parkOvershoot = (parkOvershoot * 7 + overshoot) / 8;
+			if (parkOvershoot > maxParkOvershoot)
+				parkOvershoot = maxParkOvershoot;
+
+			remaining = nextFrame - System.nanoTime();
+		}
+
+		// Spin for the last fraction of a millisecond
+		while (nextFrame - System.nanoTime() > 0)
+		{
+
+		}
+	}
+
+}
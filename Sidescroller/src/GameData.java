@@ -1,6 +1,5 @@
 import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
-import java.awt.GraphicsEnvironment;
 import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.File;
@@ -11,7 +10,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.Future;
 
 import javax.imageio.ImageIO;
 
@@ -29,14 +28,17 @@ public class GameData {
 	 */
 	public static HashMap<String, BufferedImage> gameImages = new HashMap<String, BufferedImage>();
 
-	public static CircularArrayRing<TempLevelData> storedLevels = new CircularArrayRing<TempLevelData>(3);
+	/**
+	 * The images and collision maps of recently visited levels
+	 */
+	public static final LevelCache storedLevels = new LevelCache();
 
 	/**
-	 *  The rate at which the game runs (evaluates AI)
+	 *  The rate at which the game runs (evaluates AI). This is the length of a single simulation tick in milliseconds
 	 */
 	private long gameSpeed = 40;
 	/**
-	 * The remaining time before another Game Logic update
+	 * The remaining time before another Menu update
 	 */
 	private long gameSpeedRemainder = gameSpeed;
 
@@ -52,9 +54,28 @@ public class GameData {
 
 	/**
 	 *  All the entities currently in the game. <p>
-	 *  Index 0 is always the player
+	 *  Their order changes whenever one is removed (see {@link EntityRegistry}), so the player and other named
+	 *  entities are found by name (e.g. get("Player")), never by index
 	 */
-	private HashMap<String, Entity> gameEntities = new HashMap<String, Entity>();
+	private final EntityRegistry entities = new EntityRegistry();
+
+	/**
+	 * Index of where the entities in {@link GameData#entities} are in the level, used to find the entities near a
+	 * point without checking all of them
+	 */
+	private final SpatialGrid entityGrid = new SpatialGrid();
+
+	/**
+	 * Entities waiting to be added to and removed from the game. See {@link GameData#spawnEntity(Entity)} and
+	 * {@link GameData#despawnEntity(Entity)}
+	 */
+	private final ArrayList<Entity> spawns = new ArrayList<Entity>();
+	private final ArrayList<Entity> despawns = new ArrayList<Entity>();
+
+	/**
+	 * Used to have the enemies look for their targets before any AI is run. See {@link AIPerception}
+	 */
+	private final AIPerception perception = new AIPerception();
 
 	/**
 	 *  Array to hold the background images. <p>
@@ -66,9 +87,15 @@ public class GameData {
 	public BufferedImage[] background = new BufferedImage[5];
 
 	/**
-	 * A map of which pixels are collidable with
+	 * The chunks of the current level if it is streamed (see {@link LevelStream}), in which case the background
+	 * images are just placeholders. Null if the level was loaded from its pngs
+	 */
+	private LevelStream levelStream;
+
+	/**
+	 * A map of which pixels are collidable with. Created from the collision layer (background[3])
 	 */
-	private int[][] collisionMap;
+	private CollisionMap collisionMap;
 
 	public int collisionX = 1;
 	public int collisionY = 1;
@@ -78,6 +105,65 @@ public class GameData {
 	 */
 	public static final int gravity = 3;
 
+	/**
+	 * How far (in screens past the edge of the screen) entities have their AI run every tick
+	 */
+	public static double lodFullDistance = 1;
+
+	/**
+	 * How far (in screens past the edge of the screen) entities have their AI run every {@link GameData#lodReducedDivisor}
+	 * ticks. Entities further away than this are put to sleep once they come to rest
+	 */
+	public static double lodReducedDistance = 3;
+
+	/**
+	 * How often (in ticks) entities in the reduced band, and far away entities that are not asleep, have their AI run
+	 */
+	public static int lodReducedDivisor = 4;
+
+	/**
+	 * The number of ticks an entity stays awake after being woken (e.g. by being damaged) before it can sleep again
+	 */
+	public static int lodWakeTicks = 25;
+
+	/**
+	 * The number of AI ticks run so far. Used to spread the entities in the reduced band over different ticks
+	 */
+	private long aiTick = 0;
+
+	/**
+	 * The top left of the area the AI treats as being on screen. Worked out from the player at the start of every tick
+	 * the same way the renderer positions the screen, so the AI never depends on what has been drawn
+	 */
+	private final int[] aiView = new int[2];
+
+	/**
+	 * The most time (in ms) the AI of all the entities can take in a single tick, or 0 for no limit. The player's AI
+	 * is always run first. Once the time runs out the rest of the entities are left until the next tick, and the
+	 * next tick starts with them, so every entity still gets its turn on a crowded screen. <p>
+	 * Which entities are left depends on how fast the machine is, so the budget is turned off while recording or
+	 * replaying.
+	 */
+	public static double aiBudget = 20;
+
+	/**
+	 * Where in the entities the AI starts next tick. Only moves when the budget runs out
+	 */
+	private int aiCursor = 0;
+
+	/**
+	 * The number of entities left until the next tick by the AI budget: in the last tick, and since the game started.
+	 * Also the number of ticks the budget has run out in
+	 */
+	private int aiDeferredLastTick = 0;
+	private long aiDeferredTotal = 0;
+	private long aiOverrunTicks = 0;
+
+	/**
+	 * The average time (in ns) each entity's AI has taken, used to guess how many entities fit in the AI budget
+	 */
+	private long aiCostPerEntity = 0;
+
 	/**
 	 * Strength of friction in the game
 	 */
@@ -121,10 +207,11 @@ public class GameData {
 	 */
 	public void clearGame()
 	{
-		gameEntities.clear();
+		discardEntityCommands();
+		entities.clear();
 
 		Entity e = new Entity("Player", 80, 8, 8, new int[]{20, 20, 0}, 8, null, new int[]{46, 18, 27, 69}, new boolean[]{true, true, false, false}, null);
-		gameEntities.put("Player", e);
+		entities.add("Player", e);
 
 		for (int i = 0; i < 5; i++)
 		{
@@ -132,7 +219,26 @@ public class GameData {
 			background[i] = im;
 		}
 
-		this.createCollisionMap(1, 1);
+		this.createCollisionMap();
+	}
+
+	/**
+	 * Method to open the given level's BGM ready for {@link GameData#changeSong(OggClip)}. Returns null if the level has
+	 * no BGM, the same BGM is already playing or there is no music (without a display). Does not change the current
+	 * song, so can be called from any thread
+	 * @param level
+	 * @return
+	 */
+	public OggClip openSong(Level level)
+	{
+		if (Main.headless)
+			return null;
+
+		OggClip current = BGM;
+		if ((current != null) && (current.getName().equals(level.BGM)))
+			return null;
+
+		return level.getBGM();
 	}
 
 	/**
@@ -141,6 +247,10 @@ public class GameData {
 	 */
 	public void changeSong(OggClip bgm)
 	{
+		// No music without a display
+		if (Main.headless)
+			return;
+
 		if (bgm == null)
 		{
 
@@ -217,6 +327,9 @@ public class GameData {
 		
 		gameSessionID = gameSessionID.substring(0, 1).toUpperCase() + gameSessionID.substring(1);
 		
+		// Reseeds the game's random numbers, so has to happen after the session name is picked
+		InputRecorder.startRecording(gameSpeed);
+
 		this.loadLevel("Tutorial");
 	}
 
@@ -273,10 +386,13 @@ public class GameData {
 					}
 				}
 
-				im = ImageIO.read(in);
+				im = ImageIO.read(LevelLoader.count(in));
 
 				if (im != null)
+				{
 					im = toCompatibleImage(im);
+					LevelLoader.imageDecoded();
+				}
 			}
 			catch (IOException ioe)
 			{
@@ -287,25 +403,66 @@ public class GameData {
 		}
 	}
 
+	/**
+	 * Method to load the images and collision map of the given level and make it the current level
+	 * @param name
+	 */
 	public void loadLevelImages(String name)
 	{
-		for (TempLevelData tld : storedLevels)
+		setLevelImages(readLevelImages(name));
+	}
+
+	/**
+	 * Method to get the images and collision map of the given level, from {@link GameData#storedLevels} if they are
+	 * there and from the level's files if not. The layers are decoded at the same time. Does not change the current
+	 * level, so can be called from any thread
+	 * @param name
+	 * @return
+	 */
+	public static TempLevelData readLevelImages(String name)
+	{
+		return readLevelImages(name, false);
+	}
+
+	/**
+	 * Method to get the images and collision map of the given level. See {@link GameData#readLevelImages(String)}
+	 * @param name
+	 * @param background true = the level is being read ahead (see {@link LevelPrefetcher}), so decode the layers one
+	 * after the other on this thread and do not count them towards the progress of the current load. false = decode
+	 * the layers at the same time on {@link ImageDecoder}
+	 * @return
+	 */
+	public static TempLevelData readLevelImages(String name, boolean background)
+	{
+		TempLevelData tld = storedLevels.get(name);
+
+		if (tld != null)
+			return tld;
+
+		// Streamed levels are never kept in storedLevels, the stream only holds the chunks around the screen
+		LevelStream stream = LevelStream.open(name);
+
+		if (stream != null)
 		{
-			if (tld == null)
-				continue;
+			CollisionMap baked = CollisionBaker.load(stream);
 
-			if (name.equals(tld.name))
-			{
-				background = tld.background;
-				collisionMap = tld.collisionMap;
-				this.levelName = name;
+			if (baked != null)
+				return readStreamedLevel(name, stream, baked);
 
-				//return;
-			}
+			stream.close();
+
+			// Play the level from its pngs instead, which bakes the collision map again. Without them there is nothing
+			// to tell where the ground is
+			if (CollisionBaker.findLayer(name) == null)
+				throw new IllegalStateException("Streamed level " + name + " has no up to date collision map in back3" + LevelStream.EXTENSION + " and no back3.png to read one from, run ChunkBaker on it again");
+
+			System.err.println("Streamed level " + name + " has no up to date collision map, loading it from its pngs");
 		}
 
 		BufferedImage[] back = new BufferedImage[5];
 
+		ArrayList<Future<BufferedImage>> decoding = new ArrayList<Future<BufferedImage>>(5);
+
 		for (int i = 0; i < 5; i++)
 		{
 			InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream("Data/Resources/Levels/"+name+"/back"+i+".png");
@@ -336,21 +493,114 @@ public class GameData {
 
 			}
 
+			if (!background)
+			{
+				decoding.add(ImageDecoder.submit(LevelLoader.count(in)));
+				continue;
+			}
+
 			try {
-				back[i] = toCompatibleImage(ImageIO.read(in));
+				back[i] = ImageDecoder.decode(in);
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
 		}
 
-		background = back;
+		for (int i = 0; i < decoding.size(); i++)
+		{
+			try {
+				back[i] = LevelLoader.get(decoding.get(i));
+				LevelLoader.imageDecoded();
+			} catch (RuntimeException e) {
+				// A layer that could not be read is left out, the same as when decoding on this thread
+				if (!(e.getCause() instanceof IOException))
+					throw e;
+
+				e.printStackTrace();
+			}
+		}
+
+		// Use the baked collision map if there is one, otherwise read it from the collision layer
+		CollisionMap map = CollisionBaker.load(name, back[3]);
+
+		if (map == null)
+		{
+			map = new CollisionMap(back[3]);
+
+			if (Main.preloadCollisionMap)
+				map.fill();
+		}
+
+		tld = new TempLevelData(back, name, map);
+		storedLevels.put(tld);
+
+		return tld;
+	}
+
+	/**
+	 * Method to get a streamed level. Nothing is drawn from the background images, they are only there so code
+	 * expecting images has something to use. The collision map comes from the collision layer's chunk file
+	 * @param name
+	 * @param stream
+	 * @param baked
+	 * @return
+	 */
+	private static TempLevelData readStreamedLevel(String name, LevelStream stream, CollisionMap baked)
+	{
+		BufferedImage[] back = new BufferedImage[5];
+
+		for (int i = 0; i < 5; i++)
+		{
+			back[i] = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+		}
+
+		TempLevelData tld = new TempLevelData(back, name, baked);
+		tld.stream = stream;
+
+		return tld;
+	}
+
+	/**
+	 * Method to make the given level images and collision map the current ones. The stream of the old level is closed
+	 * if it had one
+	 * @param level
+	 */
+	public void setLevelImages(TempLevelData level)
+	{
+		if ((levelStream != null) && (levelStream != level.stream))
+			levelStream.close();
+
+		levelStream = level.stream;
+		background = level.background;
+		setCollisionMap(level.collisionMap);
+	}
 
-		if (Main.preloadCollisionMap)
-			fillCollisionMap();
+	/**
+	 * Method to draw part of one of the current level's layers to the top left of the graphics object, whether the level
+	 * is streamed or not. (x, y) is the point of the layer drawn at the top left. Any chunks of a streamed level that
+	 * are not loaded are loaded on this thread first
+	 * @param g2d
+	 * @param layer
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 */
+	public void drawLayer(Graphics2D g2d, int layer, int x, int y, int width, int height)
+	{
+		if (levelStream != null)
+			levelStream.drawNow(g2d, layer, x, y, width, height);
 		else
-			createCollisionMap();
+			g2d.drawImage(background[layer], 0, 0, width, height, x, y, x + width, y + height, null);
+	}
 
-		storedLevels.add(new TempLevelData(back, name, collisionMap));
+	/**
+	 * Returns {@link GameData#levelStream}
+	 * @return
+	 */
+	public LevelStream getLevelStream()
+	{
+		return levelStream;
 	}
 
 	/**
@@ -360,10 +610,20 @@ public class GameData {
 	 */
 	private static BufferedImage toCompatibleImage(BufferedImage image)
 	{
-		// obtain the current system graphical settings
-		GraphicsConfiguration gfx_config = GraphicsEnvironment.
-				getLocalGraphicsEnvironment().getDefaultScreenDevice().
-				getDefaultConfiguration();
+		return toCompatibleImage(image, ImageDecoder.getGraphicsConfiguration());
+	}
+
+	/**
+	 * Method to convert the image passed into an image optimised for the given display configuration
+	 * @param image
+	 * @param gfx_config null = there is no display, so the image is returned as it is
+	 * @return
+	 */
+	static BufferedImage toCompatibleImage(BufferedImage image, GraphicsConfiguration gfx_config)
+	{
+		// There is no display to optimise for
+		if (gfx_config == null)
+			return image;
 
 		/*
 		 * if image is already compatible and optimized for current system 
@@ -395,87 +655,334 @@ public class GameData {
 		// If the time since the last update exceeds the game speed then do an update
 		if (this.gameSpeedRemainder <= 0)
 		{
-			// Reset game speed timer
-			this.gameSpeedRemainder = this.gameSpeed;
+			// Carry any overshoot into the next update so the menu runs at a steady rate
+			this.gameSpeedRemainder += this.gameSpeed;
+
+			if (this.gameSpeedRemainder <= 0)
+				this.gameSpeedRemainder = this.gameSpeed;
 
 			MainCanvas.menu.evaluateButtons();
 		}
 	}
 
 	/**
-	 * Method to update and evaluate the AI for every entity in the game
-	 * @param time
+	 * Method to advance the simulation by exactly one tick of {@link GameData#gameSpeed} milliseconds. <p>
+	 * Stores the previous position of every entity (so the renderer can interpolate between ticks), evaluates the AI
+	 * and then updates all the time based values. <p>
+	 * Entities spawned or despawned during the tick are only added or removed at the very end, so the entities do not
+	 * change while they are being walked.
 	 */
-	public void evaluateAI(long time)
+	public void tick()
 	{
-		// Minus the time since last method call from the game speed timer
-		this.gameSpeedRemainder -= time;
+		for (int i = 0; i < entities.size(); i++)
+		{
+			entities.get(i).storeLastPosition();
+		}
 
-		// If the time since the last update exceeds the game speed then do an update
-		if (this.gameSpeedRemainder <= 0)
+		long time = Profiler.begin();
+		evaluateAI();
+		Profiler.end(Profiler.EVALUATE_AI, time);
+
+		updateTime(gameSpeed);
+
+		applyEntityCommands();
+	}
+
+	/**
+	 * Method to update and evaluate the AI for every entity in the game. Evaluates a single tick. <p>
+	 * How often an entity's AI is run depends on how far it is from the screen: <p>
+	 * Within {@link GameData#lodFullDistance} screens = every tick <p>
+	 * Within {@link GameData#lodReducedDistance} screens = every {@link GameData#lodReducedDivisor} ticks <p>
+	 * Further away = every {@link GameData#lodReducedDivisor} ticks until it comes to rest ({@link Entity#isAtRest()}),
+	 * then not at all until it is woken ({@link Entity#wake()}) or comes back into range. <p>
+	 * Dead spells and items are always removed, however far away they are. <p>
+	 * The time taken by the AI is limited by {@link GameData#aiBudget}.
+	 */
+	public void evaluateAI()
+	{
+		// Put every entity back in the right cell, in case anything has changed since the last tick
+		rebuildEntityGrid();
+
+		aiTick++;
+
+		long start = System.nanoTime();
+		long deadline = (aiBudget > 0) ? start + (long) (aiBudget * 1000000) : 0;
+
+		// The most entities that should fit in the budget, going by how long they took in earlier ticks
+		int limit = ((deadline != 0) && (aiCostPerEntity > 0)) ? (int) Math.max(1, (deadline - start) / aiCostPerEntity) : Integer.MAX_VALUE;
+
+		aiDeferredLastTick = 0;
+
+		// The player always goes first, so it is never held up by the budget
+		Entity player = entities.get("Player");
+
+		if (player != null)
+			updateAIView(player);
+
+		// Entities are visited starting where the budget ran out last time, so every entity gets its turn. Spawns and
+		// despawns are deferred until the end of the tick, so the entities stay where they are for the whole tick
+		int count = entities.size();
+		int first = (count > 0) ? aiCursor % count : 0;
+		int scheduled = 0;
+		boolean overrun = false;
+
+		// Decide which entities run this tick, and have every enemy that does look for a target against the world as
+		// it is now
+		for (int n = 0; n < count; n++)
 		{
-			// Reset game speed timer
-			this.gameSpeedRemainder = this.gameSpeed;
+			int i = (first + n) % count;
+			Entity e = entities.get(i);
 
-			// Create an array to hold all the entities to be deleted at the end of the loop
-			ArrayList<String> delete = new ArrayList<String>();
+			e.aiScheduled = scheduleAI(e);
 
-			// Create an array to hold only the entities that need their AI evaluated
-			ArrayList<Map.Entry<String, Entity>> evaluate = new ArrayList<Map.Entry<String, Entity>>();
+			if (!e.aiScheduled)
+				continue;
 
-			// Iterate over all the game entities
-			for (Map.Entry<String, Entity> entry : gameEntities.entrySet())
+			if (e != player)
 			{
-				Entity e = entry.getValue();
-				// If the entity is over double the resolution away from the screen (and player)
-				// then do not update its AI. Stops excessive AI processing.
-				if ((e.getPos()[0] < MainCanvas.screenPosition[0]-MainCanvas.resolution[0]) || (e.getPos()[0] > (MainCanvas.screenPosition[0]+(2*MainCanvas.resolution[0])))
-						|| (e.getPos()[1]+e.getSize()[1] < MainCanvas.screenPosition[1]-MainCanvas.resolution[1]) || (e.getPos()[1] > (MainCanvas.screenPosition[1]+(2*MainCanvas.resolution[1]))))
+				if (scheduled >= limit)
+				{
+					// Start from here next tick
+					if (!overrun)
+					{
+						overrun = true;
+						aiCursor = i;
+					}
+
+					deferAI(e);
 					continue;
+				}
 
-				evaluate.add(entry);
+				scheduled++;
 			}
 
-			for (Map.Entry<String, Entity> entry : evaluate){
-				Entity e = entry.getValue();
-				// Evaluate the Entity AI
-				e.AI();
+			boolean[] behavior = e.getBehavior();
+
+			if ((behavior != null) && (behavior.length > 2) && (behavior[2]) && (e.isAlive()))
+				perception.add(e);
+		}
+
+		long aiStart = System.nanoTime();
+
+		perception.run(Main.parallelAI && (collisionMap != null) && (collisionMap.isComplete()));
+
+		if ((player != null) && (player.aiScheduled))
+			runAI(player);
 
-				// If the entity is talking then check that the time the entity has stood idle with the text up doesnt exceed the maximum length, else turn the dialogue off
-				if (e.isTalking())
+		boolean outOfTime = false;
+		int run = 0;
+
+		for (int n = 0; n < count; n++)
+		{
+			int i = (first + n) % count;
+			Entity e = entities.get(i);
+
+			if ((e.aiScheduled) && (e != player))
+			{
+				// In case the estimate was wrong, stop as soon as the time has actually run out
+				if ((!outOfTime) && (deadline != 0) && (System.nanoTime() > deadline))
 				{
-					if (e.getTalkingTimer() > Dialogue.dialogueFade+Dialogue.fadeDuration)
-					{
-						e.setTalking(false);
-						e.setTalkingTimer(0);
-					}
-					else
+					outOfTime = true;
+
+					if (!overrun)
 					{
-						e.setTalkingTimer(e.getTalkingTimer()+time);
+						overrun = true;
+						aiCursor = i;
 					}
 				}
-				else
-				{
-					e.setTalkingTimer(0);
-				}
 
-				// If the Entity is a spell and has exploded and played its entire explode animation then add it to the delete array
-				if ((e instanceof Spell) && (!e.isAlive()) && (((Spell)e).explode >= 8))
+				if (outOfTime)
 				{
-					delete.add(entry.getKey());
+					deferAI(e);
 				}
-				else if ((e instanceof Item) && (!e.isAlive()))
+				else
 				{
-					delete.add(entry.getKey());
+					runAI(e);
+					run++;
 				}
 			}
 
-			// Delete all the entities
-			for (String s : delete)
+			// If the Entity is a spell and has exploded and played its entire explode animation then delete it. Done
+			// whether or not the AI was run, so nothing dead is left behind far away
+			if ((e instanceof Spell) && (!e.isAlive()) && (((Spell)e).explode >= 8))
+			{
+				despawnEntity(e);
+			}
+			else if ((e instanceof Item) && (!e.isAlive()))
+			{
+				despawnEntity(e);
+			}
+		}
+
+		// Keep a running average of how long each entity takes, to guess how many will fit in the next tick. It falls
+		// quickly so one slow tick (e.g. while the JIT warms up) does not hold the AI back for long, and the deadline
+		// check above catches it rising
+		if ((run > 0) || (outOfTime))
+		{
+			long cost = (System.nanoTime() - aiStart) / Math.max(1, run);
+
+			if ((aiCostPerEntity == 0) || (cost < aiCostPerEntity))
+				aiCostPerEntity = (aiCostPerEntity + cost) / 2;
+			else
+				aiCostPerEntity = ((aiCostPerEntity * 7) + cost) / 8;
+		}
+
+		if (overrun)
+			aiOverrunTicks++;
+
+		aiDeferredTotal += aiDeferredLastTick;
+	}
+
+	/**
+	 * Method to leave the entity's AI until the next tick, because the AI budget has run out
+	 * @param e
+	 */
+	private void deferAI(Entity e)
+	{
+		e.aiScheduled = false;
+		e.aiDeferred = true;
+		aiDeferredLastTick++;
+	}
+
+	/**
+	 * Method to evaluate the AI of a single entity for this tick
+	 * @param e
+	 */
+	private void runAI(Entity e)
+	{
+		// Evaluate the Entity AI
+		e.AI();
+
+		// The AI can move the entity without going through changePosition, so make sure it is in the right cell
+		// before the next entity looks for it
+		entityGrid.update(e);
+
+		// If the entity is talking then check that the time the entity has stood idle with the text up doesnt exceed the maximum length, else turn the dialogue off
+		if (e.isTalking())
+		{
+			if (e.getTalkingTimer() > Dialogue.dialogueFade+Dialogue.fadeDuration)
+			{
+				e.setTalking(false);
+				e.setTalkingTimer(0);
+			}
+			else
 			{
-				this.getGameEntities().remove(s);
+				e.setTalkingTimer(e.getTalkingTimer()+gameSpeed);
 			}
 		}
+		else
+		{
+			e.setTalkingTimer(0);
+		}
+	}
+
+	/**
+	 * Method to decide whether the entity's AI should be run this tick, putting it to sleep or waking it up depending
+	 * on how far it is from the screen. See {@link GameData#evaluateAI()}
+	 * @param e
+	 * @return
+	 */
+	private boolean scheduleAI(Entity e)
+	{
+		if (e.awakeTicks > 0)
+			e.awakeTicks--;
+
+		// Entities the budget did not reach last tick always run this tick
+		if (e.aiDeferred)
+		{
+			e.aiDeferred = false;
+			return true;
+		}
+
+		if (isWithinScreen(e, lodFullDistance))
+		{
+			e.asleep = false;
+			return true;
+		}
+
+		if (isWithinScreen(e, lodReducedDistance))
+		{
+			e.asleep = false;
+		}
+		else if ((!e.asleep) && (e.awakeTicks == 0) && (e.isAtRest()))
+		{
+			e.asleep = true;
+		}
+
+		if (e.asleep)
+			return false;
+
+		// Spread the entities over the ticks so they dont all run on the same one
+		return ((aiTick + EntityRegistry.slotOf(e.registryHandle)) % lodReducedDivisor) == 0;
+	}
+
+	/**
+	 * Method to centre {@link GameData#aiView} on the player, stopping at the edges of the level
+	 * @param player
+	 */
+	private void updateAIView(Entity player)
+	{
+		int[] resolution = MainCanvas.resolution;
+
+		int x = player.getPos()[0] - (resolution[0]/2);
+		int y = player.getPos()[1] - (resolution[1]/2);
+
+		aiView[0] = Math.max(0, Math.min(x, levelSize[0]-resolution[0]));
+		aiView[1] = Math.max(0, Math.min(y, levelSize[1]-resolution[1]));
+	}
+
+	/**
+	 * Returns true if the entity is within the given number of screens of the edge of the screen ({@link GameData#aiView})
+	 * @param e
+	 * @param screens
+	 * @return
+	 */
+	private boolean isWithinScreen(Entity e, double screens)
+	{
+		int marginX = (int) (MainCanvas.resolution[0] * screens);
+		int marginY = (int) (MainCanvas.resolution[1] * screens);
+
+		return !((e.getPos()[0] < aiView[0]-marginX) || (e.getPos()[0] > (aiView[0]+MainCanvas.resolution[0]+marginX))
+				|| (e.getPos()[1]+e.getSize()[1] < aiView[1]-marginY) || (e.getPos()[1] > (aiView[1]+MainCanvas.resolution[1]+marginY)));
+	}
+
+	/**
+	 * Method to update all the time based values in the game (system messages, character cooldowns and entity animations)
+	 * @param time
+	 */
+	public void updateTime(long time)
+	{
+		ArrayList<SystemMessage> newMessages = new ArrayList<SystemMessage>();
+
+		// Time out system messages in the message box
+		int i = 0;
+		for (SystemMessage sys : systemMessages)
+		{
+			if (i < 10)
+				sys.aliveTime -= time;
+
+			if (sys.aliveTime > 0)
+				newMessages.add(sys);
+
+			i++;
+		}
+
+		systemMessages = newMessages;
+
+		Character.updateTime(time);
+
+		Character.timePlayed += time;
+		Character.genderSwapCD -= time;
+
+		long start = Profiler.begin();
+
+		// Update animation for entities. Entities spawned while updating are not added until the end of the tick
+		for (int j = 0; j < entities.size(); j++)
+		{
+			entities.get(j).updateTime(time);
+		}
+
+		Profiler.end(Profiler.UPDATE_TIME, start);
 	}
 
 	/**
@@ -491,6 +998,11 @@ public class GameData {
 	volatile int loadStage = 0;
 	volatile String loadText = "";
 
+	/**
+	 * Whether a game or level is currently being loaded. The {@link RenderThread} does not draw while this is true
+	 */
+	volatile boolean loading = false;
+
 	public void loadGame(final File file)
 	{	
 		loadStage = 0;
@@ -498,9 +1010,25 @@ public class GameData {
 		final int state = Main.getState();
 		final GameData gd = this;
 
-		SaveGame.loadGame(file, gd);
+		// A saved game cannot be replayed from the start of the recording
+		InputRecorder.stopRecording();
+
+		loading = true;
+		try {
+			LevelLoader.run(new Runnable() {
+				@Override
+				public void run()
+				{
+					SaveGame.loadGame(file, gd);
+				}
+			});
+		} finally {
+			loading = false;
+		}
 		Main.setState(state);
 		System.gc();	
+
+		LevelPrefetcher.prefetchFrom(this.levelName, entities);
 	}
 
 	public void loadLevel(final String levelName)
@@ -510,10 +1038,25 @@ public class GameData {
 		final int state = Main.getState();
 		final GameData gd = this;
 
-		SaveGame.loadLevel(levelName, gd);
+		loading = true;
+		try {
+			LevelLoader.run(new Runnable() {
+				@Override
+				public void run()
+				{
+					SaveGame.loadLevel(levelName, gd);
+				}
+			});
+		} finally {
+			loading = false;
+		}
 		Main.setState(state);
 		System.gc();	
 
+		InputRecorder.levelLoaded(this.levelName);
+
+		LevelPrefetcher.prefetchFrom(this.levelName, entities);
+
 	}
 
 
@@ -522,114 +1065,278 @@ public class GameData {
 	 */
 	public void fillCollisionMap()
 	{
-		levelSize[0] = background[3].getWidth();
-		levelSize[1] = background[3].getHeight();
+		createCollisionMap();
 
-		createCollisionMap(levelSize[0], levelSize[1]);
+		collisionMap.fill();
+	}
 
-		boolean collide = false;
+	/**
+	 * Returns true if the given pixel of the level is solid. Pixels outside the level are always solid.
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public boolean checkCollision(int x, int y)
+	{
+		return collisionMap.isSolid(x, y);
+	}
 
-		for (int x = 0; x < levelSize[0]; x++)
-		{
-			for (int y = 0; y < levelSize[1]; y++)
-			{
-				// Extract pixel colour
-				int colour = background[3].getRGB(x, y);
+	/**
+	 * Returns true if any pixel of the level in the given rectangle is solid. Pixels outside the level are always solid.
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public boolean checkCollision(int x, int y, int width, int height)
+	{
+		return collisionMap.isSolid(x, y, width, height);
+	}
 
-				// Extract alpha value
-				int alpha = (colour>>24) & 0xff;
+	/**
+	 * Returns true if there are no solid pixels on the line between the two points (inclusive). Pixels outside the
+	 * level are always solid.
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 * @return
+	 */
+	public boolean checkLineOfSight(int x0, int y0, int x1, int y1)
+	{
+		return collisionMap.isLineClear(x0, y0, x1, y1);
+	}
 
-				collide = (alpha != 0);
+	/**
+	 * Method to create an empty collision map for the current collision layer. Each part of the map is filled in the first time it is checked
+	 */
+	public void createCollisionMap()
+	{
+		setCollisionMap(new CollisionMap(background[3]));
+	}
 
-				if (collide)
-				{
-					// If alpha is not 0 then store true in the collision map
-					collisionMap[x][y] = 2;
-				}
-				else
-				{
-					// If alpha is not 0 then store true in the collision map
-					collisionMap[x][y] = 1;
-				}
-			}
-		}
+	/**
+	 * Method to use the given collision map for the current level. The level size is taken from the map
+	 * @param map
+	 */
+	public void setCollisionMap(CollisionMap map)
+	{
+		levelSize[0] = map.width;
+		levelSize[1] = map.height;
+
+		collisionMap = map;
+
+		collisionX = levelSize[0];
+		collisionY = levelSize[1];
+
+		entityGrid.resize(levelSize[0], levelSize[1]);
+		rebuildEntityGrid();
 	}
 
-	public boolean checkCollision(int x, int y)
+	/**
+	 * Returns {@link GameData#collisionMap}
+	 * @return
+	 */
+	public CollisionMap getCollisionMap()
 	{
-		boolean collide = false;
+		return collisionMap;
+	}
 
-		if (collisionMap[x][y] == 1)
-		{
-			collide = false;
-		}
-		else if (collisionMap[x][y] == 2)
-		{
-			collide = true;
-		}
-		else
-		{
-			// Extract pixel colour
-			int colour = background[3].getRGB(x, y);
 
-			// Extract alpha value
-			int alpha = (colour>>24) & 0xff;
 
-			collide = (alpha != 0);
 
-			if (collide)
-			{
-				// If alpha is not 0 then store true in the collision map
-				collisionMap[x][y] = 2;
-			}
-			else
-			{
-				// If alpha is not 0 then store true in the collision map
-				collisionMap[x][y] = 1;
-			}
-		}
 
+	/**
+	 *  Returns {@link GameData#entities}
+	 * @return the entities
+	 */
+	public EntityRegistry getEntities() {
+		return entities;
+	}
+
+	/**
+	 * Method to add an entity to the game that does not need to be found by name (e.g. a spell or a dropped item).
+	 * Returns its handle
+	 * @param e
+	 * @return
+	 */
+	public int addEntity(Entity e)
+	{
+		int handle = entities.add(e);
+
+		entityGrid.add(e);
 
-		return collide;
+		return handle;
 	}
 
-	public void createCollisionMap(int x, int y)
-	{	
-		collisionMap = new int[x][y];
+	/**
+	 * Method to add an entity to the game that can be found by the given name. Any other entity with that name is
+	 * removed. Returns its handle
+	 * @param name
+	 * @param e
+	 * @return
+	 */
+	public int addEntity(String name, Entity e)
+	{
+		Entity old = entities.get(name);
+
+		if ((old != null) && (old != e))
+			removeEntity(old);
 
-		collisionX = x;
-		collisionY = y;
+		int handle = entities.add(name, e);
+
+		entityGrid.add(e);
+
+		return handle;
 	}
 
-	public void createCollisionMap()
+	/**
+	 * Method to remove the given entity from the game
+	 * @param e
+	 */
+	public void removeEntity(Entity e)
 	{
-		levelSize[0] = background[3].getWidth();
-		levelSize[1] = background[3].getHeight();
+		entities.remove(e);
+		entityGrid.remove(e);
+	}
 
-		collisionMap = new int[levelSize[0]][levelSize[1]];
+	/**
+	 * Method to add an entity to the game at the end of the current tick (see {@link GameData#applyEntityCommands()}).
+	 * Used for anything spawned while the simulation is running (spells, dropped items, exp orbs), so the entities
+	 * are never added to while they are being walked
+	 * @param e
+	 */
+	public void spawnEntity(Entity e)
+	{
+		spawns.add(e);
+	}
 
-		collisionX = levelSize[0];
-		collisionY = levelSize[1];
+	/**
+	 * Method to remove an entity from the game at the end of the current tick (see
+	 * {@link GameData#applyEntityCommands()}). Does nothing if the entity is already waiting to be removed
+	 * @param e
+	 */
+	public void despawnEntity(Entity e)
+	{
+		if (e.despawnQueued)
+			return;
+
+		e.despawnQueued = true;
+		despawns.add(e);
 	}
 
+	/**
+	 * Method to add and remove all the entities spawned and despawned since this was last called. Called once at the
+	 * end of every tick. Spawns are added first, so an entity spawned and despawned in the same tick is gone
+	 */
+	public void applyEntityCommands()
+	{
+		for (int i = 0; i < spawns.size(); i++)
+		{
+			addEntity(spawns.get(i));
+		}
+		spawns.clear();
+
+		for (int i = 0; i < despawns.size(); i++)
+		{
+			Entity e = despawns.get(i);
+			e.despawnQueued = false;
 
+			removeEntity(e);
+
+			// Nothing holds on to a removed spell or exp orb, so they can be used again
+			if (e instanceof Spell)
+				SpellList.recycle((Spell) e);
+			else if (e instanceof Item)
+				ItemList.recycle((Item) e);
+		}
+		despawns.clear();
+	}
 
+	/**
+	 * Method to forget all the spawns and despawns waiting to be applied. Used when every entity is replaced (e.g.
+	 * when the level changes), so entities from the old level are not added to the new one
+	 */
+	private void discardEntityCommands()
+	{
+		for (int i = 0; i < despawns.size(); i++)
+		{
+			despawns.get(i).despawnQueued = false;
+		}
 
+		spawns.clear();
+		despawns.clear();
+	}
 
 	/**
-	 *  Returns {@link GameData#gameEntities}
-	 * @return the gameEntities
+	 * Returns the number of entities left until the next tick by the AI budget in the last tick
+	 * @return
 	 */
-	public HashMap<String, Entity> getGameEntities() {
-		return gameEntities;
+	public int getAIDeferredLastTick()
+	{
+		return aiDeferredLastTick;
 	}
 
 	/**
-	 * Sets {@link GameData#gameEntities}
-	 * @param gameEntities to set
+	 * Returns the number of entities left until the next tick by the AI budget since the game started
+	 * @return
+	 */
+	public long getAIDeferredTotal()
+	{
+		return aiDeferredTotal;
+	}
+
+	/**
+	 * Returns the number of ticks the AI budget has run out in since the game started
+	 * @return
+	 */
+	public long getAIOverrunTicks()
+	{
+		return aiOverrunTicks;
+	}
+
+	/**
+	 * Returns {@link GameData#entityGrid}
+	 * @return
+	 */
+	public SpatialGrid getEntityGrid()
+	{
+		return entityGrid;
+	}
+
+	/**
+	 * Method to empty {@link GameData#entityGrid} and add every entity in {@link GameData#entities} to it again
+	 */
+	public void rebuildEntityGrid()
+	{
+		entityGrid.rebuild(entities);
+	}
+
+	/**
+	 * Method to replace all the entities in the game with the ones in the given map (as stored in levels and saves).
+	 * Each entity can be found by its key in the map
+	 * @param gameEntities
 	 */
 	public void setGameEntities(HashMap<String, Entity> gameEntities) {
-		this.gameEntities = gameEntities;
+		discardEntityCommands();
+		entities.load(gameEntities);
+
+		// Start the AI from scratch, so the new entities are updated the same way whatever came before them
+		aiTick = 0;
+		aiCursor = 0;
+		aiCostPerEntity = 0;
+
+		rebuildEntityGrid();
+	}
+
+	/**
+	 * Returns all the entities in the game in a map keyed by name (the format levels and saves store them in). See
+	 * {@link EntityRegistry#toMap()}
+	 * @return
+	 */
+	public HashMap<String, Entity> toEntityMap() {
+		return entities.toMap();
 	}
 
 	/**
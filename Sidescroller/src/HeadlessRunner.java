@@ -0,0 +1,241 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Class used to run the game simulation without a display. <p>
+ * Loads a level, then runs the simulation as fast as possible for a set number of ticks, driving the player with a
+ * scripted set of key presses instead of the keyboard. Used to soak test levels and to measure how fast the
+ * simulation runs. Must be run from the same directory as the game (so the Data folder can be found). <p>
+ * Usage: HeadlessRunner level [ticks] [script] <p>
+ * The script is a text file with one line per input change, in the form "tick key key ...". The keys (up, down, left,
+ * right, space, enter, key1 - key5) are pressed when that tick is reached and released when the next line is reached.
+ * Use "-" to release all keys. Lines starting with # are ignored.
+ * @author Lyeeedar
+ *
+ */
+public class HeadlessRunner {
+
+	/**
+	 * The scripted input. Each entry is the tick it starts at and the keys held down
+	 */
+	private final ArrayList<Long> scriptTicks = new ArrayList<Long>();
+	private final ArrayList<String[]> scriptKeys = new ArrayList<String[]>();
+
+	/**
+	 * The next script entry to apply
+	 */
+	private int scriptIndex = 0;
+
+	public static void main(String[] args)
+	{
+		if (args.length < 1)
+		{
+			System.err.println("Usage: HeadlessRunner level [ticks] [script]");
+			System.exit(1);
+		}
+
+		String level = args[0];
+		long ticks = (args.length > 1) ? Long.parseLong(args[1]) : 10000;
+
+		HeadlessRunner runner = new HeadlessRunner();
+
+		if (args.length > 2)
+		{
+			try {
+				runner.loadScript(args[2]);
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+
+		init();
+
+		runner.run(level, ticks);
+
+		System.exit(0);
+	}
+
+	/**
+	 * Method to set up the game to run without a display. Must be called before anything else in the game is used.
+	 */
+	public static void init()
+	{
+		System.setProperty("java.awt.headless", "true");
+
+		Main.headless = true;
+		Main.threadedRendering = false;
+		SoundEffect.volume = SoundEffect.Volume.MUTE;
+
+		// Reading levels ahead would compete with the run being measured
+		LevelPrefetcher.enabled = false;
+
+		// Run every entity's AI every tick, so results do not depend on how fast the machine is
+		GameData.aiBudget = 0;
+
+		Character.resetAll();
+	}
+
+	/**
+	 * Method to read the input script from a file. See {@link HeadlessRunner}
+	 * @param file
+	 * @throws IOException
+	 */
+	public void loadScript(String file) throws IOException
+	{
+		BufferedReader in = new BufferedReader(new FileReader(file));
+
+		try {
+			String line;
+			while ((line = in.readLine()) != null)
+			{
+				line = line.trim();
+
+				if ((line.length() == 0) || (line.startsWith("#")))
+					continue;
+
+				String[] parts = line.split("\\s+");
+
+				String[] keys = new String[parts.length-1];
+				System.arraycopy(parts, 1, keys, 0, keys.length);
+
+				scriptTicks.add(Long.parseLong(parts[0]));
+				scriptKeys.add(keys);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Method to load the given level and simulate it for the given number of ticks, then print out how long it took.
+	 * @param level
+	 * @param ticks
+	 */
+	public void run(String level, long ticks)
+	{
+		GameData gamedata = Main.gamedata;
+
+		// Use a new session so no saves from a real game are picked up
+		GameData.gameSessionID = "Headless" + System.nanoTime();
+
+		long loadStart = System.nanoTime();
+		gamedata.loadLevel(level);
+		long loadTime = System.nanoTime() - loadStart;
+
+		Main.setState(1);
+
+		long maxTickTime = 0;
+		long start = System.nanoTime();
+
+		long tick;
+		for (tick = 0; tick < ticks; tick++)
+		{
+			applyScript(tick);
+
+			long tickStart = System.nanoTime();
+
+			step(gamedata);
+
+			long tickTime = System.nanoTime() - tickStart;
+			if (tickTime > maxTickTime)
+				maxTickTime = tickTime;
+
+			if (Main.getState() == 0)
+				break;
+		}
+
+		long totalTime = System.nanoTime() - start;
+
+		double simulated = (double) tick * gamedata.getGameSpeed();
+		double wall = totalTime / 1000000.0;
+
+		System.out.println("Level:              " + level + " (ended in " + gamedata.levelName + ")");
+		System.out.println("Load time:          " + (loadTime / 1000000) + " ms");
+		System.out.println("Ticks:              " + tick);
+		System.out.println("Entities:           " + gamedata.getEntities().size());
+		System.out.println("Wall time:          " + (long) wall + " ms");
+		System.out.println("Simulated time:     " + (long) simulated + " ms");
+		System.out.println("Ticks per second:   " + (long) ((tick * 1000.0) / Math.max(wall, 1)));
+		System.out.println("Speed vs real time: " + String.format("%.1f", simulated / Math.max(wall, 1)) + "x");
+		System.out.println("Average tick:       " + ((tick > 0) ? (totalTime / tick) / 1000 : 0) + " us");
+		System.out.println("Longest tick:       " + (maxTickTime / 1000) + " us");
+		System.out.println("AI deferred:        " + gamedata.getAIDeferredTotal() + " entities over " + gamedata.getAIOverrunTicks() + " ticks");
+	}
+
+	/**
+	 * Method to advance the game by a single tick. Does the same work as the game loop in {@link Main#loop}, apart from
+	 * drawing.
+	 * @param gamedata
+	 */
+	public static void step(GameData gamedata)
+	{
+		// Scenes are played through at simulation speed
+		if (Main.getState() == 5)
+		{
+			gamedata.currentScene.updateTime(gamedata.getGameSpeed());
+			return;
+		}
+
+		gamedata.tick();
+
+		// Capturing the snapshot evaluates the dialogue, which can trigger game events
+		Main.snapshots.getBack().capture(gamedata, true);
+		Main.snapshots.publish();
+	}
+
+	/**
+	 * Method to update the key values in {@link MainCanvas} from the script
+	 * @param tick
+	 */
+	private void applyScript(long tick)
+	{
+		while ((scriptIndex < scriptTicks.size()) && (scriptTicks.get(scriptIndex) <= tick))
+		{
+			MainCanvas.up = false;
+			MainCanvas.down = false;
+			MainCanvas.left = false;
+			MainCanvas.right = false;
+			MainCanvas.space = false;
+			MainCanvas.enter = false;
+			MainCanvas.key1 = false;
+			MainCanvas.key2 = false;
+			MainCanvas.key3 = false;
+			MainCanvas.key4 = false;
+			MainCanvas.key5 = false;
+
+			for (String key : scriptKeys.get(scriptIndex))
+			{
+				if (key.equals("up"))
+					MainCanvas.up = true;
+				else if (key.equals("down"))
+					MainCanvas.down = true;
+				else if (key.equals("left"))
+					MainCanvas.left = true;
+				else if (key.equals("right"))
+					MainCanvas.right = true;
+				else if (key.equals("space"))
+					MainCanvas.space = true;
+				else if (key.equals("enter"))
+					MainCanvas.enter = true;
+				else if (key.equals("key1"))
+					MainCanvas.key1 = true;
+				else if (key.equals("key2"))
+					MainCanvas.key2 = true;
+				else if (key.equals("key3"))
+					MainCanvas.key3 = true;
+				else if (key.equals("key4"))
+					MainCanvas.key4 = true;
+				else if (key.equals("key5"))
+					MainCanvas.key5 = true;
+				else if (!key.equals("-"))
+					System.err.println("Unknown key in script: " + key);
+			}
+
+			scriptIndex++;
+		}
+	}
+
+}
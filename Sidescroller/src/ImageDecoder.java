@@ -0,0 +1,221 @@
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Class used to decode images straight into the format the display draws fastest (see
+ * {@link GameData#toCompatibleImage(BufferedImage, GraphicsConfiguration)}), and to decode several images at once. <p>
+ * Where the png's pixels are already laid out the same as the display's images (8 bit RGB or RGBA, not premultiplied)
+ * the reader is given a compatible image to decode into, so there is no second copy of the image to convert and
+ * throw away. Anything else (e.g. paletted pngs) is decoded as normal and converted afterwards. <p>
+ * The graphics configuration is looked up once and kept. Without a display images are left in the format they were
+ * decoded in. <p>
+ * {@link ImageDecoder#submit(InputStream)} decodes on a pool of at most {@link ImageDecoder#maxThreads} threads, so
+ * the five layers of a level can be decoded at the same time.
+ * @author Lyeeedar
+ *
+ */
+public class ImageDecoder {
+
+	/**
+	 * The most images decoded at the same time
+	 */
+	public static int maxThreads = Math.max(1, Math.min(5, Runtime.getRuntime().availableProcessors()));
+
+	private static ExecutorService executor;
+
+	/**
+	 * The configuration of the display the images are drawn to. Null until looked up, or if there is no display
+	 */
+	private static volatile GraphicsConfiguration config;
+	private static volatile boolean configLookedUp = false;
+
+	/**
+	 * Returns the configuration of the display the images are drawn to, or null if there is no display. Looked up the
+	 * first time it is asked for
+	 * @return
+	 */
+	public static GraphicsConfiguration getGraphicsConfiguration()
+	{
+		if (!configLookedUp)
+		{
+			synchronized (ImageDecoder.class)
+			{
+				if (!configLookedUp)
+				{
+					if (Main.gc != null)
+						config = Main.gc;
+					else if (!GraphicsEnvironment.isHeadless())
+						config = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+
+					configLookedUp = true;
+				}
+			}
+		}
+
+		return config;
+	}
+
+	/**
+	 * Method to start decoding the given stream on another thread. The stream is closed once it has been read. Use
+	 * {@link LevelLoader#get(Future)} to wait for the image
+	 * @param in
+	 * @return
+	 */
+	public static synchronized Future<BufferedImage> submit(final InputStream in)
+	{
+		if (executor == null)
+		{
+			executor = Executors.newFixedThreadPool(maxThreads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "Image Decoder");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+
+		return executor.submit(new Callable<BufferedImage>() {
+			@Override
+			public BufferedImage call() throws IOException
+			{
+				return decode(in);
+			}
+		});
+	}
+
+	/**
+	 * Method to decode the given stream into an image compatible with the display. The stream is closed once it has
+	 * been read. Returns null if the stream is not an image
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static BufferedImage decode(InputStream in) throws IOException
+	{
+		if (in == null)
+			throw new IllegalArgumentException("input == null!");
+
+		try {
+			ImageInputStream iis = ImageIO.createImageInputStream(in);
+			if (iis == null)
+				return null;
+
+			try {
+				Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+				if (!readers.hasNext())
+					return null;
+
+				ImageReader reader = readers.next();
+				try {
+					reader.setInput(iis, true, true);
+
+					return decode(reader, getGraphicsConfiguration());
+				} finally {
+					reader.dispose();
+				}
+			} finally {
+				iis.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Method to decode the first image of the reader into an image compatible with the given configuration. Without a
+	 * configuration the image is left as it was decoded
+	 * @param reader
+	 * @param gc
+	 * @return
+	 * @throws IOException
+	 */
+	static BufferedImage decode(ImageReader reader, GraphicsConfiguration gc) throws IOException
+	{
+		if (gc == null)
+			return reader.read(0);
+
+		ImageTypeSpecifier raw = reader.getRawImageType(0);
+		int transparency = (raw == null) ? ColorModel.TRANSLUCENT : raw.getColorModel().getTransparency();
+
+		// Only make the compatible image here if the reader can write into it, otherwise the conversion makes its own
+		if (canDecodeInto(raw, gc.getColorModel(transparency)))
+			return decodeInto(reader, gc.createCompatibleImage(reader.getWidth(0), reader.getHeight(0), transparency));
+
+		BufferedImage image = reader.read(0);
+
+		return GameData.toCompatibleImage(image, gc);
+	}
+
+	/**
+	 * Method to decode the first image of the reader into the given image, which must be the same size. See
+	 * {@link ImageDecoder#canDecodeInto(ImageTypeSpecifier, ColorModel)}
+	 * @param reader
+	 * @param destination
+	 * @return
+	 * @throws IOException
+	 */
+	static BufferedImage decodeInto(ImageReader reader, BufferedImage destination) throws IOException
+	{
+		ImageReadParam param = reader.getDefaultReadParam();
+		param.setDestination(destination);
+
+		return reader.read(0, param);
+	}
+
+	/**
+	 * Returns true if pixels of the given type can be written straight into the raster of an image with the given
+	 * colour model, which copies them band by band. Both must have 8 bit RGB bands in the same order, with or without
+	 * alpha, and the target must not be premultiplied
+	 * @param raw
+	 * @param target
+	 * @return
+	 */
+	static boolean canDecodeInto(ImageTypeSpecifier raw, ColorModel target)
+	{
+		if ((raw == null) || (target == null) || (target.isAlphaPremultiplied()))
+			return false;
+
+		ColorModel source = raw.getColorModel();
+
+		if ((source instanceof IndexColorModel) || (target instanceof IndexColorModel))
+			return false;
+
+		if ((source.getColorSpace().getType() != ColorSpace.TYPE_RGB) || (!source.getColorSpace().isCS_sRGB()))
+			return false;
+
+		if ((source.hasAlpha() != target.hasAlpha()) || (source.getNumComponents() != target.getNumComponents()))
+			return false;
+
+		if (raw.getSampleModel().getNumBands() != target.createCompatibleSampleModel(1, 1).getNumBands())
+			return false;
+
+		for (int i = 0; i < source.getNumComponents(); i++)
+		{
+			if ((source.getComponentSize(i) != 8) || (target.getComponentSize(i) != 8))
+				return false;
+		}
+
+		return true;
+	}
+
+}
@@ -0,0 +1,459 @@
+import java.awt.event.KeyEvent;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Class used to record a game so it can be played back exactly by {@link ReplayRunner}, e.g. to reproduce a slowdown
+ * or to compare the speed of two builds on the same session. <p>
+ * Recording is turned on by starting the game with "-record file". Each new game is recorded from the start (the
+ * file is overwritten), and recording stops when a saved game is loaded. While recording: <p>
+ * - {@link Main#ran} is seeded with a known seed, which is saved in the log <p>
+ * - The AI budget ({@link GameData#aiBudget}) is turned off, as it depends on how fast the machine is <p>
+ * - Key presses are held back and applied at the start of the next tick, so a key can never change part way through
+ * a tick <p>
+ * - The dialogue is evaluated after every tick, the same as in a replay <p>
+ * Changes made from the menus (e.g. equipping spells) are not recorded. <p>
+ * File layout (big endian): int magic, int version, long seed, int game speed, then a list of records each starting
+ * with a byte: <p>
+ * {@link InputRecorder#KEYS} short keys = the keys held down from now on (see {@link InputRecorder#getKeys()}) <p>
+ * {@link InputRecorder#TICKS} varint count = run this many game ticks <p>
+ * {@link InputRecorder#SCENE} varint time = update the current scene by this many ms <p>
+ * {@link InputRecorder#LEVEL} utf name = the level just loaded (the first record is always the starting level) <p>
+ * {@link InputRecorder#END} = the end of the recording
+ * @author Lyeeedar
+ *
+ */
+public class InputRecorder {
+
+	/**
+	 * "SRPL"
+	 */
+	static final int MAGIC = 0x5352504C;
+
+	/**
+	 * Increase whenever the file layout changes
+	 */
+	static final int VERSION = 1;
+
+	// ----------- Records ----------- //
+	static final int END = 0;
+	static final int KEYS = 1;
+	static final int TICKS = 2;
+	static final int SCENE = 3;
+	static final int LEVEL = 4;
+	// ----------- Records ----------- //
+
+	// ----------- Key bits ----------- //
+	static final int UP = 1;
+	static final int DOWN = 1 << 1;
+	static final int LEFT = 1 << 2;
+	static final int RIGHT = 1 << 3;
+	static final int SPACE = 1 << 4;
+	static final int ENTER = 1 << 5;
+	static final int KEY1 = 1 << 6;
+	static final int KEY2 = 1 << 7;
+	static final int KEY3 = 1 << 8;
+	static final int KEY4 = 1 << 9;
+	static final int KEY5 = 1 << 10;
+	// ----------- Key bits ----------- //
+
+	/**
+	 * The file new games are recorded to. Null = no recording
+	 */
+	public static String recordFile = null;
+
+	/**
+	 * The log being written. Null if not recording
+	 */
+	private static DataOutputStream out;
+
+	/**
+	 * Read by the key listener on the AWT thread
+	 */
+	private static volatile boolean recording = false;
+
+	/**
+	 * The keys last written to the log
+	 */
+	private static int keys;
+
+	/**
+	 * The number of ticks run since the last record, written as a single record once something else happens
+	 */
+	private static int pendingTicks;
+
+	/**
+	 * The AI budget from before recording started, put back once it stops
+	 */
+	private static double savedBudget;
+
+	/**
+	 * Key presses (the key's bit) and releases (minus the key's bit) waiting for the next tick
+	 */
+	private static final Object queueLock = new Object();
+	private static int[] queuedKeys = new int[16];
+	private static int queuedCount = 0;
+
+	/**
+	 * Method to start recording to {@link InputRecorder#recordFile}. Does nothing if it is not set. Any recording
+	 * already going is stopped first
+	 * @param gameSpeed the length of a tick in ms
+	 */
+	public static void startRecording(long gameSpeed)
+	{
+		if (recordFile == null)
+			return;
+
+		stopRecording();
+
+		long seed = System.nanoTime();
+		Main.ran.setSeed(seed);
+
+		synchronized (queueLock)
+		{
+			queuedCount = 0;
+		}
+
+		savedBudget = GameData.aiBudget;
+
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(recordFile)));
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(seed);
+			out.writeInt((int) gameSpeed);
+		} catch (IOException e) {
+			e.printStackTrace();
+			close();
+			return;
+		}
+
+		keys = -1;
+		pendingTicks = 0;
+
+		GameData.aiBudget = 0;
+
+		recording = true;
+
+		System.out.println("Recording to " + recordFile);
+	}
+
+	/**
+	 * Method to finish the log and stop recording. Does nothing if not recording
+	 */
+	public static void stopRecording()
+	{
+		if (out == null)
+			return;
+
+		try {
+			flushTicks();
+			out.writeByte(END);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		close();
+	}
+
+	/**
+	 * Returns true if a game is being recorded
+	 * @return
+	 */
+	public static boolean isRecording()
+	{
+		return recording;
+	}
+
+	/**
+	 * Method to be called just before every game tick. Applies the held back key presses and records the tick
+	 */
+	public static void beforeTick()
+	{
+		applyQueuedKeys();
+
+		if (out == null)
+			return;
+
+		try {
+			writeKeys();
+			pendingTicks++;
+		} catch (IOException e) {
+			e.printStackTrace();
+			close();
+		}
+	}
+
+	/**
+	 * Method to be called just before every update of a scene. Applies the held back key presses and records the update
+	 * @param time the time (in ms) the scene is about to be updated by
+	 */
+	public static void beforeScene(long time)
+	{
+		applyQueuedKeys();
+
+		if (out == null)
+			return;
+
+		try {
+			writeKeys();
+			flushTicks();
+			out.writeByte(SCENE);
+			writeVarInt((int) Math.min(time, Integer.MAX_VALUE));
+		} catch (IOException e) {
+			e.printStackTrace();
+			close();
+		}
+	}
+
+	/**
+	 * Method to be called after a level has been loaded
+	 * @param levelName
+	 */
+	public static void levelLoaded(String levelName)
+	{
+		if (out == null)
+			return;
+
+		try {
+			flushTicks();
+			out.writeByte(LEVEL);
+			out.writeUTF(levelName);
+		} catch (IOException e) {
+			e.printStackTrace();
+			close();
+		}
+	}
+
+	/**
+	 * Method to hold back a key press until the next tick. Called by the key listener. Returns true if the key was
+	 * held back, false if it should be applied straight away (not recording, not in the game or not a recorded key)
+	 * @param keyCode
+	 * @param pressed
+	 * @return
+	 */
+	public static boolean keyEvent(int keyCode, boolean pressed)
+	{
+		if (!recording)
+			return false;
+
+		if ((Main.getState() != 1) && (Main.getState() != 5))
+			return false;
+
+		int bit = getKeyBit(keyCode);
+		if (bit == 0)
+			return false;
+
+		synchronized (queueLock)
+		{
+			if (queuedCount == queuedKeys.length)
+			{
+				int[] grown = new int[queuedCount * 2];
+				System.arraycopy(queuedKeys, 0, grown, 0, queuedCount);
+				queuedKeys = grown;
+			}
+
+			queuedKeys[queuedCount] = pressed ? bit : -bit;
+			queuedCount++;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Method to apply every held back key press, in the order they happened
+	 */
+	public static void applyQueuedKeys()
+	{
+		synchronized (queueLock)
+		{
+			if (queuedCount == 0)
+				return;
+
+			int held = getKeys();
+
+			for (int i = 0; i < queuedCount; i++)
+			{
+				int key = queuedKeys[i];
+
+				if (key > 0)
+					held |= key;
+				else
+					held &= ~(-key);
+			}
+
+			queuedCount = 0;
+
+			setKeys(held);
+		}
+	}
+
+	/**
+	 * Returns the recorded keys currently held down in {@link MainCanvas}, one bit per key
+	 * @return
+	 */
+	public static int getKeys()
+	{
+		int held = 0;
+
+		if (MainCanvas.up)
+			held |= UP;
+		if (MainCanvas.down)
+			held |= DOWN;
+		if (MainCanvas.left)
+			held |= LEFT;
+		if (MainCanvas.right)
+			held |= RIGHT;
+		if (MainCanvas.space)
+			held |= SPACE;
+		if (MainCanvas.enter)
+			held |= ENTER;
+		if (MainCanvas.key1)
+			held |= KEY1;
+		if (MainCanvas.key2)
+			held |= KEY2;
+		if (MainCanvas.key3)
+			held |= KEY3;
+		if (MainCanvas.key4)
+			held |= KEY4;
+		if (MainCanvas.key5)
+			held |= KEY5;
+
+		return held;
+	}
+
+	/**
+	 * Method to set the recorded keys in {@link MainCanvas} from the given bits
+	 * @param held
+	 */
+	public static void setKeys(int held)
+	{
+		MainCanvas.up = (held & UP) != 0;
+		MainCanvas.down = (held & DOWN) != 0;
+		MainCanvas.left = (held & LEFT) != 0;
+		MainCanvas.right = (held & RIGHT) != 0;
+		MainCanvas.space = (held & SPACE) != 0;
+		MainCanvas.enter = (held & ENTER) != 0;
+		MainCanvas.key1 = (held & KEY1) != 0;
+		MainCanvas.key2 = (held & KEY2) != 0;
+		MainCanvas.key3 = (held & KEY3) != 0;
+		MainCanvas.key4 = (held & KEY4) != 0;
+		MainCanvas.key5 = (held & KEY5) != 0;
+	}
+
+	/**
+	 * Returns the bit for the given key code (using the same keys as {@link MainCanvas#keyPressed(KeyEvent)}), or 0 if
+	 * the key is not recorded
+	 * @param keyCode
+	 * @return
+	 */
+	static int getKeyBit(int keyCode)
+	{
+		switch (keyCode)
+		{
+		case KeyEvent.VK_W:
+		case KeyEvent.VK_UP:
+			return UP;
+		case KeyEvent.VK_S:
+		case KeyEvent.VK_DOWN:
+			return DOWN;
+		case KeyEvent.VK_A:
+		case KeyEvent.VK_LEFT:
+			return LEFT;
+		case KeyEvent.VK_D:
+		case KeyEvent.VK_RIGHT:
+			return RIGHT;
+		case KeyEvent.VK_SPACE:
+			return SPACE;
+		case KeyEvent.VK_ENTER:
+			return ENTER;
+		case KeyEvent.VK_1:
+			return KEY1;
+		case KeyEvent.VK_2:
+			return KEY2;
+		case KeyEvent.VK_3:
+			return KEY3;
+		case KeyEvent.VK_4:
+			return KEY4;
+		case KeyEvent.VK_5:
+			return KEY5;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * Method to write a {@link InputRecorder#KEYS} record if the keys have changed since the last one
+	 * @throws IOException
+	 */
+	private static void writeKeys() throws IOException
+	{
+		int held = getKeys();
+
+		if (held == keys)
+			return;
+
+		flushTicks();
+		out.writeByte(KEYS);
+		out.writeShort(held);
+
+		keys = held;
+	}
+
+	/**
+	 * Method to write the ticks run since the last record
+	 * @throws IOException
+	 */
+	private static void flushTicks() throws IOException
+	{
+		if (pendingTicks == 0)
+			return;
+
+		out.writeByte(TICKS);
+		writeVarInt(pendingTicks);
+
+		pendingTicks = 0;
+	}
+
+	/**
+	 * Method to write a positive int using as few bytes as possible (7 bits per byte, the top bit set on every byte but
+	 * the last)
+	 * @param value
+	 * @throws IOException
+	 */
+	private static void writeVarInt(int value) throws IOException
+	{
+		while ((value & ~0x7F) != 0)
+		{
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+
+		out.writeByte(value);
+	}
+
+	/**
+	 * Method to close the log and put the AI budget back
+	 */
+	private static void close()
+	{
+		recording = false;
+
+		if (out == null)
+			return;
+
+		try {
+			out.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		out = null;
+
+		GameData.aiBudget = savedBudget;
+	}
+
+}
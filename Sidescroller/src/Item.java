@@ -43,6 +43,24 @@ public class Item extends Entity {
 		launch();
 	}
 	
+	/**
+	 * Method to set an item taken from a pool in {@link ItemList} back up with the given values, as if it had just
+	 * been created. See {@link Entity#reset}
+	 */
+	protected void reinit(String name, String description, String spriteFile, int[] pos, int number, int type)
+	{
+		reset(name, 1, 1, 1, pos, 0, spriteFile, collisionShape, null);
+		
+		this.description = description;
+		this.number = number;
+		this.passable = true;
+		this.animStages = 1;
+		this.type = type;
+		
+		calculateCollision();
+		launch();
+	}
+	
 	@Override
 	public void processSpritesheet()
 	{
@@ -103,7 +121,7 @@ public class Item extends Entity {
 	
 	public void pickUp()
 	{
-		Entity e = Main.gamedata.getGameEntities().get("Player");
+		Entity e = Main.gamedata.getEntities().get("Player");
 		
 		Rectangle tr = new Rectangle(pos[0]+collisionShape[0], pos[1]+collisionShape[1], collisionShape[2], collisionShape[3]);
 		Rectangle pr = new Rectangle(e.pos[0]+e.collisionShape[0], e.pos[1]+e.collisionShape[1], e.collisionShape[2], e.collisionShape[3]);
@@ -130,16 +148,8 @@ public class Item extends Entity {
 		}
 		
 		// Check the collision box for this entity to see if any of the level is inside it (any non-transparent pixels)
-		for (int nx = x; nx < x+collisionShape[2]; nx++)
-		{
-			for (int ny = y+collisionShape[3]-1; ny >= y; ny--)
-			{
-				if (nx >= Main.gamedata.collisionX)
-					return this.getName();
-				else if (Main.gamedata.checkCollision(nx, ny))
-					return this.getName();
-			}
-		}
+		if (Main.gamedata.checkCollision(x, y, collisionShape[2], collisionShape[3]))
+			return this.getName();
 
 		return null;
 	}
@@ -150,6 +160,15 @@ public class Item extends Entity {
 		
 	}
 	
+	/**
+	 * Items are at rest once they have landed and stopped moving
+	 */
+	@Override
+	public boolean isAtRest()
+	{
+		return (velocity[0] == 0) && (velocity[1] == 0);
+	}
+	
 	@Override
 	public void AI()
 	{
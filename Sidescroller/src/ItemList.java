@@ -5,6 +5,12 @@
  */
 public class ItemList {
 
+	/**
+	 * The exp orbs that have been removed from the game and can be used again. Other items are not pooled, as once
+	 * picked up they live on in the player's inventory
+	 */
+	private static final EntityPool<EXPOrb> orbPool = new EntityPool<EXPOrb>(64);
+
 	public static Item getItem(String item, int[] pos, int number)
 	{
 		Item i = null;
@@ -31,4 +37,34 @@ public class ItemList {
 		
 		return i;
 	}
+	
+	/**
+	 * Method to get an exp orb worth the given amount of exp at the given position. Uses an orb from the pool if
+	 * there is one
+	 * @param pos
+	 * @param number
+	 * @return
+	 */
+	public static EXPOrb getEXPOrb(int[] pos, int number)
+	{
+		EXPOrb orb = orbPool.obtain();
+		
+		if (orb == null)
+			return new EXPOrb(pos, number);
+		
+		orb.reinit(pos, number);
+		
+		return orb;
+	}
+	
+	/**
+	 * Method to put an item that has been removed from the game back in its pool, if it is a kind of item that is
+	 * pooled. It must not be used again after this
+	 * @param i
+	 */
+	public static void recycle(Item i)
+	{
+		if (i instanceof EXPOrb)
+			orbPool.recycle((EXPOrb) i);
+	}
 }
@@ -99,6 +99,17 @@ public class Level implements Serializable{
 	 * @return
 	 */
 	public static Level load(String file)
+	{
+		return load(file, true);
+	}
+
+	/**
+	 * Method that deserializes a level object from the file given
+	 * @param file
+	 * @param count true = count the bytes read towards the progress of the current load (see {@link LevelLoader})
+	 * @return
+	 */
+	public static Level load(String file, boolean count)
 	{	
 		file = "Data/"+file;
 		Level level = null;
@@ -118,7 +129,7 @@ public class Level implements Serializable{
 				}
 			}
 			
-			ObjectInputStream oin = new ObjectInputStream(in);
+			ObjectInputStream oin = new ObjectInputStream(count ? LevelLoader.count(in) : in);
 			level = (Level) oin.readObject();
 			oin.close();
 			in.close();
@@ -0,0 +1,222 @@
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class used to keep the images and collision maps of recently visited levels, so going back to one of them (e.g.
+ * back through a door) does not decode anything. <p>
+ * Levels are kept until they take up more than {@link LevelCache#budget} bytes, then the least recently used are thrown
+ * away. A level too large for the budget on its own is never kept. Streamed levels (see {@link LevelStream}) are never
+ * kept either, as they only ever hold the chunks around the screen.
+ * @author Lyeeedar
+ *
+ */
+public class LevelCache {
+
+	/**
+	 * The most memory (in bytes) the kept levels can take up. The current level is usually one of them
+	 */
+	public static long budget = Runtime.getRuntime().maxMemory() / 4;
+
+	/**
+	 * The kept levels by name, least recently used first
+	 */
+	private final LinkedHashMap<String, TempLevelData> levels = new LinkedHashMap<String, TempLevelData>(8, 0.75f, true);
+
+	/**
+	 * The memory (in bytes) taken up by {@link LevelCache#levels}
+	 */
+	private long bytes = 0;
+
+	/**
+	 * The number of times a level was found, not found, and thrown away by the budget
+	 */
+	private long hitCount = 0;
+	private long missCount = 0;
+	private long evictionCount = 0;
+
+	/**
+	 * Returns the kept level with the given name, or null if it is not kept
+	 * @param name
+	 * @return
+	 */
+	public synchronized TempLevelData get(String name)
+	{
+		TempLevelData level = levels.get(name);
+
+		if (level != null)
+			hitCount++;
+		else
+			missCount++;
+
+		return level;
+	}
+
+	/**
+	 * Returns true if the level with the given name is kept. Does not count as a use of the level
+	 * @param name
+	 * @return
+	 */
+	public synchronized boolean contains(String name)
+	{
+		return levels.containsKey(name);
+	}
+
+	/**
+	 * Method to keep the given level, replacing any level with the same name, then throw away the least recently used
+	 * levels until the rest are within the budget
+	 * @param level
+	 */
+	public synchronized void put(TempLevelData level)
+	{
+		remove(level.name);
+
+		level.size = getSize(level);
+
+		if (level.size > budget)
+			return;
+
+		levels.put(level.name, level);
+		bytes += level.size;
+
+		trim(budget);
+	}
+
+	/**
+	 * Method to keep the data file read for the given level with its images. Does nothing if the level is not kept
+	 * @param name
+	 * @param data
+	 */
+	public synchronized void putData(String name, Level data)
+	{
+		TempLevelData level = levels.get(name);
+
+		if (level != null)
+			level.data = data;
+	}
+
+	/**
+	 * Returns the data file read ahead of time for the given level and forgets it, so it is only ever used once.
+	 * Returns null if there is none
+	 * @param name
+	 * @return
+	 */
+	public synchronized Level takeData(String name)
+	{
+		TempLevelData level = levels.get(name);
+
+		if ((level == null) || (level.data == null))
+			return null;
+
+		Level data = level.data;
+		level.data = null;
+
+		return data;
+	}
+
+	/**
+	 * Method to throw away the level with the given name, if it is kept
+	 * @param name
+	 */
+	public synchronized void remove(String name)
+	{
+		TempLevelData old = levels.remove(name);
+
+		if (old != null)
+			bytes -= old.size;
+	}
+
+	/**
+	 * Method to throw away the least recently used levels until the rest take up no more than the given number of bytes
+	 * @param limit
+	 */
+	public synchronized void trim(long limit)
+	{
+		Iterator<Map.Entry<String, TempLevelData>> it = levels.entrySet().iterator();
+		while ((bytes > limit) && (it.hasNext()))
+		{
+			TempLevelData eldest = it.next().getValue();
+
+			bytes -= eldest.size;
+			it.remove();
+			evictionCount++;
+		}
+	}
+
+	/**
+	 * Method to throw away every kept level
+	 */
+	public synchronized void clear()
+	{
+		levels.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Returns the memory (in bytes) taken up by the kept levels
+	 * @return
+	 */
+	public synchronized long getMemoryUsage()
+	{
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of levels kept
+	 * @return
+	 */
+	public synchronized int size()
+	{
+		return levels.size();
+	}
+
+	/**
+	 * Returns the number of times a level was found in the cache
+	 * @return
+	 */
+	public synchronized long getHitCount()
+	{
+		return hitCount;
+	}
+
+	/**
+	 * Returns the number of times a level was not found in the cache
+	 * @return
+	 */
+	public synchronized long getMissCount()
+	{
+		return missCount;
+	}
+
+	/**
+	 * Returns the number of levels thrown away to stay within the budget
+	 * @return
+	 */
+	public synchronized long getEvictionCount()
+	{
+		return evictionCount;
+	}
+
+	/**
+	 * Returns roughly how much memory (in bytes) the given level takes up
+	 * @param level
+	 * @return
+	 */
+	static long getSize(TempLevelData level)
+	{
+		long size = 0;
+
+		for (BufferedImage image : level.background)
+		{
+			if (image != null)
+				size += LevelStream.getSize(image);
+		}
+
+		if (level.collisionMap != null)
+			size += level.collisionMap.getMemoryUsage();
+
+		return size;
+	}
+
+}
@@ -0,0 +1,285 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class used to load games and levels off the game loop thread. <p>
+ * {@link LevelLoader#run(Runnable)} runs the load (see {@link SaveGame#loadLevel(String, GameData)}) on a thread of its
+ * own. The thread that asked for the load waits for it to finish, so it carries on exactly where it left off (e.g.
+ * {@link Dialogue} moving the player once the new level is in), but while it waits the loading screen is drawn every
+ * frame, by the {@link RenderThread} if there is one and by the waiting thread if not. Loads that finish within
+ * {@link LevelLoader#quickLoad} ms (e.g. a level read ahead by {@link LevelPrefetcher}) never show the loading screen.
+ * No ticks are run while {@link GameData#loading} is set. <p>
+ * Parts of the load that do not depend on each other (the level images, the music and the entity spritesheets) are run
+ * at the same time on {@link LevelLoader#submit(Callable)}. How far the load has got is kept in
+ * {@link LevelLoader#getBytesRead()} and {@link LevelLoader#getImagesDecoded()} for the loading screen. <p>
+ * Without a display (e.g. {@link HeadlessRunner}) the load is run on the calling thread, as there is no screen to
+ * draw.
+ * @author Lyeeedar
+ *
+ */
+public class LevelLoader {
+
+	/**
+	 * How long (in ms) a load can take before the loading screen is shown
+	 */
+	public static int quickLoad = 100;
+
+	/**
+	 * Whether the loading screen is being shown for the current load
+	 */
+	private static volatile boolean showing = false;
+
+	/**
+	 * Runs the parts of a load that can happen at the same time
+	 */
+	private static ExecutorService executor;
+
+	/**
+	 * The number of bytes read and images decoded since the current load started
+	 */
+	private static final AtomicLong bytesRead = new AtomicLong();
+	private static final AtomicInteger imagesDecoded = new AtomicInteger();
+
+	/**
+	 * Method to run the given load and wait for it to finish, drawing the loading screen while waiting. Anything
+	 * thrown by the load is thrown again here
+	 * @param load
+	 */
+	public static void run(final Runnable load)
+	{
+		bytesRead.set(0);
+		imagesDecoded.set(0);
+
+		if (Main.maincanvas == null)
+		{
+			load.run();
+			return;
+		}
+
+		final Throwable[] failure = new Throwable[1];
+
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run()
+			{
+				try {
+					load.run();
+				} catch (Throwable t) {
+					failure[0] = t;
+				}
+			}
+		}, "Level Loader");
+		thread.setDaemon(true);
+		thread.start();
+
+		FramePacer pacer = new FramePacer(Main.targetFPS);
+
+		boolean interrupted = false;
+
+		try {
+			thread.join(quickLoad);
+		} catch (InterruptedException e) {
+			interrupted = true;
+		}
+
+		showing = thread.isAlive();
+
+		while (thread.isAlive())
+		{
+			// The render thread draws the loading screen itself if there is one
+			if (Main.renderThread == null)
+				Main.maincanvas.paintLoad(Main.gc);
+
+			pacer.sync();
+
+			try {
+				thread.join(1);
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+
+		showing = false;
+
+		if (interrupted)
+			Thread.currentThread().interrupt();
+
+		rethrow(failure[0]);
+	}
+
+	/**
+	 * Returns true if the loading screen should be drawn for the current load
+	 * @return
+	 */
+	public static boolean isShowing()
+	{
+		return showing;
+	}
+
+	/**
+	 * Method to start part of a load on another thread. Use {@link LevelLoader#get(Future)} to wait for the result
+	 * @param task
+	 * @return
+	 */
+	public static synchronized <T> Future<T> submit(Callable<T> task)
+	{
+		if (executor == null)
+		{
+			executor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "Level Loader Task");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+
+		return executor.submit(task);
+	}
+
+	/**
+	 * Method to wait for part of a load started with {@link LevelLoader#submit(Callable)} and return its result.
+	 * Anything thrown by it is thrown again here
+	 * @param future
+	 * @return
+	 */
+	public static <T> T get(Future<T> future)
+	{
+		boolean interrupted = false;
+
+		try {
+			while (true)
+			{
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					rethrow(e.getCause());
+					return null;
+				}
+			}
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Method to wrap a stream read during a load, so the bytes read from it are counted
+	 * @param in
+	 * @return
+	 */
+	public static InputStream count(InputStream in)
+	{
+		if (in == null)
+			return null;
+
+		return new CountingInputStream(in, bytesRead);
+	}
+
+	/**
+	 * Method to count an image decoded during a load
+	 */
+	public static void imageDecoded()
+	{
+		imagesDecoded.incrementAndGet();
+	}
+
+	/**
+	 * Returns the number of bytes read since the current load started
+	 * @return
+	 */
+	public static long getBytesRead()
+	{
+		return bytesRead.get();
+	}
+
+	/**
+	 * Returns the number of images decoded since the current load started
+	 * @return
+	 */
+	public static int getImagesDecoded()
+	{
+		return imagesDecoded.get();
+	}
+
+	/**
+	 * Method to throw the given throwable again without wrapping it, if it is not null
+	 * @param t
+	 */
+	private static void rethrow(Throwable t)
+	{
+		if (t == null)
+			return;
+		else if (t instanceof RuntimeException)
+			throw (RuntimeException) t;
+		else if (t instanceof Error)
+			throw (Error) t;
+		else
+			throw new RuntimeException(t);
+	}
+
+}
+
+/**
+ * Stream that adds the number of bytes read through it to a counter
+ * @author Lyeeedar
+ *
+ */
+class CountingInputStream extends FilterInputStream {
+
+	private final AtomicLong counter;
+
+	CountingInputStream(InputStream in, AtomicLong counter)
+	{
+		super(in);
+
+		this.counter = counter;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		int b = super.read();
+
+		if (b != -1)
+			counter.incrementAndGet();
+
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		int read = super.read(b, off, len);
+
+		if (read > 0)
+			counter.addAndGet(read);
+
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException
+	{
+		long skipped = super.skip(n);
+
+		if (skipped > 0)
+			counter.addAndGet(skipped);
+
+		return skipped;
+	}
+
+}
@@ -0,0 +1,218 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Class used to load the levels the current level leads to before the player goes to them, so walking through a door
+ * does not show the loading screen. <p>
+ * Once a level has loaded, the dialogue of every entity in it is searched for ChangeLevel blocks (see
+ * {@link Dialogue#addLevelTargets(java.util.Collection)}). The images, collision map and data file of each level found
+ * are read on a low priority thread and put in {@link GameData#storedLevels}, where the next load of the level finds
+ * them. <p>
+ * A level is only read if it fits in what is left of {@link LevelCache#budget} and in the free heap, so reading ahead
+ * never throws away a level already kept. Streamed levels are skipped, as they have nothing to read ahead.
+ * @author Lyeeedar
+ *
+ */
+public class LevelPrefetcher implements Runnable {
+
+	/**
+	 * Whether levels are read ahead at all
+	 */
+	public static boolean enabled = true;
+
+	private static LevelPrefetcher instance;
+
+	/**
+	 * The levels waiting to be read, in the order they were found
+	 */
+	private final LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<String>();
+
+	/**
+	 * The number of levels read ahead, and the number skipped as there was not enough memory
+	 */
+	private volatile long prefetchCount = 0;
+	private volatile long skipCount = 0;
+
+	private LevelPrefetcher()
+	{
+		Thread thread = new Thread(this, "Level Prefetcher");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+
+	/**
+	 * Returns the prefetcher, starting its thread the first time it is asked for
+	 * @return
+	 */
+	public static synchronized LevelPrefetcher getInstance()
+	{
+		if (instance == null)
+			instance = new LevelPrefetcher();
+
+		return instance;
+	}
+
+	/**
+	 * Method to read ahead every level the given entities' dialogue can change to, other than the current level.
+	 * Anything still waiting from the last level is dropped
+	 * @param current
+	 * @param entities
+	 */
+	public static void prefetchFrom(String current, EntityRegistry entities)
+	{
+		if (!enabled)
+			return;
+
+		LinkedHashSet<String> targets = new LinkedHashSet<String>();
+
+		for (int i = 0; i < entities.size(); i++)
+		{
+			Entity e = entities.get(i);
+
+			if ((e != null) && (e.getDialogue() != null))
+				e.getDialogue().addLevelTargets(targets);
+		}
+
+		targets.remove(current);
+
+		Iterator<String> it = targets.iterator();
+		while (it.hasNext())
+		{
+			if (GameData.storedLevels.contains(it.next()))
+				it.remove();
+		}
+
+		LevelPrefetcher prefetcher = getInstance();
+
+		prefetcher.queue.clear();
+		prefetcher.queue.addAll(targets);
+	}
+
+	@Override
+	public void run()
+	{
+		while (true)
+		{
+			String level;
+			try {
+				level = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			try {
+				prefetch(level);
+			} catch (RuntimeException e) {
+				// A level that cannot be read ahead will show the problem when it is loaded properly
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Method to read the given level into {@link GameData#storedLevels}, if it is not there already and there is room
+	 * @param level
+	 */
+	private void prefetch(String level)
+	{
+		if ((GameData.storedLevels.contains(level)) || (LevelStream.isStreamed(level)))
+			return;
+
+		long size = estimateSize(level);
+
+		if (size < 0)
+			return;
+
+		Runtime runtime = Runtime.getRuntime();
+		long free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+
+		// Decoding needs room for the compressed and converted copies as well, so leave twice the space free
+		if ((GameData.storedLevels.getMemoryUsage() + size > LevelCache.budget) || (size * 2 > free))
+		{
+			skipCount++;
+			return;
+		}
+
+		// Decode one layer at a time on this thread, so reading ahead stays at low priority and is not counted as part
+		// of a load shown at the same time
+		GameData.readLevelImages(level, true);
+
+		Level data = Level.load(level+".data", false);
+		if (data != null)
+			GameData.storedLevels.putData(level, data);
+
+		prefetchCount++;
+	}
+
+	/**
+	 * Returns roughly how much memory (in bytes) the given level's images will take up once decoded, worked out from
+	 * the sizes in the png headers without decoding them. Returns -1 if a png cannot be found or read
+	 * @param level
+	 * @return
+	 */
+	static long estimateSize(String level)
+	{
+		long size = 0;
+
+		for (int i = 0; i < 5; i++)
+		{
+			File png = CollisionBaker.findLevelFile(level, "back"+i+".png");
+			if (png == null)
+				return -1;
+
+			try {
+				ImageInputStream in = ImageIO.createImageInputStream(png);
+				if (in == null)
+					return -1;
+
+				try {
+					Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+					if (!readers.hasNext())
+						return -1;
+
+					ImageReader reader = readers.next();
+					try {
+						reader.setInput(in);
+						size += (long) reader.getWidth(0) * reader.getHeight(0) * 4;
+					} finally {
+						reader.dispose();
+					}
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				return -1;
+			}
+		}
+
+		return size;
+	}
+
+	/**
+	 * Returns the number of levels read ahead
+	 * @return
+	 */
+	public long getPrefetchCount()
+	{
+		return prefetchCount;
+	}
+
+	/**
+	 * Returns the number of levels not read ahead as there was not enough memory
+	 * @return
+	 */
+	public long getSkipCount()
+	{
+		return skipCount;
+	}
+
+}
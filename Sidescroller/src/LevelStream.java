@@ -0,0 +1,717 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Class used to play levels too large to hold in memory. Instead of the five layer pngs the level has a chunk file
+ * for each layer (back0.chunks beside back0.png, made by {@link ChunkBaker}), which holds the layer cut into
+ * {@link LevelStream#CHUNK_SIZE} pixel squares, each stored as its own png. <p>
+ * Only the chunks around the screen are kept decoded. Every frame {@link LevelStream#update} is told where the screen
+ * is: any chunks on screen that are missing are loaded first, then the chunks up to
+ * {@link LevelStream#prefetchScreens} screens ahead in the direction the screen is moving. Chunks are loaded on a
+ * thread of their own, so the game never waits for them. Once the decoded chunks take more than
+ * {@link LevelStream#budget} bytes the least recently used ones are thrown away. <p>
+ * The collision map is not streamed. It is baked into the collision layer's chunk file (in the same layout as a
+ * {@link CollisionBaker} file) and loaded whole, as at one bit per pixel it is far smaller than a single layer. So a
+ * streamed level needs nothing but its chunk files. <p>
+ * File layout (little endian): int magic, int version, long png checksum, long png length, int width, int height,
+ * int chunk size, long offset of the collision map (0 = none, only the collision layer has one), then for each chunk
+ * row by row a long offset and an int length (0 = completely transparent), then the chunk pngs, then the collision
+ * map.
+ * @author Lyeeedar
+ *
+ */
+public class LevelStream implements Runnable {
+
+	/**
+	 * "SCHK"
+	 */
+	static final int MAGIC = 0x5343484B;
+
+	/**
+	 * Increase whenever the file layout changes, so old files are baked again
+	 */
+	static final int VERSION = 2;
+
+	static final int HEADER_SIZE = 44;
+
+	/**
+	 * The extension used for the chunk files
+	 */
+	static final String EXTENSION = ".chunks";
+
+	/**
+	 * The number of layers in a level (see {@link GameData#background})
+	 */
+	static final int LAYERS = 5;
+
+	/**
+	 * The width and height of a chunk in pixels. The same as the tiles the layers are drawn with, so each tile is
+	 * copied from a single chunk
+	 */
+	public static final int CHUNK_SIZE = TiledLayer.TILE_SIZE;
+
+	/**
+	 * The most memory (in bytes) the decoded chunks can take up
+	 */
+	public static long budget = Runtime.getRuntime().maxMemory() / 4;
+
+	/**
+	 * How far (in screens) ahead of the screen chunks are loaded
+	 */
+	public static double prefetchScreens = 1;
+
+	/**
+	 * The name of the level
+	 */
+	private final String level;
+
+	/**
+	 * The chunk file of each layer
+	 */
+	private final RandomAccessFile[] files = new RandomAccessFile[LAYERS];
+
+	/**
+	 * The size of each layer in pixels and in chunks
+	 */
+	private final int[] widths = new int[LAYERS];
+	private final int[] heights = new int[LAYERS];
+	private final int[] columns = new int[LAYERS];
+	private final int[] rows = new int[LAYERS];
+
+	/**
+	 * The checksum and length of the png each layer was made from
+	 */
+	private final long[][] checksums = new long[LAYERS][];
+
+	/**
+	 * Where the collision map is in the collision layer's chunk file. 0 = it has none
+	 */
+	private long collisionOffset = 0;
+
+	/**
+	 * Where each chunk is in its file, and how many bytes long it is
+	 */
+	private final long[][] offsets = new long[LAYERS][];
+	private final int[][] lengths = new int[LAYERS][];
+
+	/**
+	 * The decoded chunks, least recently used first. See {@link LevelStream#key}
+	 */
+	private final LinkedHashMap<Long, BufferedImage> chunks = new LinkedHashMap<Long, BufferedImage>(64, 0.75f, true);
+
+	/**
+	 * The memory (in bytes) taken up by {@link LevelStream#chunks}
+	 */
+	private long bytes = 0;
+
+	/**
+	 * The chunks waiting to be loaded, most urgent first
+	 */
+	private final LinkedBlockingDeque<Long> queue = new LinkedBlockingDeque<Long>();
+	private final HashSet<Long> queued = new HashSet<Long>();
+
+	/**
+	 * The thread loading the chunks
+	 */
+	private final Thread loader;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * The area of the level (in chunks of the close layers) last given to {@link LevelStream#update}, and the direction
+	 * the screen was last moving in
+	 */
+	private int lastX0 = -1, lastY0 = -1, lastX1 = -1, lastY1 = -1;
+	private int lastScreenX, lastScreenY;
+	private int directionX = 0, directionY = 0;
+
+	/**
+	 * The number of chunks loaded, thrown away by the budget and found missing when they were needed on screen
+	 */
+	private long loadCount = 0;
+	private long evictionCount = 0;
+	private long missCount = 0;
+
+	/**
+	 * Method to open the chunk files of the given level. Returns null if the level does not have a chunk file for
+	 * every layer, or any of them cannot be read (in which case the level is loaded from its pngs as normal)
+	 * @param level
+	 * @return
+	 */
+	public static LevelStream open(String level)
+	{
+		File[] found = new File[LAYERS];
+
+		for (int i = 0; i < LAYERS; i++)
+		{
+			found[i] = CollisionBaker.findLevelFile(level, "back" + i + EXTENSION);
+
+			if (found[i] == null)
+				return null;
+		}
+
+		LevelStream stream = new LevelStream(level);
+
+		try {
+			for (int i = 0; i < LAYERS; i++)
+			{
+				stream.openLayer(i, found[i]);
+			}
+		} catch (IOException e) {
+			System.err.println("Could not stream level " + level + ": " + e.getMessage());
+			stream.close();
+			return null;
+		}
+
+		stream.loader.start();
+
+		return stream;
+	}
+
+	/**
+	 * Returns true if the given level has been baked into chunk files, so will be streamed. Does not check the files
+	 * can be read
+	 * @param level
+	 * @return
+	 */
+	public static boolean isStreamed(String level)
+	{
+		return CollisionBaker.findLevelFile(level, "back0" + EXTENSION) != null;
+	}
+
+	private LevelStream(String level)
+	{
+		this.level = level;
+
+		loader = new Thread(this, "Level Stream " + level);
+		loader.setDaemon(true);
+	}
+
+	/**
+	 * Method to read the header and chunk table of a layer's chunk file
+	 * @param layer
+	 * @param file
+	 * @throws IOException
+	 */
+	private void openLayer(int layer, File file) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		files[layer] = raf;
+
+		FileChannel channel = raf.getChannel();
+
+		ByteBuffer header = read(channel, 0, HEADER_SIZE);
+
+		if ((header.getInt() != MAGIC) || (header.getInt() != VERSION))
+			throw new IOException(file.getPath() + " is from a different version");
+
+		checksums[layer] = new long[]{header.getLong(), header.getLong()};
+		widths[layer] = header.getInt();
+		heights[layer] = header.getInt();
+
+		if (header.getInt() != CHUNK_SIZE)
+			throw new IOException(file.getPath() + " uses a different chunk size");
+
+		long collision = header.getLong();
+
+		if ((collision < 0) || (collision > channel.size()))
+			throw new IOException(file.getPath() + " is damaged");
+
+		if (layer == 3)
+			collisionOffset = collision;
+
+		columns[layer] = (widths[layer] + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		rows[layer] = (heights[layer] + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+		int count = columns[layer] * rows[layer];
+
+		ByteBuffer table = read(channel, HEADER_SIZE, count * 12);
+
+		offsets[layer] = new long[count];
+		lengths[layer] = new int[count];
+
+		for (int i = 0; i < count; i++)
+		{
+			offsets[layer][i] = table.getLong();
+			lengths[layer][i] = table.getInt();
+
+			if ((lengths[layer][i] < 0) || (offsets[layer][i] + lengths[layer][i] > channel.size()))
+				throw new IOException(file.getPath() + " is damaged");
+		}
+	}
+
+	/**
+	 * Returns the name of the level
+	 * @return
+	 */
+	public String getLevel()
+	{
+		return level;
+	}
+
+	/**
+	 * Returns the width of the given layer in pixels
+	 * @param layer
+	 * @return
+	 */
+	public int getWidth(int layer)
+	{
+		return widths[layer];
+	}
+
+	/**
+	 * Returns the height of the given layer in pixels
+	 * @param layer
+	 * @return
+	 */
+	public int getHeight(int layer)
+	{
+		return heights[layer];
+	}
+
+	/**
+	 * Returns the checksum and length of the png the given layer was made from
+	 * @param layer
+	 * @return
+	 */
+	public long[] getChecksum(int layer)
+	{
+		return checksums[layer];
+	}
+
+	/**
+	 * Returns where the collision map is in the collision layer's chunk file, or 0 if it has none
+	 * @return
+	 */
+	public long getCollisionOffset()
+	{
+		return collisionOffset;
+	}
+
+	/**
+	 * Returns true if every pixel of the given chunk is transparent (or it is outside the layer). Empty chunks are
+	 * never loaded
+	 * @param layer
+	 * @param cx
+	 * @param cy
+	 * @return
+	 */
+	public boolean isEmpty(int layer, int cx, int cy)
+	{
+		if ((cx < 0) || (cy < 0) || (cx >= columns[layer]) || (cy >= rows[layer]))
+			return true;
+
+		return lengths[layer][(cy * columns[layer]) + cx] == 0;
+	}
+
+	/**
+	 * Returns the given chunk if it has been loaded. Otherwise asks for it to be loaded before anything else and
+	 * returns null
+	 * @param layer
+	 * @param cx
+	 * @param cy
+	 * @return
+	 */
+	public BufferedImage getChunk(int layer, int cx, int cy)
+	{
+		if (isEmpty(layer, cx, cy))
+			return null;
+
+		Long key = key(layer, cx, cy);
+
+		synchronized (this)
+		{
+			BufferedImage chunk = chunks.get(key);
+			if (chunk != null)
+				return chunk;
+
+			missCount++;
+		}
+
+		request(key, true);
+
+		return null;
+	}
+
+	/**
+	 * Returns the given chunk, loading it on this thread if it has not been loaded. Returns null if it is empty or
+	 * cannot be read
+	 * @param layer
+	 * @param cx
+	 * @param cy
+	 * @return
+	 */
+	public BufferedImage loadChunk(int layer, int cx, int cy)
+	{
+		if (isEmpty(layer, cx, cy))
+			return null;
+
+		Long key = key(layer, cx, cy);
+
+		synchronized (this)
+		{
+			BufferedImage chunk = chunks.get(key);
+			if (chunk != null)
+				return chunk;
+		}
+
+		BufferedImage chunk = decode(key);
+
+		store(key, chunk);
+
+		return chunk;
+	}
+
+	/**
+	 * Method to draw the part of the layer starting at (x, y) in the layer to the top left of the graphics object,
+	 * loading any missing chunks on this thread first. Used where the whole area has to be drawn straight away (e.g.
+	 * the background of a scene)
+	 * @param g2d
+	 * @param layer
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 */
+	public void drawNow(Graphics2D g2d, int layer, int x, int y, int width, int height)
+	{
+		int cx0 = Math.max(0, x / CHUNK_SIZE);
+		int cy0 = Math.max(0, y / CHUNK_SIZE);
+		int cx1 = Math.min(columns[layer] - 1, (x + width - 1) / CHUNK_SIZE);
+		int cy1 = Math.min(rows[layer] - 1, (y + height - 1) / CHUNK_SIZE);
+
+		for (int cy = cy0; cy <= cy1; cy++)
+		{
+			for (int cx = cx0; cx <= cx1; cx++)
+			{
+				BufferedImage chunk = loadChunk(layer, cx, cy);
+
+				if (chunk != null)
+					g2d.drawImage(chunk, (cx * CHUNK_SIZE) - x, (cy * CHUNK_SIZE) - y, null);
+			}
+		}
+	}
+
+	/**
+	 * Method to tell the stream where the screen is in the level (in the coordinates of the close layers). Queues the
+	 * chunks of every layer that are on screen, then the ones ahead of the screen. Only does anything when the screen
+	 * has moved onto different chunks
+	 * @param screenX
+	 * @param screenY
+	 * @param width
+	 * @param height
+	 */
+	public void update(int screenX, int screenY, int width, int height)
+	{
+		if (screenX != lastScreenX)
+			directionX = (screenX > lastScreenX) ? 1 : -1;
+		if (screenY != lastScreenY)
+			directionY = (screenY > lastScreenY) ? 1 : -1;
+
+		lastScreenX = screenX;
+		lastScreenY = screenY;
+
+		int cx0 = screenX / CHUNK_SIZE;
+		int cy0 = screenY / CHUNK_SIZE;
+		int cx1 = (screenX + width - 1) / CHUNK_SIZE;
+		int cy1 = (screenY + height - 1) / CHUNK_SIZE;
+
+		if ((cx0 == lastX0) && (cy0 == lastY0) && (cx1 == lastX1) && (cy1 == lastY1))
+			return;
+
+		lastX0 = cx0;
+		lastY0 = cy0;
+		lastX1 = cx1;
+		lastY1 = cy1;
+
+		// Anything still waiting from the old position may no longer be needed
+		synchronized (this)
+		{
+			queue.clear();
+			queued.clear();
+		}
+
+		int aheadX = (int) (width * prefetchScreens) * directionX;
+		int aheadY = (int) (height * prefetchScreens) * directionY;
+
+		for (int layer = 0; layer < LAYERS; layer++)
+		{
+			// The distant layers scroll slower than the rest (see MainCanvas.drawBackground)
+			int x = (layer == 0) ? screenX / 3 : ((layer == 1) ? screenX / 2 : screenX);
+			int ax = (layer == 0) ? aheadX / 3 : ((layer == 1) ? aheadX / 2 : aheadX);
+
+			requestArea(layer, x, screenY, width, height, true);
+			requestArea(layer, x + ax, screenY + aheadY, width, height, false);
+		}
+	}
+
+	/**
+	 * Method to queue every chunk of the layer in the given area that has not been loaded
+	 * @param layer
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param urgent true = load before anything already waiting
+	 */
+	private void requestArea(int layer, int x, int y, int width, int height, boolean urgent)
+	{
+		int cx0 = Math.max(0, x / CHUNK_SIZE);
+		int cy0 = Math.max(0, y / CHUNK_SIZE);
+		int cx1 = Math.min(columns[layer] - 1, (x + width - 1) / CHUNK_SIZE);
+		int cy1 = Math.min(rows[layer] - 1, (y + height - 1) / CHUNK_SIZE);
+
+		for (int cy = cy0; cy <= cy1; cy++)
+		{
+			for (int cx = cx0; cx <= cx1; cx++)
+			{
+				if (!isEmpty(layer, cx, cy))
+					request(key(layer, cx, cy), urgent);
+			}
+		}
+	}
+
+	/**
+	 * Method to queue a chunk to be loaded, if it is not loaded or queued already. An urgent chunk already in the queue
+	 * is moved to the front
+	 * @param key
+	 * @param urgent
+	 */
+	private synchronized void request(Long key, boolean urgent)
+	{
+		if ((closed) || (chunks.containsKey(key)))
+			return;
+
+		if (queued.contains(key))
+		{
+			if (!urgent)
+				return;
+
+			queue.remove(key);
+		}
+
+		queued.add(key);
+
+		if (urgent)
+			queue.addFirst(key);
+		else
+			queue.addLast(key);
+	}
+
+	/**
+	 * Loads the queued chunks until the stream is closed
+	 */
+	@Override
+	public void run()
+	{
+		try {
+			while (!closed)
+			{
+				Long key = queue.take();
+
+				synchronized (this)
+				{
+					if (!queued.remove(key))
+						continue;
+
+					if (chunks.containsKey(key))
+						continue;
+				}
+
+				store(key, decode(key));
+			}
+		} catch (InterruptedException e) {
+			// Closed
+		}
+	}
+
+	/**
+	 * Method to read and decode a chunk. Returns null if it cannot be read
+	 * @param key
+	 * @return
+	 */
+	private BufferedImage decode(Long key)
+	{
+		int layer = (int) (key >>> 48);
+		int cy = (int) ((key >>> 24) & 0xFFFFFF);
+		int cx = (int) (key & 0xFFFFFF);
+
+		int index = (cy * columns[layer]) + cx;
+
+		try {
+			ByteBuffer data = read(files[layer].getChannel(), offsets[layer][index], lengths[layer][index]);
+
+			return ImageIO.read(new ByteArrayInputStream(data.array()));
+		} catch (IOException e) {
+			// Closing the file while a chunk is being read is expected
+			if (!closed)
+				e.printStackTrace();
+
+			return null;
+		}
+	}
+
+	/**
+	 * Method to keep a decoded chunk, throwing away the least recently used chunks if that takes the chunks over the
+	 * budget
+	 * @param key
+	 * @param chunk
+	 */
+	private synchronized void store(Long key, BufferedImage chunk)
+	{
+		if ((closed) || (chunk == null) || (chunks.containsKey(key)))
+			return;
+
+		chunks.put(key, chunk);
+		bytes += getSize(chunk);
+		loadCount++;
+
+		Iterator<Map.Entry<Long, BufferedImage>> it = chunks.entrySet().iterator();
+		while ((bytes > budget) && (chunks.size() > 1) && (it.hasNext()))
+		{
+			Map.Entry<Long, BufferedImage> eldest = it.next();
+
+			if (eldest.getKey().equals(key))
+				continue;
+
+			bytes -= getSize(eldest.getValue());
+			it.remove();
+			evictionCount++;
+		}
+	}
+
+	/**
+	 * Method to stop loading chunks, close the files and throw away every chunk
+	 */
+	public void close()
+	{
+		closed = true;
+		loader.interrupt();
+
+		synchronized (this)
+		{
+			queue.clear();
+			queued.clear();
+			chunks.clear();
+			bytes = 0;
+		}
+
+		for (RandomAccessFile file : files)
+		{
+			if (file == null)
+				continue;
+
+			try {
+				file.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Returns the memory (in bytes) taken up by the decoded chunks
+	 * @return
+	 */
+	public synchronized long getMemoryUsage()
+	{
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of chunks currently decoded
+	 * @return
+	 */
+	public synchronized int getChunkCount()
+	{
+		return chunks.size();
+	}
+
+	/**
+	 * Returns the number of chunks that have been loaded
+	 * @return
+	 */
+	public synchronized long getLoadCount()
+	{
+		return loadCount;
+	}
+
+	/**
+	 * Returns the number of chunks thrown away to stay within the budget
+	 * @return
+	 */
+	public synchronized long getEvictionCount()
+	{
+		return evictionCount;
+	}
+
+	/**
+	 * Returns the number of times a chunk was needed on screen before it had been loaded
+	 * @return
+	 */
+	public synchronized long getMissCount()
+	{
+		return missCount;
+	}
+
+	/**
+	 * Returns the key for a chunk
+	 * @param layer
+	 * @param cx
+	 * @param cy
+	 * @return
+	 */
+	private static Long key(int layer, int cx, int cy)
+	{
+		return Long.valueOf(((long) layer << 48) | ((long) cy << 24) | cx);
+	}
+
+	/**
+	 * Returns roughly how much memory (in bytes) a decoded image takes up
+	 * @param image
+	 * @return
+	 */
+	static long getSize(BufferedImage image)
+	{
+		return (long) image.getWidth() * image.getHeight() * ((image.getColorModel().getPixelSize() + 7) / 8);
+	}
+
+	/**
+	 * Method to read the given part of a file
+	 * @param channel
+	 * @param position
+	 * @param length
+	 * @return
+	 * @throws IOException
+	 */
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		while (buffer.hasRemaining())
+		{
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new IOException("Unexpected end of file");
+		}
+
+		buffer.flip();
+
+		return buffer;
+	}
+
+}
@@ -4,8 +4,6 @@ import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
 import java.awt.Toolkit;
-import java.util.ArrayList;
-import java.util.Map;
 import java.util.Random;
 
 import javax.swing.JFrame;
@@ -23,6 +21,33 @@ public class Main {
 	
 	public static boolean preloadCollisionMap = false;
 
+	/**
+	 * Whether the game is running without a display (see {@link HeadlessRunner}). No window, sound or music is created
+	 */
+	public static boolean headless = false;
+
+	/**
+	 * The frame rate the game is limited to. 0 = uncapped
+	 */
+	public static int targetFPS = 60;
+
+	/**
+	 * The frame rate the game is limited to while paused or in the menus. 0 = uncapped
+	 */
+	public static int idleFPS = 30;
+
+	/**
+	 * Whether the running game is drawn on its own thread ({@link RenderThread}). If false the game loop draws the game
+	 * itself after each round of simulation ticks.
+	 */
+	public static boolean threadedRendering = true;
+
+	/**
+	 * Whether the enemies look for targets on several threads at once (see {@link AIPerception}). Gives exactly the
+	 * same result as doing it on one thread
+	 */
+	public static boolean parallelAI = false;
+
 	/**
 	 *  Game state. <p>
 	 * 0 = Close game <p>
@@ -30,10 +55,10 @@ public class Main {
 	 * 2 = Toggle Fullscreen <p>
 	 * 3 = Menu <p>
 	 * 4 = Paused <p>
-	 * 5 = scene
-	 * 
+	 * 5 = scene <p>
+	 * Read by the {@link RenderThread} as well as the game loop, so must be volatile
 	 */
-	private static int state = 3;
+	private static volatile int state = 3;
 	/**
 	 * Holds all the data used by the Game
 	 */
@@ -47,6 +72,16 @@ public class Main {
 	 * Instance of Random for generating random numbers
 	 */
 	public static final Random ran = new Random();
+
+	/**
+	 * The snapshots of the game passed from the simulation to the renderer
+	 */
+	public static final SnapshotBuffer snapshots = new SnapshotBuffer();
+
+	/**
+	 * The thread drawing the running game. Null if {@link Main#threadedRendering} is off
+	 */
+	static RenderThread renderThread;
 	
 	/**
 	 * The current game window
@@ -58,6 +93,13 @@ public class Main {
 
 	public static void main(String[] args) {
 
+		// "-record file" records every new game to the file, to be played back by the ReplayRunner
+		for (int i = 0; i < args.length - 1; i++)
+		{
+			if (args[i].equals("-record"))
+				InputRecorder.recordFile = args[i+1];
+		}
+
 		// If system in linux then sound effects will be buggy so set them to muted by default
 		if(System.getProperty("os.name").startsWith("Linux"))
 		{
@@ -91,6 +133,13 @@ public class Main {
 			// Create the frame
 			Main.toggleFullscreen();
 
+			// Start drawing the game on its own thread
+			if (threadedRendering)
+			{
+				renderThread = new RenderThread(snapshots);
+				renderThread.start();
+			}
+
 			// Run the game loop
 			game.loop(gc);
 		}
@@ -99,6 +148,11 @@ public class Main {
 			e.printStackTrace();
 		}
 		finally{
+			InputRecorder.stopRecording();
+
+			if (renderThread != null)
+				renderThread.shutdown();
+
 			// Remove the program from fullscreen mode
 			device.setFullScreenWindow(null);
 
@@ -192,51 +246,73 @@ public class Main {
 	 * The last state the game loop was in
 	 */
 	public static int oldState = 3;
+
+	/**
+	 * The maximum number of simulation ticks that will be run to catch up in a single frame. If the game falls
+	 * further behind than this then the extra time is dropped, so a long stall cannot cause a spiral of updates.
+	 */
+	public static final int maxTicksPerFrame = 5;
+
 	/**
 	 * The main loop of the game. <p>
-	 * Is stateful depending on the value of {@link Main#state}
+	 * Is stateful depending on the value of {@link Main#state} <p>
+	 * The game simulation runs at a fixed rate of {@link GameData#getGameSpeed()} milliseconds per tick. Any time left
+	 * over at the end of a frame is carried into the next one, and the entities are drawn interpolated between the
+	 * previous and the current tick. <p>
+	 * After each round of ticks a snapshot of the game is published to {@link Main#snapshots}, which is what actually
+	 * gets drawn. If {@link Main#threadedRendering} is on the {@link RenderThread} draws it, and this loop only runs as
+	 * fast as the simulation needs.
 	 */
 	public void loop(GraphicsConfiguration gc)
 	{
-		long lastTime = System.currentTimeMillis();
+		long lastTime = System.nanoTime();
+		long lastMillis = lastTime / 1000000L;
 		long elapsedTime;
 		long totalTime = 0;
 		int frames = 0;
 		int framerate = 0;
-		int updateTimer = 0;
-		long loopTime = System.currentTimeMillis();
+
+		// Limits the frame rate without keeping the cpu busy
+		FramePacer pacer = new FramePacer(targetFPS);
+
+		// Simulation time that has passed but not yet been simulated
+		long accumulator = 0;
 
 		while(true)
 		{
-			// Store current time
-			lastTime = System.currentTimeMillis();
-			
-			while (updateTimer > 0)
-			{
-				loopTime = System.currentTimeMillis();
-				
-				Thread.yield();
-				updateTimer -= (System.currentTimeMillis()-loopTime);
-			}
-			
-			updateTimer = 10;
+			// Work out how much time has passed since the last frame
+			long currentTime = System.nanoTime();
+			long frameTime = currentTime - lastTime;
+			lastTime = currentTime;
+
+			// Convert to milliseconds from the absolute clock so that no fractions of a millisecond get lost between frames
+			long currentMillis = currentTime / 1000000L;
+			elapsedTime = currentMillis - lastMillis;
+			lastMillis = currentMillis;
 			
 			// Make sure the focus is on the canvas
 			maincanvas.requestFocusInWindow();
 			
 			// Update fps every 0.5 seconds
-			if (totalTime < 500)
-			{
-				totalTime += System.currentTimeMillis() - lastTime;
-				frames++;
-			}
-			else
+			totalTime += frameTime;
+			frames++;
+			if (totalTime >= 500000000L)
 			{
+				framerate = (int) ((frames * 1000000000L) / totalTime);
 				totalTime = 0;
-				framerate = frames*2;
 				frames = 0;
 			}
 
+			// Only carry simulation time over while the game is actually running
+			if (state != 1)
+			{
+				accumulator = 0;
+
+				// Dont leave any recorded key presses waiting while the game is not ticking
+				if (state != 5)
+					InputRecorder.applyQueuedKeys();
+			}
+
 			// ------------------- State 0 Start ------------------- //
 			// This state is used to quit the game
 			if (state == 0)
@@ -249,55 +325,47 @@ public class Main {
 			// This state is used to run the normal game. AI updates, animation updates and etc
 			else if (state == 1)
 			{
-				// Paint game graphics
-				Main.maincanvas.paintGame(framerate, gc);
-
-				// Work out the time that painting the game graphics took
-				elapsedTime = System.currentTimeMillis() - lastTime;
+				long tickTime = Main.gamedata.getGameSpeed() * 1000000L;
 
-				// Evaluate the Entity AI, telling it how much time has passed since the last update
-				Main.gamedata.evaluateAI(elapsedTime);
+				accumulator += frameTime;
 
-				// Work out time taken to draw graphics and evaluate AI
-				elapsedTime = System.currentTimeMillis() - lastTime;
-
-				ArrayList<SystemMessage> newMessages = new ArrayList<SystemMessage>();
-
-				// Time out system messages in the message box
-				int i = 0;
-				for (SystemMessage sys : Main.gamedata.systemMessages)
+				// Drop any time that is too far behind to catch up on
+				if (accumulator > tickTime * maxTicksPerFrame)
 				{
-					if (i < 10)
-						sys.aliveTime -= elapsedTime;
-
-					if (sys.aliveTime > 0)
-						newMessages.add(sys);
-
-					i++;
+					accumulator = tickTime * maxTicksPerFrame;
 				}
 
-				Main.gamedata.systemMessages = newMessages;
-
-				// Work out time taken to draw graphics and evaluate AI
-				elapsedTime = System.currentTimeMillis() - lastTime;
+				// Run as many fixed length ticks as have passed. Stop if the state changes mid update (e.g. a menu opened)
+				boolean ticked = false;
+				while ((accumulator >= tickTime) && (state == 1))
+				{
+					InputRecorder.beforeTick();
 
-				Character.updateTime(elapsedTime);
+					Main.gamedata.tick();
 
-				Character.timePlayed += elapsedTime;
-				Character.genderSwapCD -= elapsedTime;
+					accumulator -= tickTime;
+					ticked = true;
 
-				ArrayList<Entity> update = new ArrayList<Entity>();
+					// A replay evaluates the dialogue after every tick, so do the same while recording
+					if (InputRecorder.isRecording())
+					{
+						snapshots.getBack().capture(Main.gamedata, true);
+						snapshots.publish();
+						ticked = false;
+					}
+				}
 
-				// Update animation for entities
-				for (Map.Entry<String, Entity> entry : Main.gamedata.getGameEntities().entrySet())
+				// Publish the new state of the game for drawing. Speech is captured here as dialogue can trigger events
+				if (ticked)
 				{
-					Entity e = entry.getValue();
-					update.add(e);
+					snapshots.getBack().capture(Main.gamedata, true);
+					snapshots.publish();
 				}
 
-				for (Entity e : update)
+				// Paint game graphics, interpolated by how far we are through the next tick
+				if (renderThread == null)
 				{
-					e.updateTime(elapsedTime);
+					Main.maincanvas.paintGame(snapshots.acquire(), framerate, (double) accumulator / tickTime);
 				}
 			}
 			// ------------------- State 1 End   ------------------- //
@@ -318,9 +386,6 @@ public class Main {
 				// Paint menu graphics
 				Main.maincanvas.paintMenu(framerate, gc);
 
-				// Work out time taken to draw graphics and evaluate AI
-				elapsedTime = System.currentTimeMillis() - lastTime;
-
 				// Evaluate menu AI
 				Main.gamedata.evaluateMenu(elapsedTime);
 
@@ -331,7 +396,11 @@ public class Main {
 			// This state is used to draw the pause screen
 			else if (state == 4)
 			{
-				Main.maincanvas.paintPaused(gc);
+				// Draw the last published state of the game. Hold the paint lock so the render thread cannot swap it mid frame
+				synchronized (MainCanvas.paintLock)
+				{
+					Main.maincanvas.paintPaused(snapshots.acquire());
+				}
 			}
 			// ------------------- State 4 End   ------------------- //
 			
@@ -340,13 +409,24 @@ public class Main {
 			{
 				Scene s = Main.gamedata.currentScene;
 				
-				elapsedTime = System.currentTimeMillis() - lastTime;
-				
 				Main.maincanvas.paintScene(gc);
 				
+				InputRecorder.beforeScene(elapsedTime);
+
 				s.updateTime(elapsedTime);
 			}
 			// ------------------- State 5 End   ------------------- //
+
+			// Wait until the next frame is due. Menus and the pause screen barely change so run them slower
+			if ((state == 3) || (state == 4))
+				pacer.setTargetFPS(idleFPS);
+			// If the render thread is drawing the game then this loop only needs to run once per tick
+			else if ((state == 1) && (renderThread != null))
+				pacer.setTargetFPS((int) (1000 / Main.gamedata.getGameSpeed()));
+			else
+				pacer.setTargetFPS(targetFPS);
+
+			pacer.sync();
 		}
 	}
 
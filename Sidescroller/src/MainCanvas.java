@@ -9,10 +9,7 @@ import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
-import java.awt.image.ColorModel;
-import java.awt.image.WritableRaster;
 import java.util.Enumeration;
-import java.util.Map;
 import java.util.Vector;
 
 /**
@@ -33,6 +30,32 @@ public class MainCanvas extends Canvas implements KeyListener{
 	public BufferedImage[] HUDImages = new BufferedImage[5];
 	public static Menu menu = new Menu();
 
+	/**
+	 * Lock held while drawing to {@link MainCanvas#bufferStrategy}. The game is drawn from both the game loop and the
+	 * {@link RenderThread}, so they must never draw at the same time.
+	 */
+	public static final Object paintLock = new Object();
+
+	/**
+	 * How far between the previous and the current simulation tick the entities should be drawn. 0 = previous, 1 = current
+	 */
+	private double interpolation = 1;
+
+	/**
+	 * The snapshot drawn behind the menus. Kept separate from the running game's snapshots and reused every frame
+	 */
+	private final WorldSnapshot menuSnapshot = new WorldSnapshot();
+
+	/**
+	 * The red tinted frames drawn for damaged entities
+	 */
+	private final TintCache damageTints = new TintCache();
+
+	/**
+	 * The level's layers ({@link GameData#background}) split into tiles for drawing
+	 */
+	private final TiledLayer[] layers = new TiledLayer[5];
+
 	public MainCanvas(GraphicsConfiguration gc)
 	{
 		// Initialise the Frame with the given graphics configuration
@@ -57,21 +80,29 @@ public class MainCanvas extends Canvas implements KeyListener{
 
 	public void createStrategy()
 	{
-		// Initialise the buffer strategy
-		this.createBufferStrategy(3);
+		synchronized (paintLock)
+		{
+			// Initialise the buffer strategy
+			this.createBufferStrategy(3);
 
-		// Store the buffer Strategy
-		bufferStrategy = this.getBufferStrategy();
+			// Store the buffer Strategy
+			bufferStrategy = this.getBufferStrategy();
+		}
 	}
 
 	public void paintLoad(GraphicsConfiguration gc)
+	{
+		synchronized (paintLock)
+		{
+			paintLoadLocked();
+		}
+	}
+
+	private void paintLoadLocked()
 	{
 		Graphics2D g2d = null;
 
 		try {
-			// Let the OS have a little time...
-			Thread.yield();
-
 			g2d = (Graphics2D) bufferStrategy.getDrawGraphics();
 
 			// Enable AA
@@ -88,9 +119,15 @@ public class MainCanvas extends Canvas implements KeyListener{
 				g2d.fillRect(200+(20*i), 300, 20, 50);
 			}
 
+			// Sweep a light across the bars so the screen is visibly alive while a stage takes a while
+			int sweep = (int) ((System.nanoTime() / 10000000L) % 200);
+			g2d.setColor(new Color(255, 255, 255, 60));
+			g2d.fillRect(200+sweep, 300, 20, 50);
+
 			g2d.setColor(Color.WHITE);
 
 			g2d.drawString(Main.gamedata.loadText, 250, 450);
+			g2d.drawString(LevelLoader.getImagesDecoded()+" images decoded, "+(LevelLoader.getBytesRead()/1024)+" KB read", 250, 470);
 
 
 		} finally {
@@ -106,16 +143,26 @@ public class MainCanvas extends Canvas implements KeyListener{
 	}
 
 	/**
-	 * Draws all the in-game graphics
+	 * Draws the menus over the top of the current game
 	 */
 	public void paintMenu(long framerate, GraphicsConfiguration gc)
+	{
+		// Only draw entities that are in the level
+		menuSnapshot.capture(Main.gamedata, false);
+
+		synchronized (paintLock)
+		{
+			paintMenuLocked(menuSnapshot, framerate);
+		}
+	}
+
+	private void paintMenuLocked(WorldSnapshot snapshot, long framerate)
 	{
 		Graphics2D g2d = null;
 
-		try {
-			// Let the OS have a little time...
-			Thread.yield();
+		this.interpolation = 1;
 
+		try {
 			g2d = (Graphics2D) bufferStrategy.getDrawGraphics();
 
 			// Enable AA
@@ -123,13 +170,13 @@ public class MainCanvas extends Canvas implements KeyListener{
 					RenderingHints.VALUE_ANTIALIAS_ON);
 
 			// Draw the background to the back buffer
-			drawBackground(g2d);
+			drawBackground(g2d, snapshot);
 
 			// Draw all the game Entities to the back buffer
-			drawEntities(g2d);
+			drawEntities(g2d, snapshot);
 
 			// Draw the foreground
-			drawForeground(g2d);
+			drawForeground(g2d, snapshot);
 
 			g2d.setColor(new Color(0, 0, 0, 180));
 
@@ -161,64 +208,118 @@ public class MainCanvas extends Canvas implements KeyListener{
 
 	/**
 	 * Draws all the in-game graphics
+	 * @param snapshot the state of the game to draw
+	 * @param totalTime
+	 * @param interpolation how far the game is through the current simulation tick. Used to smooth entity movement between ticks
 	 */
-	public void paintGame(long totalTime, GraphicsConfiguration gc)
+	public void paintGame(WorldSnapshot snapshot, long totalTime, double interpolation)
 	{
-		Graphics2D g2d = null;
-
-		try {
-			// Let the OS have a little time...
-			Thread.yield();
-
-			// Calculate the screen position
-			this.calculateScreen();
-
-			g2d = (Graphics2D) bufferStrategy.getDrawGraphics();
-
-			// Enable AA
-			g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-					RenderingHints.VALUE_ANTIALIAS_ON);
+		// Nothing has been simulated yet
+		if (!snapshot.valid)
+			return;
 
-			// Draw the background to the back buffer
-			drawBackground(g2d);
+		synchronized (paintLock)
+		{
+			paintGameLocked(snapshot, totalTime, interpolation);
+		}
+	}
 
-			// Draw all the game Entities to the back buffer
-			drawEntities(g2d);
+	private void paintGameLocked(WorldSnapshot snapshot, long totalTime, double interpolation)
+	{
+		Graphics2D g2d = null;
 
-			// Draw the foreground
-			drawForeground(g2d);
+		Profiler.frame();
 
-			// Draw speech bubbles
-			drawSpeech(g2d);
+		try {
+			g2d = (Graphics2D) bufferStrategy.getDrawGraphics();
 
-			// Draw HUD
-			drawHUD(g2d, totalTime);
+			drawGame(g2d, snapshot, totalTime, interpolation);
 
 		} finally {
 			// Dispose of the graphics object
 			if (g2d != null)
 				g2d.dispose();
 		}
+
+		long time = Profiler.begin();
+
 		// Show the back buffer (Page Flipping)
 		if( !bufferStrategy.contentsLost() )
 			bufferStrategy.show();
 
 		Toolkit.getDefaultToolkit().sync();	
+
+		Profiler.end(Profiler.SHOW, time);
 	}
 
 	/**
-	 * Draws all the in-game graphics
+	 * Draws the game onto the given graphics object. Used by {@link MainCanvas#paintGame} and to draw the game off
+	 * screen (e.g. by {@link ReplayRunner})
+	 * @param g2d
+	 * @param snapshot the state of the game to draw
+	 * @param totalTime
+	 * @param interpolation how far the game is through the current simulation tick
 	 */
-	public void paintPaused(GraphicsConfiguration gc)
+	public void drawGame(Graphics2D g2d, WorldSnapshot snapshot, long totalTime, double interpolation)
+	{
+		this.interpolation = interpolation;
+
+		long time = Profiler.begin();
+
+		// Calculate the screen position
+		this.calculateScreen(snapshot);
+		time = Profiler.end(Profiler.CALCULATE_SCREEN, time);
+
+		// Enable AA
+		g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON);
+
+		// Draw the background to the back buffer
+		drawBackground(g2d, snapshot);
+		time = Profiler.end(Profiler.DRAW_BACKGROUND, time);
+
+		// Draw all the game Entities to the back buffer
+		drawEntities(g2d, snapshot);
+		time = Profiler.end(Profiler.DRAW_ENTITIES, time);
+
+		// Draw the foreground
+		drawForeground(g2d, snapshot);
+		time = Profiler.end(Profiler.DRAW_FOREGROUND, time);
+
+		// Draw speech bubbles
+		drawSpeech(g2d, snapshot);
+		time = Profiler.end(Profiler.DRAW_SPEECH, time);
+
+		// Draw HUD
+		drawHUD(g2d, snapshot, totalTime);
+		Profiler.end(Profiler.DRAW_HUD, time);
+	}
+
+	/**
+	 * Draws the last frame of the game with the pause screen over the top
+	 * @param snapshot the state of the game to draw
+	 */
+	public void paintPaused(WorldSnapshot snapshot)
+	{
+		// Nothing has been simulated yet
+		if (!snapshot.valid)
+			return;
+
+		synchronized (paintLock)
+		{
+			paintPausedLocked(snapshot);
+		}
+	}
+
+	private void paintPausedLocked(WorldSnapshot snapshot)
 	{
 		Graphics2D g2d = null;
 
-		try {
-			// Let the OS have a little time...
-			Thread.yield();
+		this.interpolation = 1;
 
+		try {
 			// Calculate the screen position
-			this.calculateScreen();
+			this.calculateScreen(snapshot);
 
 			g2d = (Graphics2D) bufferStrategy.getDrawGraphics();
 
@@ -227,19 +328,19 @@ public class MainCanvas extends Canvas implements KeyListener{
 					RenderingHints.VALUE_ANTIALIAS_ON);
 
 			// Draw the background to the back buffer
-			drawBackground(g2d);
+			drawBackground(g2d, snapshot);
 
 			// Draw all the game Entities to the back buffer
-			drawEntities(g2d);
+			drawEntities(g2d, snapshot);
 
 			// Draw the foreground
-			drawForeground(g2d);
+			drawForeground(g2d, snapshot);
 
 			// Draw speech bubbles
-			drawSpeech(g2d);
+			drawSpeech(g2d, snapshot);
 
 			// Draw HUD
-			drawHUD(g2d, 0);
+			drawHUD(g2d, snapshot, 0);
 
 			g2d.setColor(new Color(0, 0, 0, 180));
 
@@ -262,16 +363,18 @@ public class MainCanvas extends Canvas implements KeyListener{
 	}
 
 	public void paintScene(GraphicsConfiguration gc)
+	{
+		synchronized (paintLock)
+		{
+			paintSceneLocked();
+		}
+	}
+
+	private void paintSceneLocked()
 	{
 		Graphics2D g2d = null;
 
 		try {
-			// Let the OS have a little time...
-			Thread.yield();
-
-			// Calculate the screen position
-			this.calculateScreen();
-
 			g2d = (Graphics2D) bufferStrategy.getDrawGraphics();
 
 			// Enable AA
@@ -294,23 +397,23 @@ public class MainCanvas extends Canvas implements KeyListener{
 		Toolkit.getDefaultToolkit().sync();	
 	}
 
-	public void drawHUD(Graphics2D g2d, long totalTime)
+	public void drawHUD(Graphics2D g2d, WorldSnapshot snapshot, long totalTime)
 	{
-		if (Main.gamedata.systemMessages.size() > 0)
+		if (snapshot.messageCount > 0)
 		{
 			g2d.setColor(new Color(0, 0, 0, 70));
 			g2d.fillRect(10, 30, 230, 210);
 		}
 
-		for (int i = 0; (i < 10)&&(i < Main.gamedata.systemMessages.size()); i++)
+		for (int i = 0; i < snapshot.messageCount; i++)
 		{
-			g2d.setColor(Main.gamedata.systemMessages.get(i).getColour());
+			g2d.setColor(snapshot.messageColours[i]);
 			// Draw fps
-			g2d.drawString(Main.gamedata.systemMessages.get(i).message, 20, 50+(20*i));
+			g2d.drawString(snapshot.messages[i], 20, 50+(20*i));
 		}
 
 
-		double health = ((Main.gamedata.getGameEntities().get("Player").getHealth()/Main.gamedata.getGameEntities().get("Player").getMaxHealth())*100);
+		double health = ((snapshot.playerHealth/snapshot.playerMaxHealth)*100);
 
 		if (health > 66)
 		{
@@ -338,21 +441,21 @@ public class MainCanvas extends Canvas implements KeyListener{
 		{
 			g2d.drawImage(HUDImages[1], x-8+(i*40), y+59-8, null);
 
-			if (Character.socketedSpells[i].unlocked == 3)
+			if (snapshot.spellUnlocked[i] == 3)
 			{
-				g2d.drawImage(Character.socketedSpells[i].images[1], x-8+(i*40), y+59-8, null);
+				g2d.drawImage(snapshot.spellMasteredIcons[i], x-8+(i*40), y+59-8, null);
 			}
 
-			if (Character.socketedSpells[i].unlocked > 1)
+			if (snapshot.spellUnlocked[i] > 1)
 			{
-				g2d.drawImage(Character.socketedSpells[i].images[0], x-8+(i*40), y+59-8, null);
+				g2d.drawImage(snapshot.spellIcons[i], x-8+(i*40), y+59-8, null);
 			}
 
-			if (Character.spellCooldown[i] < 1)
+			if (snapshot.spellCooldown[i] < 1)
 			{
 
 			}
-			else if (Character.spellCooldown[i] > 2550)
+			else if (snapshot.spellCooldown[i] > 2550)
 			{
 				g2d.setColor(Color.BLACK);
 
@@ -360,7 +463,7 @@ public class MainCanvas extends Canvas implements KeyListener{
 			}
 			else
 			{
-				double trans = 0.1 * Character.spellCooldown[i];
+				double trans = 0.1 * snapshot.spellCooldown[i];
 
 				g2d.setColor(new Color(0, 0, 0, (int)trans));
 
@@ -369,25 +472,25 @@ public class MainCanvas extends Canvas implements KeyListener{
 
 		}
 
-		if (Character.gender == 0)
+		if (snapshot.gender == 0)
 		{
 			g2d.drawImage(HUDImages[3], x+8, y+3, null);
 		}
-		else if (Character.gender == 1)
+		else if (snapshot.gender == 1)
 		{
 			g2d.drawImage(HUDImages[2], x+8, y+3, null);
 		}
 
-		if (!Main.gamedata.transformAllowed)
+		if (!snapshot.transformAllowed)
 		{
 			g2d.drawImage(HUDImages[4], x+8, y+3, null);
 		}
 
-		if (Character.genderSwapCD < 1)
+		if (snapshot.genderSwapCD < 1)
 		{
 
 		}
-		else if (Character.genderSwapCD > 2550)
+		else if (snapshot.genderSwapCD > 2550)
 		{
 			g2d.setColor(Color.BLACK);
 
@@ -395,51 +498,42 @@ public class MainCanvas extends Canvas implements KeyListener{
 		}
 		else
 		{
-			double trans = 0.1 * Character.genderSwapCD;
+			double trans = 0.1 * snapshot.genderSwapCD;
 
 			g2d.setColor(new Color(0, 0, 0, (int)trans));
 
 			g2d.fillRoundRect(x+16, y+11, 40, 40, 40, 40);
 		}
 
-		if (Main.debug)
-		{
-			// Setup fonts and colour for fps
-			g2d.setFont(g2d.getFont().deriveFont((float) 20));
-			g2d.setColor(Color.YELLOW);
-
-			// Draw fps
-			g2d.drawString(Long.toString(totalTime), 750, 50);
-		}
+		// Draw the frame rate and the time taken by each part of the frame
+		Profiler.draw(g2d, totalTime, resolution[0]-Profiler.width-10, 30);
 	}
 
-	public void drawSpeech(Graphics2D g2d)
+	public void drawSpeech(Graphics2D g2d, WorldSnapshot snapshot)
 	{
 		// Loop over all entities
-		for (Map.Entry<String, Entity> entry : Main.gamedata.getGameEntities().entrySet())
+		for (int n = 0; n < snapshot.entityCount; n++)
 		{
-			Entity e = entry.getValue();
-			if (e.isTalking())
+			EntitySnapshot e = snapshot.entities[n];
+			if (e.talking)
 			{
-				String text = e.getDialogue().getText();
+				// Position to draw the entity at
+				int ex = e.getRenderX(interpolation);
+				int ey = e.getRenderY(interpolation);
 
-				if (text == null)
-				{
-					e.setTalking(false);
-					continue;
-				}
+				String text = e.speech;
 
 				// Create the colours used in the speech bubbles
 				Color dark = null;
 				Color pale = null;
-				if (e.getTalkingTimer() < Dialogue.dialogueFade)
+				if (e.talkingTimer < Dialogue.dialogueFade)
 				{
 					dark = new Color(0, 0, 0);
 					pale = new Color(202, 255, 255);
 				}
 				else
 				{
-					int alpha = (int) (255-(Dialogue.fadeStep*(e.getTalkingTimer()-Dialogue.dialogueFade)));
+					int alpha = (int) (255-(Dialogue.fadeStep*(e.talkingTimer-Dialogue.dialogueFade)));
 
 					if (alpha < 0)
 						alpha = 0;
@@ -458,13 +552,13 @@ public class MainCanvas extends Canvas implements KeyListener{
 				int height = textLines.length*25;
 
 				// Is the dialogue is of the type 'Speech' then do a speech bubble.
-				if (e.getDialogue().getType() == 0)
+				if (e.speechType == 0)
 				{
 
-					int x = e.getPos()[0]-MainCanvas.screenPosition[0]+15;
-					int y = e.getPos()[1]-MainCanvas.screenPosition[1]-height-20;
+					int x = ex-MainCanvas.screenPosition[0]+15;
+					int y = ey-MainCanvas.screenPosition[1]-height-20;
 
-					int[] xp = {x+20, x+35, x-10+(e.getSize()[0]/2)};
+					int[] xp = {x+20, x+35, x-10+(e.width/2)};
 					int[] yp = {y+height, y+height, y+height+15};
 
 					g2d.setColor(pale);
@@ -485,10 +579,10 @@ public class MainCanvas extends Canvas implements KeyListener{
 
 				}
 				// If dialogue is of the type 'Examine' do a thought bubble
-				else if (e.getDialogue().getType() == 1)
+				else if (e.speechType == 1)
 				{
-					int x = e.getPos()[0]-MainCanvas.screenPosition[0]-(width/2)+(e.getSize()[0]/2);
-					int y = e.getPos()[1]-MainCanvas.screenPosition[1]-height-50;
+					int x = ex-MainCanvas.screenPosition[0]-(width/2)+(e.width/2);
+					int y = ey-MainCanvas.screenPosition[1]-height-50;
 
 					g2d.setColor(pale);
 					g2d.fillRoundRect(x+(width/2)-5, y+height+35, 10, 10, 10, 10);
@@ -518,46 +612,55 @@ public class MainCanvas extends Canvas implements KeyListener{
 	}
 
 	/**
-	 * Method that draws all the game entites kept in GameData
+	 * Method that draws all the game entites in the snapshot
 	 * @param g2d
+	 * @param snapshot
 	 */
-	private void drawEntities(Graphics2D g2d)
+	private void drawEntities(Graphics2D g2d, WorldSnapshot snapshot)
 	{
 		// Loop over all entities
-		for (Map.Entry<String, Entity> entry : Main.gamedata.getGameEntities().entrySet())
+		for (int n = 0; n < snapshot.entityCount; n++)
 		{
-			Entity e = entry.getValue();
+			EntitySnapshot e = snapshot.entities[n];
+
+			// Position to draw the entity at
+			int ex = e.getRenderX(interpolation);
+			int ey = e.getRenderY(interpolation);
+
 			// If entity is not on the screen then dont draw it
-			if ((e.getPos()[0]+e.getSize()[0] < screenPosition[0]) || (e.getPos()[0] > (screenPosition[0]+resolution[0]))
-					|| (e.getPos()[1]+e.getSize()[1] < screenPosition[1]) || (e.getPos()[1] > (screenPosition[1]+resolution[1])))
+			if ((ex+e.width < screenPosition[0]) || (ex > (screenPosition[0]+resolution[0]))
+					|| (ey+e.height < screenPosition[1]) || (ey > (screenPosition[1]+resolution[1])))
 				continue;
 
 			// If entity has a graphics sheet and is visible then draw it
-			if ((e.getSpriteSheet() != null) && (e.isVisible()))
+			if ((e.spriteSheet != null) && (e.visible))
 			{
-				BufferedImage i = e.getSpriteSheet();
+				BufferedImage i = e.spriteSheet;
+				int frameX = e.frameX;
+				int frameY = e.frameY;
 
-				// If the entity has been damaged then tint the image with red
-				if (e.getDamaged() > 0)
+				// If the entity has been damaged then draw the frame tinted with red. The tinted frame is an image of its own
+				if (e.damaged)
 				{
-					e.damaged--;
-					i = tintImage(i, e.getSize()[0]*(e.getAnimateStage()-1), e.getSize()[1]*(e.getAnimateStrip()-1), e.getSize()[0]*e.getAnimateStage(), e.getSize()[1]*e.getAnimateStrip());
+					i = damageTints.get(i, e.frameX, e.frameY, e.width, e.height);
+					frameX = 0;
+					frameY = 0;
 				}
 
-				if (e.getPos()[2] == 1)
+				if (e.dir == 1)
 				{
 					// Draw only a single frame from the spritesheet onto the Graphics object
 					g2d.drawImage(i, 
-							e.getPos()[0]-MainCanvas.screenPosition[0], e.getPos()[1]-MainCanvas.screenPosition[1], e.getPos()[0]-MainCanvas.screenPosition[0] + e.getSize()[0], e.getPos()[1]-MainCanvas.screenPosition[1] + e.getSize()[1], 
-							e.getSize()[0]*(e.getAnimateStage()-1), e.getSize()[1]*(e.getAnimateStrip()-1), e.getSize()[0]*e.getAnimateStage(), e.getSize()[1]*e.getAnimateStrip(),
+							ex-MainCanvas.screenPosition[0], ey-MainCanvas.screenPosition[1], ex-MainCanvas.screenPosition[0] + e.width, ey-MainCanvas.screenPosition[1] + e.height, 
+							frameX, frameY, frameX+e.width, frameY+e.height,
 							null);
 				}
 				else
 				{
 					// Draw only a single frame from the spritesheet onto the Graphics object
 					g2d.drawImage(i, 
-							e.getPos()[0]-MainCanvas.screenPosition[0] + e.getSize()[0], e.getPos()[1]-MainCanvas.screenPosition[1], e.getPos()[0]-MainCanvas.screenPosition[0], e.getPos()[1]-MainCanvas.screenPosition[1] + e.getSize()[1], 
-							e.getSize()[0]*(e.getAnimateStage()-1), e.getSize()[1]*(e.getAnimateStrip()-1), e.getSize()[0]*e.getAnimateStage(), e.getSize()[1]*e.getAnimateStrip(),
+							ex-MainCanvas.screenPosition[0] + e.width, ey-MainCanvas.screenPosition[1], ex-MainCanvas.screenPosition[0], ey-MainCanvas.screenPosition[1] + e.height, 
+							frameX, frameY, frameX+e.width, frameY+e.height,
 							null);
 				}
 
@@ -565,25 +668,25 @@ public class MainCanvas extends Canvas implements KeyListener{
 				{
 					g2d.setColor(Color.RED);
 
-					g2d.drawRect(e.getCollisionShape()[0]-MainCanvas.screenPosition[0]+e.getPos()[0], e.getCollisionShape()[1]-MainCanvas.screenPosition[1]+e.getPos()[1], e.getCollisionShape()[2], e.getCollisionShape()[3]);
+					g2d.drawRect(e.collisionShape[0]-MainCanvas.screenPosition[0]+ex, e.collisionShape[1]-MainCanvas.screenPosition[1]+ey, e.collisionShape[2], e.collisionShape[3]);
 
 					if (e.alerted)
 					{
-						g2d.drawString("!", e.getPos()[0]+e.getCollisionShape()[0]-MainCanvas.screenPosition[0], e.getPos()[1]+e.getCollisionShape()[1]-MainCanvas.screenPosition[1]-30);
+						g2d.drawString("!", ex+e.collisionShape[0]-MainCanvas.screenPosition[0], ey+e.collisionShape[1]-MainCanvas.screenPosition[1]-30);
 					}
 				}
 
-				for (SystemMessage sysM : e.getInfoText())
+				for (int m = 0; m < e.infoCount; m++)
 				{
-					int yPos = (3000 - sysM.aliveTime)/100;
-					g2d.setColor(sysM.colour);
+					int yPos = (3000 - e.infoAliveTime[m])/100;
+					g2d.setColor(e.infoColour[m]);
 
-					g2d.drawString(sysM.message, e.getPos()[0]-MainCanvas.screenPosition[0]+e.getCollisionShape()[0], e.getPos()[1]-MainCanvas.screenPosition[1]+e.getCollisionShape()[1]-yPos);
+					g2d.drawString(e.infoText[m], ex-MainCanvas.screenPosition[0]+e.collisionShape[0], ey-MainCanvas.screenPosition[1]+e.collisionShape[1]-yPos);
 				}
 
-				if ((!e.getName().equals("Player")) && (! (e instanceof Spell)) && (! (e instanceof Item)) && (!(e.getFaction().equals(""))))
+				if (e.showHealthBar)
 				{
-					double health = (e.getHealth()/e.getMaxHealth())*100;
+					double health = (e.health/e.maxHealth)*100;
 
 					if (health > 66)
 					{
@@ -600,90 +703,23 @@ public class MainCanvas extends Canvas implements KeyListener{
 
 					health /= 5;
 
-					g2d.fillRect(e.getPos()[0]+e.getCollisionShape()[0]-MainCanvas.screenPosition[0], e.getPos()[1]+e.getCollisionShape()[1]-MainCanvas.screenPosition[1]-10, (int)health, 5);
+					g2d.fillRect(ex+e.collisionShape[0]-MainCanvas.screenPosition[0], ey+e.collisionShape[1]-MainCanvas.screenPosition[1]-10, (int)health, 5);
 				}
 
 			}
 		}
 
-		if (Character.genderSwapAnimating)
+		if ((snapshot.genderSwapAnimating) && (snapshot.player != null))
 		{
-			Entity e = Main.gamedata.getGameEntities().get("Player");
-			g2d.drawImage(Character.genderSwapSprite, e.getPos()[0]-MainCanvas.screenPosition[0], e.getPos()[1]-MainCanvas.screenPosition[1],
-					e.getPos()[0]-MainCanvas.screenPosition[0]+e.getSize()[0], e.getPos()[1]-MainCanvas.screenPosition[1]+e.getSize()[1],
-					(113*Character.genderSwapAnimStage), 0, (113*(Character.genderSwapAnimStage+1)), 100, null);
+			EntitySnapshot e = snapshot.player;
+			int ex = e.getRenderX(interpolation);
+			int ey = e.getRenderY(interpolation);
+			g2d.drawImage(Character.genderSwapSprite, ex-MainCanvas.screenPosition[0], ey-MainCanvas.screenPosition[1],
+					ex-MainCanvas.screenPosition[0]+e.width, ey-MainCanvas.screenPosition[1]+e.height,
+					(113*snapshot.genderSwapAnimStage), 0, (113*(snapshot.genderSwapAnimStage+1)), 100, null);
 		}
 	}
 
-	/**
-	 * Method that returns a deep copy of the bufferedimage
-	 * @param bi
-	 * @return
-	 */
-	public BufferedImage deepCopy(BufferedImage bi) {
-		ColorModel cm = bi.getColorModel();
-		boolean isAlphaPremultiplied = cm.isAlphaPremultiplied();
-		WritableRaster raster = bi.copyData(null);
-		return new BufferedImage(cm, raster, isAlphaPremultiplied, null);
-	}
-
-	/**
-	 * Method that tints the supplied bufferedimage with red
-	 * @param image
-	 * @param minX
-	 * @param minY
-	 * @param maxX
-	 * @param maxY
-	 * @return
-	 */
-	public BufferedImage tintImage(BufferedImage image, int minX, int minY, int maxX, int maxY)
-	{
-		BufferedImage im = deepCopy(image);
-
-		int width = im.getWidth()-1;
-		int height = im.getHeight()-1;
-
-		for (int x = minX; x < maxX; x++)
-		{
-			if ((x < 0) || (x > width))
-				continue;
-
-			for (int y = minY; y < maxY; y++)
-			{
-				if ((y < 0) || (y > height))
-					continue;
-
-				int colour = im.getRGB(x, y);
-
-				int alpha = (colour>>24) & 0xff;
-
-				if (alpha == 0)
-					continue;
-
-				int blue = colour & 0xFF;
-				int green = (colour >> 8) & 0xFF;
-				int red = (colour >> 16) & 0xFF;
-
-				blue -= 60;
-				if (blue < 0)
-					blue = 0;
-
-				green -= 60;
-				if (green < 0)
-					green = 0;
-
-				red += 100;
-				if (red > 250)
-					red = 250;
-
-				im.setRGB(x, y, new Color(red, green, blue, alpha).getRGB());
-
-			}
-		}
-
-		return im;
-	}
-
 	/**
 	 * Method to split text along word boundries so each line is less than the given length
 	 * @param text
@@ -748,92 +784,135 @@ public class MainCanvas extends Canvas implements KeyListener{
 
 	/**
 	 * Method that draws all the background (3 layers) onto the Graphics object <p>
-	 * Background taken from GameData <p>
+	 * Background taken from the snapshot <p>
 	 * Background drawn is based on location of the screen {@link MainCanvas#screenPosition}
 	 * @param g2d
+	 * @param snapshot
 	 */
-	private void drawBackground(Graphics2D g2d)
+	private void drawBackground(Graphics2D g2d, WorldSnapshot snapshot)
 	{
-		// Distant background, moves at half the speed of the rest
-		g2d.drawImage(Main.gamedata.getBackground()[0],
-				0, 0, resolution[0], resolution[1],
-				screenPosition[0]/3, screenPosition[1], (screenPosition[0]/3)+(int)(resolution[0]), (screenPosition[1])+(int)(resolution[1]),
-				null);
-
-		// Far background
-		g2d.drawImage(Main.gamedata.getBackground()[1],
-				0, 0, resolution[0], resolution[1],
-				screenPosition[0]/2, screenPosition[1], (screenPosition[0]/2)+resolution[0], screenPosition[1]+resolution[1],
-				null);
+		updateLayers(snapshot);
+
+		// Distant background, moves at a third of the speed of the rest
+		drawLayer(g2d, 0, screenPosition[0]/3, screenPosition[1]);
+
+		// Far background, moves at half the speed of the rest
+		drawLayer(g2d, 1, screenPosition[0]/2, screenPosition[1]);
 
 		// Close Background layer
-		g2d.drawImage(Main.gamedata.getBackground()[2],
-				0, 0, resolution[0], resolution[1],
-				screenPosition[0], screenPosition[1], screenPosition[0]+resolution[0], screenPosition[1]+resolution[1],
-				null);
+		drawLayer(g2d, 2, screenPosition[0], screenPosition[1]);
 
 		// Collision layer
-		g2d.drawImage(Main.gamedata.getBackground()[3],
-				0, 0, resolution[0], resolution[1],
-				screenPosition[0], screenPosition[1], screenPosition[0]+resolution[0], screenPosition[1]+resolution[1],
-				null);
+		drawLayer(g2d, 3, screenPosition[0], screenPosition[1]);
 	}
 
 	/**
 	 * Method that draws all the foreground (1 layer) onto the Graphics object <p>
-	 * Foreground taken from GameData (background index 3+)<p>
+	 * Foreground taken from the snapshot (background index 3+)<p>
 	 * Foreground drawn is based on location of the screen {@link MainCanvas#screenPosition}
 	 * @param g2d
+	 * @param snapshot
 	 */
-	private void drawForeground(Graphics2D g2d)
+	private void drawForeground(Graphics2D g2d, WorldSnapshot snapshot)
 	{
+		updateLayers(snapshot);
+
 		// Foreground layer
-		g2d.drawImage(Main.gamedata.getBackground()[4],
-				0, 0, resolution[0], resolution[1],
-				screenPosition[0], screenPosition[1], screenPosition[0]+resolution[0], screenPosition[1]+resolution[1],
-				null);
+		drawLayer(g2d, 4, screenPosition[0], screenPosition[1]);
+	}
+
+	/**
+	 * Method to make sure {@link MainCanvas#layers} are tiling the layers in the snapshot (or its stream, if the level
+	 * is streamed). The tiles of any layer that has changed (e.g. after a level change) are released
+	 * @param snapshot
+	 */
+	private void updateLayers(WorldSnapshot snapshot)
+	{
+		for (int i = 0; i < layers.length; i++)
+		{
+			BufferedImage image = (snapshot.stream == null) ? snapshot.background[i] : null;
+
+			if ((layers[i] != null) && (layers[i].getSource() == image) && (layers[i].getStream() == snapshot.stream))
+				continue;
+
+			if (layers[i] != null)
+				layers[i].flush();
+
+			if (snapshot.stream != null)
+				layers[i] = new TiledLayer(snapshot.stream, i);
+			else
+				layers[i] = (image == null) ? null : new TiledLayer(image);
+		}
+	}
+
+	/**
+	 * Method to draw the given layer with the given point of the layer at the top left of the screen
+	 * @param g2d
+	 * @param layer
+	 * @param x
+	 * @param y
+	 */
+	private void drawLayer(Graphics2D g2d, int layer, int x, int y)
+	{
+		if (layers[layer] == null)
+			return;
+
+		// Tiles can only be put in video memory once the canvas is on the screen
+		GraphicsConfiguration gc = this.isDisplayable() ? this.getGraphicsConfiguration() : null;
+
+		layers[layer].draw(g2d, gc, x, y, resolution[0], resolution[1]);
 	}
 
 	/**
 	 * Method to calculate the current location of the screen. <p>
-	 * Is around the player (Game Entity index 0), but always stays within the bounds of the level.
+	 * Is around the player, but always stays within the bounds of the level. If the level is streamed the stream is told
+	 * where the screen now is, so it can load the chunks around it.
+	 * @param snapshot
 	 */
-	private void calculateScreen()
+	private void calculateScreen(WorldSnapshot snapshot)
 	{
-		// Extract position of the player
-		int[] pos = Main.gamedata.getGameEntities().get("Player").getPos();
+		// Extract position of the player (where it will be drawn)
+		EntitySnapshot player = snapshot.player;
+		if (player == null)
+			return;
+
+		int posX = player.getRenderX(interpolation);
+		int posY = player.getRenderY(interpolation);
 
 		// If screen is at the left edge then lock it so it wont show blank areas
-		if (pos[0] - (resolution[0]/2) < 0)
+		if (posX - (resolution[0]/2) < 0)
 		{
 			screenPosition[0] = 0;
 		}
 		// If the screen is at the right edge then lock it
-		else if (pos[0] + (resolution[0]/2) > GameData.levelSize[0])
+		else if (posX + (resolution[0]/2) > snapshot.levelSize[0])
 		{
-			screenPosition[0] = GameData.levelSize[0]-resolution[0];
+			screenPosition[0] = snapshot.levelSize[0]-resolution[0];
 		}
 		// Else position the screen so the player is in the center of it
 		else
 		{
-			screenPosition[0] = pos[0]-(resolution[0]/2);
+			screenPosition[0] = posX-(resolution[0]/2);
 		}
 
 		// If screen is at the top edge then lock it
-		if (pos[1] - (resolution[1]/2) < 0)
+		if (posY - (resolution[1]/2) < 0)
 		{
 			screenPosition[1] = 0;
 		}
 		// If the screen is at the bottom edge then lock it
-		else if (pos[1] + (resolution[1]/2) > GameData.levelSize[1])
+		else if (posY + (resolution[1]/2) > snapshot.levelSize[1])
 		{
-			screenPosition[1] = GameData.levelSize[1]-resolution[1];
+			screenPosition[1] = snapshot.levelSize[1]-resolution[1];
 		}
 		// Else position the screen so the player is in the center
 		else
 		{
-			screenPosition[1] = pos[1]-(resolution[1]/2);
+			screenPosition[1] = posY-(resolution[1]/2);
 		}
+
+		if (snapshot.stream != null)
+			snapshot.stream.update(screenPosition[0], screenPosition[1], resolution[0], resolution[1]);
 	}
 
 	/* --------- Key values --------- */
@@ -856,6 +935,10 @@ public class MainCanvas extends Canvas implements KeyListener{
 	 */
 	@Override
 	public void keyPressed(KeyEvent e) {
+		// While a game is being recorded the game's keys are applied at the start of the next tick instead
+		if (InputRecorder.keyEvent(e.getKeyCode(), true))
+			return;
+
 		if (e.getKeyCode() == KeyEvent.VK_ESCAPE)
 		{
 			MainCanvas.esc = true;
@@ -972,6 +1055,9 @@ public class MainCanvas extends Canvas implements KeyListener{
 	@Override
 	public void keyReleased(KeyEvent e) {
 
+		if (InputRecorder.keyEvent(e.getKeyCode(), false))
+			return;
+
 		if ((e.getKeyCode() == KeyEvent.VK_A) || (e.getKeyCode() == KeyEvent.VK_LEFT))
 		{
 			MainCanvas.left = false;
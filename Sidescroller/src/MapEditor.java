@@ -117,9 +117,14 @@ class MapPanel extends JPanel implements MouseListener, MouseMotionListener
 		if (MapEditor.gamedata.getBackground()[3] != null)
 			g.drawImage(MapEditor.gamedata.getBackground()[3], 0, 0, null);
 
-		for (Map.Entry<String, Entity> entry : Main.gamedata.getGameEntities().entrySet())
+		// Entities are added, moved and resized by the editor without going through the game, so index them again
+		// before checking them for collisions
+		Main.gamedata.rebuildEntityGrid();
+
+		EntityRegistry entities = Main.gamedata.getEntities();
+		for (int i = 0; i < entities.size(); i++)
 		{
-			Entity e = entry.getValue();
+			Entity e = entities.get(i);
 			g.setColor(new Color(255, 255, 255, 120));
 			
 			g.fillRect(e.getPos()[0]-55, e.getPos()[1]-50, 55, 70);
@@ -128,7 +133,7 @@ class MapPanel extends JPanel implements MouseListener, MouseMotionListener
 			
 			g.drawRect(e.getPos()[0]-55, e.getPos()[1]-50, 55, 70);
 			
-			g.drawString(entry.getKey(), e.getPos()[0]-50, e.getPos()[1]-30);
+			g.drawString(e.registryName, e.getPos()[0]-50, e.getPos()[1]-30);
 			g.drawString(e.faction, e.getPos()[0]-50, e.getPos()[1]-15);
 			g.drawString(""+e.pos[0], e.getPos()[0]-50, e.getPos()[1]);
 			g.drawString(""+e.pos[1], e.getPos()[0]-50, e.getPos()[1]+15);
@@ -208,9 +213,10 @@ class MapPanel extends JPanel implements MouseListener, MouseMotionListener
 			return;
 		}
 
-		for (Map.Entry<String, Entity> entry : Main.gamedata.getGameEntities().entrySet())
+		EntityRegistry entities = Main.gamedata.getEntities();
+		for (int i = 0; i < entities.size(); i++)
 		{
-			Entity ent = entry.getValue();
+			Entity ent = entities.get(i);
 			if ((e.getX() > ent.getCollisionShape()[0]+ent.getPos()[0]) && (e.getX() < ent.getCollisionShape()[0]+ent.getPos()[0]+ent.getCollisionShape()[2])
 					&& (e.getY() > ent.getCollisionShape()[1]+ent.getPos()[1]) && (e.getY() < ent.getCollisionShape()[1]+ent.getPos()[1]+ent.getCollisionShape()[3]))
 			{
@@ -221,7 +227,7 @@ class MapPanel extends JPanel implements MouseListener, MouseMotionListener
 				}
 				else
 				{
-					new EntityFrame(ent, entry.getKey());
+					new EntityFrame(ent, ent.registryName);
 					return;
 				}
 			}
@@ -305,9 +311,9 @@ class OptionsPanel extends JPanel
 
 			@Override
 			public void actionPerformed(ActionEvent ev) {
-				Entity e = new Entity("Unnamed"+MapEditor.gamedata.getGameEntities().size(), 100, 0, 8, new int[]{EditorFrame.sp.getHorizontalScrollBar().getValue(), EditorFrame.sp.getVerticalScrollBar().getValue(), 0}, 0, null, new int[]{0, 0, 50, 50}, new boolean[]{false, false, false}, null);
+				Entity e = new Entity("Unnamed"+MapEditor.gamedata.getEntities().size(), 100, 0, 8, new int[]{EditorFrame.sp.getHorizontalScrollBar().getValue(), EditorFrame.sp.getVerticalScrollBar().getValue(), 0}, 0, null, new int[]{0, 0, 50, 50}, new boolean[]{false, false, false}, null);
 
-				MapEditor.gamedata.getGameEntities().put(e.getName(), e);
+				MapEditor.gamedata.addEntity(e.getName(), e);
 
 				new EntityFrame(e, e.getName());
 
@@ -321,7 +327,7 @@ class OptionsPanel extends JPanel
 
 			@Override
 			public void actionPerformed(ActionEvent ev) {
-				MapEditor.gamedata.getGameEntities().clear();
+				MapEditor.gamedata.getEntities().clear();
 
 				EditorFrame.mapPanel.repaint();
 
@@ -335,9 +341,10 @@ class OptionsPanel extends JPanel
 			public void actionPerformed(ActionEvent ev) {
 				for (int i = 0; i < 50; i++)
 				{
-					for (Map.Entry<String, Entity> entry : Main.gamedata.getGameEntities().entrySet())
+					EntityRegistry entities = Main.gamedata.getEntities();
+					for (int j = 0; j < entities.size(); j++)
 					{
-						Entity e = entry.getValue();
+						Entity e = entities.get(j);
 						if (e.getBehavior()[1])
 							e.behavior1();
 					}
@@ -358,7 +365,7 @@ class OptionsPanel extends JPanel
 				file.mkdirs();
 				
 				Level level = new Level();
-				level.create(name.getText(), MapEditor.gamedata.getGameEntities(), bgmname.getText(), transform.isSelected());
+				level.create(name.getText(), MapEditor.gamedata.toEntityMap(), bgmname.getText(), transform.isSelected());
 
 				Level.save(level);
 				
@@ -426,6 +433,8 @@ class OptionsPanel extends JPanel
 					bgmname.setText(level.BGM);
 					Main.gamedata.transformAllowed = level.transformAllowed;
 					
+					// The editor changes the level images, so always load them from the files
+					GameData.storedLevels.remove(level.name);
 					MapEditor.gamedata.loadLevelImages(level.name);
 					MapEditor.gamedata.setGameEntities(level.gameEntities);
 					MapEditor.gamedata.createCollisionMap();
@@ -871,7 +880,7 @@ class EntityFrame extends JFrame
 				e1.expAmount = Integer.parseInt(exp.getText());
 				
 				e1.setName(name.getText()+"1");
-				MapEditor.gamedata.getGameEntities().put(e1.getName(), e1);
+				MapEditor.gamedata.addEntity(e1.getName(), e1);
 				e1.setFaction(faction.getText());
 				e1.setAnimateTime(Long.parseLong(animUpdate.getText()));
 				e1.setTotalAnimateStrip(Integer.parseInt(animStrips.getText()));
@@ -938,10 +947,9 @@ class EntityFrame extends JFrame
 					e.spellsList = spellList;
 					e.expAmount = Integer.parseInt(exp.getText());
 					
-					MapEditor.gamedata.getGameEntities().remove(e.getName());
-					MapEditor.gamedata.getGameEntities().remove(entryKey);
+					MapEditor.gamedata.removeEntity(e);
 					e.setName(name.getText());
-					MapEditor.gamedata.getGameEntities().put(e.getName(), e);
+					MapEditor.gamedata.addEntity(e.getName(), e);
 					
 					e.setFaction(faction.getText());
 					e.setAnimateTime(Long.parseLong(animUpdate.getText()));
@@ -1019,7 +1027,7 @@ class EntityFrame extends JFrame
 
 			@Override
 			public void actionPerformed(ActionEvent ev) {
-				MapEditor.gamedata.getGameEntities().remove(e.getName());
+				MapEditor.gamedata.removeEntity(e);
 				EditorFrame.mapPanel.repaint();
 				frame.dispose();
 				
@@ -2008,7 +2008,7 @@ class CharacterMenu extends MenuScreen
 	@Override
 	protected void drawLeft(Graphics2D g2d) {
 		//140 350
-		Entity p = Main.gamedata.getGameEntities().get("Player");
+		Entity p = Main.gamedata.getEntities().get("Player");
 
 		g2d.setColor(Color.BLACK);
 		int y = 350;
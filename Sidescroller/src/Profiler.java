@@ -0,0 +1,258 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.util.Arrays;
+
+/**
+ * Class used to time each phase of a frame and draw the results over the game. <p>
+ * Only records anything while {@link Main#debug} is on, otherwise every method returns straight away. The last
+ * {@link Profiler#sampleCount} timings of each phase are kept in a ring buffer, and the median, 99th percentile and
+ * maximum of them are shown. All the buffers are allocated up front so recording never creates garbage.
+ * @author Lyeeedar
+ *
+ */
+public class Profiler {
+
+	// ----------- Phases ----------- //
+	public static final int CALCULATE_SCREEN = 0;
+	public static final int DRAW_BACKGROUND = 1;
+	public static final int DRAW_ENTITIES = 2;
+	public static final int DRAW_FOREGROUND = 3;
+	public static final int DRAW_SPEECH = 4;
+	public static final int DRAW_HUD = 5;
+	public static final int SHOW = 6;
+	public static final int EVALUATE_AI = 7;
+	public static final int UPDATE_TIME = 8;
+
+	private static final String[] phaseNames = {"calculateScreen", "drawBackground", "drawEntities", "drawForeground",
+		"drawSpeech", "drawHUD", "show", "evaluateAI", "updateTime"};
+	// ----------- Phases ----------- //
+
+	/**
+	 * The width of the overlay in pixels
+	 */
+	public static final int width = 300;
+
+	/**
+	 * Monospaced so the columns line up
+	 */
+	private static final Font font = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+
+	/**
+	 * The number of timings kept for each phase
+	 */
+	public static final int sampleCount = 256;
+
+	/**
+	 * The number of frame times shown in the graph (1 pixel each)
+	 */
+	public static final int graphLength = 200;
+
+	/**
+	 * The frame time (in ns) drawn at the top of the graph
+	 */
+	private static final long graphScale = 50000000L;
+
+	/**
+	 * How often (in ns) the percentiles are recalculated. Stops the numbers flickering too fast to read
+	 */
+	private static final long statsInterval = 250000000L;
+
+	/**
+	 * The timings (in ns) of each phase. Ring buffers indexed by {@link Profiler#sampleIndex}
+	 */
+	private static final long[][] samples = new long[phaseNames.length][sampleCount];
+	private static final int[] sampleIndex = new int[phaseNames.length];
+	private static final int[] samplesRecorded = new int[phaseNames.length];
+
+	/**
+	 * The time (in ns) between each drawn frame. Ring buffer indexed by {@link Profiler#frameIndex}
+	 */
+	private static final long[] frameTimes = new long[graphLength];
+	private static int frameIndex = 0;
+	private static long lastFrame = 0;
+
+	/**
+	 * Used to sort a copy of the samples when working out the percentiles
+	 */
+	private static final long[] sorted = new long[sampleCount];
+
+	/**
+	 * The text drawn for each phase, recalculated every {@link Profiler#statsInterval}
+	 */
+	private static final String[] phaseText = new String[phaseNames.length];
+	private static String frameText = "";
+	private static final String headerText = String.format("%-15s %7s %7s %7s", "phase (ms)", "p50", "p99", "max");
+	private static long lastStats = 0;
+
+	/**
+	 * Method to start timing a phase. Returns the time to pass to {@link Profiler#end(int, long)}
+	 * @return
+	 */
+	public static long begin()
+	{
+		if (!Main.debug)
+			return 0;
+
+		return System.nanoTime();
+	}
+
+	/**
+	 * Method to record the time taken by a phase started by {@link Profiler#begin()}. Returns the current time so the
+	 * next phase can be timed from it.
+	 * @param phase
+	 * @param start
+	 * @return
+	 */
+	public static long end(int phase, long start)
+	{
+		if (!Main.debug)
+			return 0;
+
+		long now = System.nanoTime();
+
+		// Profiling was turned on mid phase
+		if (start == 0)
+			return now;
+
+		long[] s = samples[phase];
+		int i = sampleIndex[phase];
+		s[i] = now - start;
+		sampleIndex[phase] = (i + 1) % sampleCount;
+
+		if (samplesRecorded[phase] < sampleCount)
+			samplesRecorded[phase]++;
+
+		return now;
+	}
+
+	/**
+	 * Method to record that a frame has been drawn. Call once at the start of each frame.
+	 */
+	public static void frame()
+	{
+		if (!Main.debug)
+		{
+			lastFrame = 0;
+			return;
+		}
+
+		long now = System.nanoTime();
+
+		if (lastFrame != 0)
+		{
+			frameTimes[frameIndex] = now - lastFrame;
+			frameIndex = (frameIndex + 1) % graphLength;
+		}
+
+		lastFrame = now;
+	}
+
+	/**
+	 * Method to draw the profiler overlay
+	 * @param g2d
+	 * @param framerate
+	 * @param x the left edge of the overlay
+	 * @param y the top edge of the overlay
+	 */
+	public static void draw(Graphics2D g2d, long framerate, int x, int y)
+	{
+		if (!Main.debug)
+			return;
+
+		long now = System.nanoTime();
+		if (now - lastStats > statsInterval)
+		{
+			calculateStats(framerate);
+			lastStats = now;
+		}
+
+		int lineHeight = 14;
+		int height = (phaseNames.length + 2) * lineHeight + 70;
+
+		g2d.setColor(new Color(0, 0, 0, 150));
+		g2d.fillRect(x, y, width, height);
+
+		g2d.setFont(font);
+
+		g2d.setColor(Color.YELLOW);
+		g2d.drawString(frameText, x+10, y+lineHeight);
+
+		g2d.setColor(Color.LIGHT_GRAY);
+		g2d.drawString(headerText, x+10, y+(2*lineHeight));
+
+		g2d.setColor(Color.WHITE);
+		for (int i = 0; i < phaseNames.length; i++)
+		{
+			if (phaseText[i] != null)
+				g2d.drawString(phaseText[i], x+10, y+((i+3)*lineHeight));
+		}
+
+		// Frame time graph, newest frame on the right
+		int graphX = x+10;
+		int graphBottom = y+height-8;
+		int graphHeight = 55;
+
+		for (int i = 0; i < graphLength; i++)
+		{
+			long time = frameTimes[(frameIndex + i) % graphLength];
+
+			int h = (int) ((time * graphHeight) / graphScale);
+			if (h > graphHeight)
+				h = graphHeight;
+
+			// Colour frames by whether they met the frame rate target
+			if ((Main.targetFPS > 0) && (time > 1000000000L / Main.targetFPS + 1000000L))
+				g2d.setColor(Color.RED);
+			else
+				g2d.setColor(Color.GREEN);
+
+			g2d.drawLine(graphX+i, graphBottom, graphX+i, graphBottom-h);
+		}
+
+		// Target frame time line
+		if (Main.targetFPS > 0)
+		{
+			int target = graphBottom - (int) (((1000000000L / Main.targetFPS) * graphHeight) / graphScale);
+			g2d.setColor(Color.YELLOW);
+			g2d.drawLine(graphX, target, graphX+graphLength, target);
+		}
+	}
+
+	/**
+	 * Method to work out the median, 99th percentile and max of every phase and store the text to draw
+	 * @param framerate
+	 */
+	private static void calculateStats(long framerate)
+	{
+		for (int phase = 0; phase < phaseNames.length; phase++)
+		{
+			int count = samplesRecorded[phase];
+
+			if (count == 0)
+			{
+				phaseText[phase] = null;
+				continue;
+			}
+
+			System.arraycopy(samples[phase], 0, sorted, 0, count);
+			Arrays.sort(sorted, 0, count);
+
+			long p50 = sorted[((count-1) * 50) / 100];
+			long p99 = sorted[((count-1) * 99) / 100];
+			long max = sorted[count-1];
+
+			phaseText[phase] = String.format("%-15s %7.2f %7.2f %7.2f", phaseNames[phase], p50 / 1000000.0, p99 / 1000000.0, max / 1000000.0);
+		}
+
+		long worst = 0;
+		for (int i = 0; i < graphLength; i++)
+		{
+			if (frameTimes[i] > worst)
+				worst = frameTimes[i];
+		}
+
+		frameText = "fps: " + framerate + "   worst frame: " + String.format("%.1f", worst / 1000000.0) + " ms";
+	}
+
+}
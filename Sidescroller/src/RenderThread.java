@@ -0,0 +1,113 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Thread that draws the game while it is running (state 1), and the loading screen while a game or level is loading
+ * (see {@link LevelLoader}). <p>
+ * It draws the newest {@link WorldSnapshot} published by the simulation, so a slow frame never holds up the AI and a
+ * slow AI update never holds up drawing. All the other game states are still drawn by the game loop.
+ * @author Lyeeedar
+ *
+ */
+public class RenderThread extends Thread {
+
+	/**
+	 * Whether the thread should keep running
+	 */
+	private volatile boolean running = true;
+
+	/**
+	 * The snapshots to draw
+	 */
+	private final SnapshotBuffer snapshots;
+
+	public RenderThread(SnapshotBuffer snapshots)
+	{
+		super("Render Thread");
+
+		this.snapshots = snapshots;
+
+		this.setDaemon(true);
+	}
+
+	@Override
+	public void run()
+	{
+		FramePacer pacer = new FramePacer(Main.targetFPS);
+
+		long totalTime = 0;
+		int frames = 0;
+		int framerate = 0;
+		long lastTime = System.nanoTime();
+
+		while (running)
+		{
+			// Keep the loading screen moving while the loader works. The game cannot be drawn while it is loading
+			if (Main.gamedata.loading)
+			{
+				if (LevelLoader.isShowing())
+				{
+					Main.maincanvas.paintLoad(Main.gc);
+
+					pacer.setTargetFPS(Main.targetFPS);
+					pacer.sync();
+				}
+				else
+				{
+					LockSupport.parkNanos(1000000L);
+				}
+
+				lastTime = System.nanoTime();
+				continue;
+			}
+
+			// Otherwise only draw while the game is running
+			if (Main.getState() != 1)
+			{
+				LockSupport.parkNanos(10000000L);
+				lastTime = System.nanoTime();
+				continue;
+			}
+
+			long currentTime = System.nanoTime();
+			totalTime += currentTime - lastTime;
+			lastTime = currentTime;
+			frames++;
+
+			// Update fps every 0.5 seconds
+			if (totalTime >= 500000000L)
+			{
+				framerate = (int) ((frames * 1000000000L) / totalTime);
+				totalTime = 0;
+				frames = 0;
+			}
+
+			// Hold the paint lock so the game loop cannot swap the snapshot mid frame (e.g. when the game is paused)
+			synchronized (MainCanvas.paintLock)
+			{
+				WorldSnapshot snapshot = snapshots.acquire();
+
+				// Work out how far through the next tick we are
+				long tickTime = Main.gamedata.getGameSpeed() * 1000000L;
+				double interpolation = (double) (currentTime - snapshot.publishTime) / tickTime;
+				if (interpolation > 1)
+					interpolation = 1;
+				else if (interpolation < 0)
+					interpolation = 0;
+
+				Main.maincanvas.paintGame(snapshot, framerate, interpolation);
+			}
+
+			pacer.setTargetFPS(Main.targetFPS);
+			pacer.sync();
+		}
+	}
+
+	/**
+	 * Method to stop the thread after the current frame
+	 */
+	public void shutdown()
+	{
+		running = false;
+	}
+
+}
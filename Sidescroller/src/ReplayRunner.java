@@ -0,0 +1,333 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Class used to play back a game recorded by {@link InputRecorder} without a display, as fast as possible, and report
+ * how long the ticks (and, if asked, the frames) took. Two builds can be compared by replaying the same log with both. <p>
+ * The recorded keys are fed into {@link MainCanvas} in place of the keyboard, and {@link Main#ran} is seeded with the
+ * recorded seed, so the replay plays out exactly as the game did. Every level change in the log is checked against
+ * the replay, and the replay stops if they do not match (e.g. if the game has changed since the log was recorded). <p>
+ * Must be run from the same directory as the game (so the Data folder can be found). <p>
+ * Usage: ReplayRunner log [draw] <p>
+ * With "draw" every tick is also drawn to an image off screen, and the frame times are reported as well.
+ * @author Lyeeedar
+ *
+ */
+public class ReplayRunner {
+
+	/**
+	 * The time (in ns) each tick, and each frame if drawing, took
+	 */
+	private long[] tickTimes = new long[1024];
+	private long[] frameTimes = new long[1024];
+	private int ticks = 0;
+	private int frames = 0;
+
+	/**
+	 * The number of level loads the replay has done that have been matched with the log
+	 */
+	private int loads;
+
+	/**
+	 * Why the replay stopped before the end of the log. Null if it reached the end
+	 */
+	private String desync = null;
+
+	/**
+	 * Used to draw the game off screen. Null if not drawing
+	 */
+	private MainCanvas canvas;
+	private BufferedImage frame;
+
+	public static void main(String[] args)
+	{
+		if (args.length < 1)
+		{
+			System.err.println("Usage: ReplayRunner log [draw]");
+			System.exit(1);
+		}
+
+		boolean draw = (args.length > 1) && (args[1].equals("draw"));
+
+		HeadlessRunner.init();
+
+		ReplayRunner runner = new ReplayRunner();
+
+		try {
+			runner.run(new File(args[0]), draw);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+
+		System.exit((runner.desync == null) ? 0 : 2);
+	}
+
+	/**
+	 * Method to play back the given log and print out how long it took. {@link HeadlessRunner#init()} must have been
+	 * called first.
+	 * @param log
+	 * @param draw whether to draw every tick off screen
+	 * @throws IOException if the log could not be read or is not a recording
+	 */
+	public void run(File log, boolean draw) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(readFile(log)));
+
+		if ((in.readInt() != InputRecorder.MAGIC) || (in.readInt() != InputRecorder.VERSION))
+			throw new IOException(log.getPath() + " is not a recording, or is from a different version");
+
+		long seed = in.readLong();
+		int gameSpeed = in.readInt();
+
+		GameData gamedata = Main.gamedata;
+
+		if (gameSpeed != gamedata.getGameSpeed())
+			System.err.println("Recorded with a tick of " + gameSpeed + " ms, but the game now uses " + gamedata.getGameSpeed() + " ms");
+
+		// Use a new session so no saves from a real game (or the recording) are picked up
+		GameData.gameSessionID = "Replay" + System.nanoTime();
+		GameData.aiBudget = 0;
+		Main.ran.setSeed(seed);
+
+		if (in.readByte() != InputRecorder.LEVEL)
+			throw new IOException(log.getPath() + " does not start with a level");
+
+		String level = in.readUTF();
+
+		long loadStart = System.nanoTime();
+		gamedata.loadLevel(level);
+		long loadTime = System.nanoTime() - loadStart;
+
+		loads = gamedata.getEntities().getLoadCount();
+
+		if (draw)
+		{
+			canvas = new MainCanvas(null);
+			frame = new BufferedImage(MainCanvas.resolution[0], MainCanvas.resolution[1], BufferedImage.TYPE_INT_RGB);
+		}
+
+		Main.setState(1);
+
+		long start = System.nanoTime();
+
+		try {
+			play(in, gamedata);
+		} catch (EOFException e) {
+			desync = "the log ended early";
+		}
+
+		long totalTime = System.nanoTime() - start;
+
+		double simulated = (double) ticks * gameSpeed;
+		double wall = totalTime / 1000000.0;
+
+		Entity player = gamedata.getEntities().get("Player");
+
+		System.out.println("Log:                " + log.getPath() + " (" + log.length() + " bytes)");
+		System.out.println("Level:              " + level + " (ended in " + gamedata.levelName + ")");
+		System.out.println("Load time:          " + (loadTime / 1000000) + " ms");
+		System.out.println("Ticks:              " + ticks);
+		System.out.println("Entities:           " + gamedata.getEntities().size());
+		if (player != null)
+			System.out.println("Player:             " + player.getPos()[0] + ", " + player.getPos()[1] + " (" + player.getHealth() + " health)");
+		System.out.println("Wall time:          " + (long) wall + " ms");
+		System.out.println("Simulated time:     " + (long) simulated + " ms");
+		System.out.println("Ticks per second:   " + (long) ((ticks * 1000.0) / Math.max(wall, 1)));
+		System.out.println("Tick times:         " + describe(tickTimes, ticks));
+		if (draw)
+			System.out.println("Frame times:        " + describe(frameTimes, frames));
+		System.out.println("Result:             " + ((desync == null) ? "in sync" : "out of sync after " + ticks + " ticks, " + desync));
+	}
+
+	/**
+	 * Method to run through the records of the log until the end, or until the replay goes out of sync
+	 * @param in
+	 * @param gamedata
+	 * @throws IOException
+	 */
+	private void play(DataInputStream in, GameData gamedata) throws IOException
+	{
+		EntityRegistry registry = gamedata.getEntities();
+
+		while (true)
+		{
+			int record = in.readByte();
+
+			if (record == InputRecorder.END)
+			{
+				return;
+			}
+			else if (record == InputRecorder.KEYS)
+			{
+				InputRecorder.setKeys(in.readShort());
+			}
+			else if (record == InputRecorder.TICKS)
+			{
+				int count = readVarInt(in);
+
+				for (int i = 0; i < count; i++)
+				{
+					if (!checkState(registry, 1))
+						return;
+
+					tick(gamedata);
+				}
+			}
+			else if (record == InputRecorder.SCENE)
+			{
+				int time = readVarInt(in);
+
+				if (!checkState(registry, 5))
+					return;
+
+				gamedata.currentScene.updateTime(time);
+			}
+			else if (record == InputRecorder.LEVEL)
+			{
+				String level = in.readUTF();
+
+				if ((registry.getLoadCount() == loads) || (!level.equals(gamedata.levelName)))
+				{
+					desync = "the recording changed to level " + level + " but the replay is still in " + gamedata.levelName;
+					return;
+				}
+
+				loads = registry.getLoadCount();
+			}
+			else
+			{
+				throw new IOException("Unknown record " + record);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the game is in the given state and has not changed level without the log saying so. Otherwise
+	 * records why the replay is out of sync and returns false
+	 * @param registry
+	 * @param state
+	 * @return
+	 */
+	private boolean checkState(EntityRegistry registry, int state)
+	{
+		if (registry.getLoadCount() != loads)
+			desync = "the replay changed to level " + Main.gamedata.levelName + " but the recording did not";
+		else if (Main.getState() != state)
+			desync = "the recording was in state " + state + " but the replay is in state " + Main.getState();
+
+		return desync == null;
+	}
+
+	/**
+	 * Method to run a single tick, drawing it if needed, and store how long it took
+	 * @param gamedata
+	 */
+	private void tick(GameData gamedata)
+	{
+		long time = System.nanoTime();
+
+		HeadlessRunner.step(gamedata);
+
+		long tickTime = System.nanoTime() - time;
+
+		if (ticks == tickTimes.length)
+			tickTimes = Arrays.copyOf(tickTimes, ticks * 2);
+		tickTimes[ticks++] = tickTime;
+
+		if (canvas == null)
+			return;
+
+		time = System.nanoTime();
+
+		Graphics2D g2d = frame.createGraphics();
+		try {
+			canvas.drawGame(g2d, Main.snapshots.acquire(), 0, 1);
+		} finally {
+			g2d.dispose();
+		}
+
+		long frameTime = (System.nanoTime() - time) + tickTime;
+
+		if (frames == frameTimes.length)
+			frameTimes = Arrays.copyOf(frameTimes, frames * 2);
+		frameTimes[frames++] = frameTime;
+	}
+
+	/**
+	 * Returns the average, median, 99th percentile and longest of the given times
+	 * @param times
+	 * @param count
+	 * @return
+	 */
+	private static String describe(long[] times, int count)
+	{
+		if (count == 0)
+			return "none";
+
+		long[] sorted = Arrays.copyOf(times, count);
+		Arrays.sort(sorted);
+
+		long total = 0;
+		for (long time : sorted)
+			total += time;
+
+		return "average " + ((total / count) / 1000) + " us, median " + (sorted[count / 2] / 1000)
+				+ " us, 99% " + (sorted[(int) Math.min(count - 1, (long) Math.ceil(count * 0.99) - 1)] / 1000)
+				+ " us, longest " + (sorted[count - 1] / 1000) + " us";
+	}
+
+	/**
+	 * Method to read an int written by InputRecorder.writeVarInt
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	private static int readVarInt(DataInputStream in) throws IOException
+	{
+		int value = 0;
+		int shift = 0;
+
+		while (true)
+		{
+			int b = in.readUnsignedByte();
+
+			value |= (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0)
+				return value;
+
+			shift += 7;
+			if (shift > 28)
+				throw new IOException("Bad number in log");
+		}
+	}
+
+	/**
+	 * Method to read the whole of the given file
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	private static byte[] readFile(File file) throws IOException
+	{
+		byte[] data = new byte[(int) file.length()];
+
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			in.readFully(data);
+		} finally {
+			in.close();
+		}
+
+		return data;
+	}
+
+}
@@ -1,4 +1,3 @@
-import java.awt.GraphicsConfiguration;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -11,6 +10,8 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * @author Lyeeedar
@@ -73,7 +74,7 @@ public class SaveGame implements Serializable{
 
 		HashMap<String, Entity> saveMap = new HashMap<String, Entity>();
 
-		for (Map.Entry<String, Entity> entry : gamedata.getGameEntities().entrySet()){
+		for (Map.Entry<String, Entity> entry : gamedata.toEntityMap().entrySet()){
 			Entity e = entry.getValue();
 
 			if (e instanceof Spell)
@@ -134,8 +135,6 @@ public class SaveGame implements Serializable{
 	public static boolean loadGame(File file, GameData gamedata)
 	{
 		
-		GraphicsConfiguration gc = Main.gc;
-		
 		SaveGame save = null;
 		
 		File dir = new File("Data/Saves");
@@ -146,12 +145,11 @@ public class SaveGame implements Serializable{
 		
 		Main.gamedata.loadStage = 1;
 		Main.gamedata.loadText = "Searching The Past";
-		Main.maincanvas.paintLoad(gc);
 		if (file.exists())
 		{
 			try {
 				FileInputStream fin = new FileInputStream(file);
-				ObjectInputStream in = new ObjectInputStream(fin);
+				ObjectInputStream in = new ObjectInputStream(LevelLoader.count(fin));
 				save = (SaveGame) in.readObject();
 				in.close();
 				fin.close();
@@ -169,16 +167,18 @@ public class SaveGame implements Serializable{
 		
 		Main.gamedata.loadStage = 2;
 		Main.gamedata.loadText = "Creating The World";
-		Main.maincanvas.paintLoad(gc);
-		Level level = Level.load(save.currentLevel+".data");
+		Level level = loadData(save.currentLevel);
 		if (level == null)
 			return false;
 		
+		// The level images and music do not depend on the rest of the load, so start them now
+		Future<TempLevelData> images = startImages(level);
+		Future<OggClip> song = startSong(level, gamedata);
+		
 		HashMap<String, Entity> gameEntities = level.gameEntities;
 		
 		Main.gamedata.loadStage = 3;
 		Main.gamedata.loadText = "Replacing All Living Things";
-		Main.maincanvas.paintLoad(gc);
 		if (save.gameEntities.containsKey(level.name))
 		{
 			gameEntities = save.gameEntities.get(level.name);
@@ -187,7 +187,6 @@ public class SaveGame implements Serializable{
 		
 		Main.gamedata.loadStage = 4;
 		Main.gamedata.loadText = "Opening Your Eyes";
-		Main.maincanvas.paintLoad(gc);
 		for (Map.Entry<String, Entity> entry : gameEntities.entrySet())
 		{
 			Entity ent = entry.getValue();
@@ -197,17 +196,14 @@ public class SaveGame implements Serializable{
 		
 		Main.gamedata.loadStage = 5;
 		Main.gamedata.loadText = "Painting The Land";
-		Main.maincanvas.paintLoad(gc);
 		gamedata.setGameEntities(gameEntities);
-		gamedata.loadLevelImages(level.name);
+		gamedata.setLevelImages(LevelLoader.get(images));
 		
 		Main.gamedata.loadStage = 6;
 		Main.gamedata.loadText = "Finalising Geology";
-		Main.maincanvas.paintLoad(gc);
 		
 		Main.gamedata.loadStage = 7;
 		Main.gamedata.loadText = "Filling Spellbook";
-		Main.maincanvas.paintLoad(gc);
 		Character.inventory = save.inventory;
 		Character.socketedSpells = save.socketedSpells;
 		
@@ -224,12 +220,11 @@ public class SaveGame implements Serializable{
 		Main.gamedata.loadStage = 8;
 		Main.gamedata.loadText = "Creating Magic";
 		Main.gamedata.transformAllowed = level.transformAllowed;
-		Main.maincanvas.paintLoad(gc);
 		Character.reloadAllImages();
 		
 		gamedata.systemMessages.clear();
 		
-		gamedata.changeSong(level.getBGM());
+		gamedata.changeSong(LevelLoader.get(song));
 		
 		GameData.gameSessionID = save.sessionID;
 		
@@ -238,7 +233,6 @@ public class SaveGame implements Serializable{
 	
 	public static boolean loadLevel(String levelName, GameData gamedata)
 	{
-		GraphicsConfiguration gc = Main.gc;
 		SaveGame save = null;
 		
 		File dir = new File("Data/Saves");
@@ -248,12 +242,11 @@ public class SaveGame implements Serializable{
 		
 		Main.gamedata.loadStage = 1;
 		Main.gamedata.loadText = "Checking The Past";
-		Main.maincanvas.paintLoad(gc);
 		if ((file != null) && (file.exists()))
 		{
 			try {
 				FileInputStream fin = new FileInputStream(file);
-				ObjectInputStream in = new ObjectInputStream(fin);
+				ObjectInputStream in = new ObjectInputStream(LevelLoader.count(fin));
 				save = (SaveGame) in.readObject();
 				in.close();
 				fin.close();
@@ -271,14 +264,16 @@ public class SaveGame implements Serializable{
 		
 		Main.gamedata.loadStage = 2;
 		Main.gamedata.loadText = "Creating The Land";
-		Main.maincanvas.paintLoad(gc);
-		Level level = Level.load(levelName+".data");
+		Level level = loadData(levelName);
+		
+		// The level images and music do not depend on the rest of the load, so start them now
+		Future<TempLevelData> images = startImages(level);
+		Future<OggClip> song = startSong(level, gamedata);
 		
 		HashMap<String, Entity> gameEntities = level.gameEntities;
 		
 		Main.gamedata.loadStage = 3;
 		Main.gamedata.loadText = "Annihalting Native Inhabitants";
-		Main.maincanvas.paintLoad(gc);
 		if (save.gameEntities.containsKey(level.name))
 		{
 			gameEntities = save.gameEntities.get(level.name);
@@ -287,7 +282,6 @@ public class SaveGame implements Serializable{
 		
 		Main.gamedata.loadStage = 4;
 		Main.gamedata.loadText = "Powering You Up";
-		Main.maincanvas.paintLoad(gc);
 		
 		if (save.player != null)
 		{
@@ -309,7 +303,8 @@ public class SaveGame implements Serializable{
 			
 			Entity e = new Entity("Player", 80, 8, 8, new int[]{20, 20, 0}, 8, "male.png", new int[]{46, 18, 27, 69}, new boolean[]{true, true, false, false}, null);
 			
-			e.setPos(oldPlayer.getPos());
+			if (oldPlayer != null)
+				e.setPos(oldPlayer.getPos());
 			e.setFaction("Player");
 			
 			gameEntities.put("Player", e);
@@ -317,7 +312,6 @@ public class SaveGame implements Serializable{
 		
 		Main.gamedata.loadStage = 5;
 		Main.gamedata.loadText = "Opening Your Eyes";
-		Main.maincanvas.paintLoad(gc);
 		for (Map.Entry<String, Entity> entry : gameEntities.entrySet())
 		{
 			Entity ent = entry.getValue();
@@ -329,20 +323,67 @@ public class SaveGame implements Serializable{
 		
 		Main.gamedata.loadStage = 6;
 		Main.gamedata.loadText = "Finalising Geology";
-		Main.maincanvas.paintLoad(gc);
 		gamedata.setGameEntities(gameEntities);
-		gamedata.loadLevelImages(level.name);
+		gamedata.setLevelImages(LevelLoader.get(images));
 		
 		Main.gamedata.loadStage = 7;
 		Main.gamedata.loadText = "Solidfying Ground";
-		Main.maincanvas.paintLoad(gc);
 		Main.gamedata.transformAllowed = level.transformAllowed;
 		
-		gamedata.changeSong(level.getBGM());
+		gamedata.changeSong(LevelLoader.get(song));
 		
 		return true;
 	}
 	
+	/**
+	 * Method to get the data file of the given level, using the copy read ahead by {@link LevelPrefetcher} if there is
+	 * one
+	 * @param levelName
+	 * @return
+	 */
+	private static Level loadData(String levelName)
+	{
+		Level level = GameData.storedLevels.takeData(levelName);
+		
+		if (level == null)
+			level = Level.load(levelName+".data");
+		
+		return level;
+	}
+	
+	/**
+	 * Method to start loading the level's images and collision map on another thread
+	 * @param level
+	 * @return
+	 */
+	private static Future<TempLevelData> startImages(final Level level)
+	{
+		return LevelLoader.submit(new Callable<TempLevelData>() {
+			@Override
+			public TempLevelData call()
+			{
+				return GameData.readLevelImages(level.name);
+			}
+		});
+	}
+	
+	/**
+	 * Method to start opening the level's BGM on another thread
+	 * @param level
+	 * @param gamedata
+	 * @return
+	 */
+	private static Future<OggClip> startSong(final Level level, final GameData gamedata)
+	{
+		return LevelLoader.submit(new Callable<OggClip>() {
+			@Override
+			public OggClip call()
+			{
+				return gamedata.openSong(level);
+			}
+		});
+	}
+	
 	private static File getMostRecentFile(String sessionID)
 	{		
 		File file = null;
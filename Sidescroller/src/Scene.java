@@ -61,7 +61,7 @@ public class Scene implements Serializable{
 	public void start()
 	{
 		actors = new ArrayList<SceneActor>();
-		Entity e = Main.gamedata.getGameEntities().get(parent);
+		Entity e = Main.gamedata.getEntities().get(parent);
 		resolution = MainCanvas.resolution;
 		
 		actors.add(new SceneActor(e.spriteFile, new int[]{0, 0, e.pos[2]}, new int[]{e.collisionShape[0]+(e.collisionShape[2]/3), e.collisionShape[1]}, false, e.animateStage, e.animStages, e.animateStrip, e.totalAnimateStrip, (int)e.animateTime));
@@ -72,28 +72,16 @@ public class Scene implements Serializable{
 		Graphics2D g2d = background.createGraphics();
 
 		// Distant background, moves at half the speed of the rest
-		g2d.drawImage(Main.gamedata.getBackground()[0],
-				0, 0, resolution[0], resolution[1],
-				screenPosition[0]/3, screenPosition[1], (screenPosition[0]/3)+(int)(resolution[0]), (screenPosition[1])+(int)(resolution[1]),
-				null);
+		Main.gamedata.drawLayer(g2d, 0, screenPosition[0]/3, screenPosition[1], resolution[0], resolution[1]);
 
 		// Far background
-		g2d.drawImage(Main.gamedata.getBackground()[1],
-				0, 0, resolution[0], resolution[1],
-				screenPosition[0]/2, screenPosition[1], (screenPosition[0]/2)+resolution[0], screenPosition[1]+resolution[1],
-				null);
+		Main.gamedata.drawLayer(g2d, 1, screenPosition[0]/2, screenPosition[1], resolution[0], resolution[1]);
 
 		// Close Background layer
-		g2d.drawImage(Main.gamedata.getBackground()[2],
-				0, 0, resolution[0], resolution[1],
-				screenPosition[0], screenPosition[1], screenPosition[0]+resolution[0], screenPosition[1]+resolution[1],
-				null);
+		Main.gamedata.drawLayer(g2d, 2, screenPosition[0], screenPosition[1], resolution[0], resolution[1]);
 
 		// Collision layer
-		g2d.drawImage(Main.gamedata.getBackground()[3],
-				0, 0, resolution[0], resolution[1],
-				screenPosition[0], screenPosition[1], screenPosition[0]+resolution[0], screenPosition[1]+resolution[1],
-				null);
+		Main.gamedata.drawLayer(g2d, 3, screenPosition[0], screenPosition[1], resolution[0], resolution[1]);
 
 		mode = 1;
 		sceneStage = 0;
@@ -224,10 +212,7 @@ public class Scene implements Serializable{
 
 		if ((mode == 1) || (mode == 3))
 		{
-			g.drawImage(Main.gamedata.getBackground()[4],
-					0, 0, resolution[0], resolution[1],
-					screenPosition[0], screenPosition[1], screenPosition[0]+resolution[0], screenPosition[1]+resolution[1],
-					null);
+			Main.gamedata.drawLayer(g, 4, screenPosition[0], screenPosition[1], resolution[0], resolution[1]);
 
 			g.dispose();
 
@@ -414,7 +399,7 @@ class SceneAction implements Serializable
 	
 	public void entityToActor()
 	{
-		Entity e = Main.gamedata.getGameEntities().get(arg.get(0));
+		Entity e = Main.gamedata.getEntities().get(arg.get(0));
 		
 		if (e == null)
 			System.err.println("Entity " + arg.get(0) + " not found!");
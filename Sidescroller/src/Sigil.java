@@ -48,7 +48,7 @@ public class Sigil extends Item {
 	
 	public void equip()
 	{
-		Entity p = Main.gamedata.getGameEntities().get("Player");
+		Entity p = Main.gamedata.getEntities().get("Player");
 		
 		p.maxHealth += values[0];
 		p.health += values[0];
@@ -92,7 +92,7 @@ public class Sigil extends Item {
 	
 	public void unequip()
 	{
-		Entity p = Main.gamedata.getGameEntities().get("Player");
+		Entity p = Main.gamedata.getEntities().get("Player");
 		
 		p.maxHealth -= values[0];
 		p.health -= values[0];
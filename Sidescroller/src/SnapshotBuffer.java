@@ -0,0 +1,70 @@
+/**
+ * Class used to pass {@link WorldSnapshot}s from the simulation to the renderer. <p>
+ * Holds three snapshots: one being written by the simulation, one waiting to be drawn and one being drawn. The simulation
+ * and the renderer only ever swap references, so neither has to wait for the other and no snapshots are ever created
+ * after startup.
+ * @author Lyeeedar
+ *
+ */
+public class SnapshotBuffer {
+
+	/**
+	 * The snapshot the simulation is writing to
+	 */
+	private WorldSnapshot back = new WorldSnapshot();
+	/**
+	 * The most recently published snapshot
+	 */
+	private WorldSnapshot ready = new WorldSnapshot();
+	/**
+	 * The snapshot the renderer is drawing
+	 */
+	private WorldSnapshot front = new WorldSnapshot();
+
+	/**
+	 * Whether {@link SnapshotBuffer#ready} is newer than {@link SnapshotBuffer#front}
+	 */
+	private boolean fresh = false;
+
+	/**
+	 * Returns the snapshot the simulation should fill in. Only call from the simulation thread
+	 * @return
+	 */
+	public WorldSnapshot getBack()
+	{
+		return back;
+	}
+
+	/**
+	 * Method to make the snapshot returned by {@link SnapshotBuffer#getBack()} available to the renderer.
+	 */
+	public synchronized void publish()
+	{
+		back.publishTime = System.nanoTime();
+
+		WorldSnapshot temp = ready;
+		ready = back;
+		back = temp;
+
+		fresh = true;
+	}
+
+	/**
+	 * Returns the newest published snapshot. The snapshot stays valid until the next call to this method.
+	 * @return
+	 */
+	public synchronized WorldSnapshot acquire()
+	{
+		if (fresh)
+		{
+			WorldSnapshot temp = front;
+			front = ready;
+			ready = temp;
+
+			fresh = false;
+		}
+
+		return front;
+	}
+
+}
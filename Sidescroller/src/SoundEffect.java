@@ -65,13 +65,16 @@ public enum SoundEffect {
 			} catch (IOException e2) {
 				// TODO Auto-generated catch block
 				e2.printStackTrace();
+			} catch (Exception e3) {
+				// No audio device (e.g. running headless), so this sound can never be played
+				clip = null;
 			}
 		}
 	}
 
 	// Play or Re-play the sound effect from the beginning, by rewinding.
 	public void play() {
-		if (volume != Volume.MUTE) {
+		if ((volume != Volume.MUTE) && (clip != null)) {
 			if (clip.isRunning())
 				clip.stop();   // Stop the player if it is still running
 			clip.setFramePosition(0); // rewind to the beginning
@@ -0,0 +1,247 @@
+import java.util.ArrayList;
+
+/**
+ * Class used to quickly find the entities near a point in the level, so collision checks between entities do not
+ * have to look at every entity in the game. <p>
+ * The level is split into square cells. Each entity is stored in the cell containing the top left corner of its
+ * collision box, in a linked list threaded through the entity itself ({@link Entity#gridNext}), so moving an entity
+ * between cells never allocates. Entities with a collision box larger than a cell are kept in a separate list that
+ * is always checked. <p>
+ * Entities are moved between cells by {@link SpatialGrid#update(Entity)} whenever their position changes, and the
+ * whole grid is rebuilt from the game entities at the start of every tick.
+ * @author Lyeeedar
+ *
+ */
+public class SpatialGrid {
+
+	/**
+	 * log2 of the width and height of a cell in pixels
+	 */
+	static final int CELL_SHIFT = 7;
+	static final int CELL_SIZE = 1 << CELL_SHIFT;
+
+	/**
+	 * The number of cells across and down the level
+	 */
+	private int columns, rows;
+
+	/**
+	 * The first entity in each cell. The extra entry at the end is the list of large entities
+	 */
+	private Entity[] heads = new Entity[1];
+
+	public SpatialGrid()
+	{
+		resize(1, 1);
+	}
+
+	/**
+	 * Method to empty the grid and change it to cover a level of the given size
+	 * @param width
+	 * @param height
+	 */
+	public void resize(int width, int height)
+	{
+		clear();
+
+		columns = Math.max(1, (width + CELL_SIZE - 1) >> CELL_SHIFT);
+		rows = Math.max(1, (height + CELL_SIZE - 1) >> CELL_SHIFT);
+
+		if (heads.length != (columns * rows) + 1)
+			heads = new Entity[(columns * rows) + 1];
+	}
+
+	/**
+	 * Method to remove every entity from the grid
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < heads.length; i++)
+		{
+			Entity e = heads[i];
+			while (e != null)
+			{
+				Entity next = e.gridNext;
+
+				e.gridNext = null;
+				e.gridPrev = null;
+				e.gridCell = 0;
+
+				e = next;
+			}
+
+			heads[i] = null;
+		}
+	}
+
+	/**
+	 * Method to empty the grid and add all the given entities to it
+	 * @param entities
+	 */
+	public void rebuild(EntityRegistry entities)
+	{
+		clear();
+
+		for (int i = 0; i < entities.size(); i++)
+		{
+			add(entities.get(i));
+		}
+	}
+
+	/**
+	 * Method to add an entity to the grid. Does nothing if it is already in it
+	 * @param e
+	 */
+	public void add(Entity e)
+	{
+		if (e.gridCell != 0)
+			return;
+
+		link(e, cellOf(e));
+	}
+
+	/**
+	 * Method to remove an entity from the grid. Does nothing if it is not in it
+	 * @param e
+	 */
+	public void remove(Entity e)
+	{
+		if (e.gridCell == 0)
+			return;
+
+		unlink(e);
+	}
+
+	/**
+	 * Method to move an entity to the cell for its current position. Does nothing if it is not in the grid
+	 * @param e
+	 */
+	public void update(Entity e)
+	{
+		if (e.gridCell == 0)
+			return;
+
+		int cell = cellOf(e);
+
+		if (cell == e.gridCell - 1)
+			return;
+
+		unlink(e);
+		link(e, cell);
+	}
+
+	/**
+	 * Method to find every entity in the grid whose collision box intersects the given rectangle. The entities are
+	 * added to the given list, which is cleared first.
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param found
+	 */
+	public void query(int x, int y, int width, int height, ArrayList<Entity> found)
+	{
+		found.clear();
+
+		if ((width <= 0) || (height <= 0))
+			return;
+
+		// An entity is stored by the top left of its box and is at most a cell across, so it can only reach the
+		// rectangle from its own cell or the cells one to the left and above
+		int cx0 = clamp((x - CELL_SIZE) >> CELL_SHIFT, columns);
+		int cy0 = clamp((y - CELL_SIZE) >> CELL_SHIFT, rows);
+		int cx1 = clamp((x + width - 1) >> CELL_SHIFT, columns);
+		int cy1 = clamp((y + height - 1) >> CELL_SHIFT, rows);
+
+		for (int cy = cy0; cy <= cy1; cy++)
+		{
+			for (int cx = cx0; cx <= cx1; cx++)
+			{
+				collect(heads[(cy * columns) + cx], x, y, width, height, found);
+			}
+		}
+
+		collect(heads[heads.length - 1], x, y, width, height, found);
+	}
+
+	/**
+	 * Method to add every entity in the list starting at the given entity that intersects the rectangle to found
+	 * @param e
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param found
+	 */
+	private void collect(Entity e, int x, int y, int width, int height, ArrayList<Entity> found)
+	{
+		for (; e != null; e = e.gridNext)
+		{
+			int[] shape = e.collisionShape;
+
+			// Same test as Rectangle.intersects
+			if ((shape[2] <= 0) || (shape[3] <= 0))
+				continue;
+
+			int ex = e.pos[0] + shape[0];
+			int ey = e.pos[1] + shape[1];
+
+			if ((ex < x + width) && (ey < y + height) && (ex + shape[2] > x) && (ey + shape[3] > y))
+				found.add(e);
+		}
+	}
+
+	/**
+	 * Returns the cell the entity belongs in
+	 * @param e
+	 * @return
+	 */
+	private int cellOf(Entity e)
+	{
+		int[] shape = e.collisionShape;
+
+		if ((shape[2] > CELL_SIZE) || (shape[3] > CELL_SIZE))
+			return heads.length - 1;
+
+		// Entities outside the level are kept in the cells on the edge
+		int cx = clamp((e.pos[0] + shape[0]) >> CELL_SHIFT, columns);
+		int cy = clamp((e.pos[1] + shape[1]) >> CELL_SHIFT, rows);
+
+		return (cy * columns) + cx;
+	}
+
+	private static int clamp(int cell, int count)
+	{
+		return (cell < 0) ? 0 : ((cell >= count) ? count - 1 : cell);
+	}
+
+	private void link(Entity e, int cell)
+	{
+		Entity head = heads[cell];
+
+		e.gridCell = cell + 1;
+		e.gridPrev = null;
+		e.gridNext = head;
+
+		if (head != null)
+			head.gridPrev = e;
+
+		heads[cell] = e;
+	}
+
+	private void unlink(Entity e)
+	{
+		if (e.gridPrev != null)
+			e.gridPrev.gridNext = e.gridNext;
+		else
+			heads[e.gridCell - 1] = e.gridNext;
+
+		if (e.gridNext != null)
+			e.gridNext.gridPrev = e.gridPrev;
+
+		e.gridNext = null;
+		e.gridPrev = null;
+		e.gridCell = 0;
+	}
+
+}
@@ -1,7 +1,4 @@
 import java.awt.Color;
-import java.awt.Rectangle;
-import java.util.ArrayList;
-import java.util.Map;
 
 
 /**
@@ -53,8 +50,33 @@ class Spell extends Entity
 		
 		super(name, animateTime, 2, 8, pos, 0, spriteFile, collision, behaviour, null);
 
-		this.visible = visible;
 		this.velocity = velocity;
+
+		setProperties(weight, passable, visible, spellCDTime, aliveTime, damageType, damageAmount, exclude);
+	}
+
+	/**
+	 * Method to set a spell taken from the pool in {@link SpellList} back up with the given values, as if it had just
+	 * been created. See {@link Entity#reset}
+	 */
+	void reinit(String name, int animateTime, int[] pos, int[] collision, boolean[] behaviour,
+			int[] velocity, String spriteFile, int weight, boolean passable, boolean visible, int spellCDTime, int aliveTime,
+			String damageType, int damageAmount, String exclude)
+	{
+		reset(name, animateTime, 2, 8, pos, 0, spriteFile, collision, behaviour);
+
+		this.velocity[0] = velocity[0];
+		this.velocity[1] = velocity[1];
+		this.explode = 0;
+		this.dps = 0;
+
+		setProperties(weight, passable, visible, spellCDTime, aliveTime, damageType, damageAmount, exclude);
+	}
+
+	private void setProperties(int weight, boolean passable, boolean visible, int spellCDTime, int aliveTime,
+			String damageType, int damageAmount, String exclude)
+	{
+		this.visible = visible;
 		this.weight = weight;
 		this.passable = passable;
 		this.spellCDTime = spellCDTime;
@@ -97,13 +119,24 @@ class Spell extends Entity
 
 	}
 
+	/**
+	 * Spells are never at rest, so they are never put to sleep and always get to explode
+	 */
+	@Override
+	public boolean isAtRest()
+	{
+		return false;
+	}
+
 	@Override
 	public void animate(long time)
 	{
+		animStepped = false;
+
 		this.remainingAnimateTime -= time;
 		if (this.remainingAnimateTime <= 0)
 		{
-			this.remainingAnimateTime = this.animateTime;
+			stepAnimateTime();
 
 			if (!alive)
 				animateStage = explode;
@@ -180,7 +213,7 @@ class Spell extends Entity
 		
 		aliveTime -= time;
 
-		if ((!alive) && (this.remainingAnimateTime == this.animateTime))
+		if ((!alive) && (animStepped))
 		{
 			explode++;
 		}
@@ -233,7 +266,7 @@ class Spell extends Entity
 		
 		if ((s != null) && (!s.equals(this.name)))
 		{
-			Main.gamedata.getGameEntities().get(s).damage(damageAmount, damageType);
+			Main.gamedata.getEntities().get(s).damage(damageAmount, damageType);
 			this.setAlive(false);
 		}
 	}
@@ -268,7 +301,7 @@ class Spell extends Entity
 		{
 			if (alive)
 			{
-				Main.gamedata.getGameEntities().get(s).damage(this.damageAmount, this.damageType);
+				Main.gamedata.getEntities().get(s).damage(this.damageAmount, this.damageType);
 				this.setAlive(false);
 			}
 			
@@ -299,7 +332,7 @@ class Spell extends Entity
 		
 		if ((s != null) && (!s.equals(this.getName())))
 		{
-			Main.gamedata.getGameEntities().get(s).damage(damageAmount, damageType);
+			Main.gamedata.getEntities().get(s).damage(damageAmount, damageType);
 		}
 		
 		this.setAlive(false);
@@ -323,11 +356,8 @@ class Spell extends Entity
 			return;
 		}
 		
-		ArrayList<Entity> entityCheck = new ArrayList<Entity>();
-		for (Map.Entry<String, Entity> entry : Main.gamedata.getGameEntities().entrySet())
+		for (Entity e : findEntities(pos[0]+collisionShape[0], pos[1]+collisionShape[1], collisionShape[2], collisionShape[3]))
 		{
-			Entity e = entry.getValue();
-
 			if (e instanceof Spell)
 			{
 				continue;
@@ -342,19 +372,7 @@ class Spell extends Entity
 				continue;
 			}
 			
-			entityCheck.add(e);
-		}
-		
-		Rectangle rt = new Rectangle(pos[0]+collisionShape[0], pos[1]+collisionShape[1], collisionShape[2], collisionShape[3]);
-		
-		for (Entity e : entityCheck)
-		{
-			Rectangle re = new Rectangle(e.pos[0]+e.collisionShape[0], e.pos[1]+e.collisionShape[1], e.collisionShape[2], e.collisionShape[3]);
-			
-			if (rt.intersects(re))
-			{
-				e.damage(damageAmount, damageType);
-			}
+			e.damage(damageAmount, damageType);
 		}
 	}
 	
@@ -379,11 +397,10 @@ class Spell extends Entity
 		
 		npos[1] -= collisionShape[1]+collisionShape[3];
 		
-		Spell s = new Spell(name+" Effect", (int)this.animateTime, npos, collisionShape,
-				new boolean[]{false, false, false, true, false}, new int[]{0, 0}, this.spriteFile, 3, true, true, 0, 1000, this.damageType, this.damageAmount, this.exclude);
+		Spell s = SpellList.getAreaEffect(this, npos);
 		s.setFaction(faction);
 		
-		Main.gamedata.getGameEntities().put(s.name+System.currentTimeMillis(), s);
+		Main.gamedata.spawnEntity(s);
 		
 	}
 	
@@ -398,7 +415,7 @@ class Spell extends Entity
 		if (dps < 0)
 			dps = 400;
 		
-		Entity e = Main.gamedata.getGameEntities().get(exclude);
+		Entity e = Main.gamedata.getEntities().get(exclude);
 		
 		e.heal(damageAmount);
 		e.infoText.add(new SystemMessage("+"+damageAmount+"     HP", Color.GREEN, 3000));
@@ -411,6 +428,8 @@ class Spell extends Entity
 		pos[1] = Y;
 		pos[2] = dir;
 
+		updateGrid();
+
 	}
 	
 	
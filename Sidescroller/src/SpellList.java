@@ -1,11 +1,53 @@
 
 /**
- * Class that holds all the spells in the game.
+ * Class that holds all the spells in the game. <p>
+ * Spells are taken from a pool where possible, and put back in it by {@link SpellList#recycle(Spell)} when
+ * {@link GameData#evaluateAI()} removes them from the game.
  * @author Lyeeedar
  *
  */
 public class SpellList {
-	
+
+	/**
+	 * The spells that have been removed from the game and can be used again
+	 */
+	private static final EntityPool<Spell> pool = new EntityPool<Spell>(256);
+
+	/**
+	 * The starting values of each spell. They are only ever copied into a spell (see {@link SpellList#create}), so
+	 * casting a spell does not allocate any arrays. They must never be changed
+	 */
+	private static final boolean[] BEHAVIOUR_PROJECTILE = {true, false, false, false, false};
+	private static final boolean[] BEHAVIOUR_GROUNDED = {false, true, false, false, false};
+	private static final boolean[] BEHAVIOUR_STILL = {false, false, false, false, false};
+	private static final boolean[] BEHAVIOUR_AREA_EFFECT = {false, false, false, true, false};
+	private static final boolean[] BEHAVIOUR_SPREAD = {false, false, false, false, true};
+	private static final boolean[] BEHAVIOUR_HEAL = {false, false, false, false, false, true};
+	private static final boolean[] BEHAVIOUR_STRIKE = {false, false, true, false, false};
+
+	private static final int[] FIRE_BALL_COLLISION = {0, 0, 37, 30};
+	private static final int[] FIRE_BALL_VELOCITY = {17, 0};
+	private static final int[] ROCK_SPIKE_COLLISION = {0, 15, 50, 30};
+	private static final int[] ROCK_SPIKE_VELOCITY = {10, 0};
+	private static final int[] FLAME_WALL_COLLISION = {0, 0, 50, 100};
+	private static final int[] FLAME_WALL_VELOCITY = {4, 0};
+	private static final int[] WIND_BLADE_COLLISION = {0, 15, 50, 30};
+	private static final int[] WIND_BLADE_VELOCITY = {15, 0};
+	private static final int[] ICE_SPIKE_COLLISION = {0, 15, 50, 30};
+	private static final int[] ICE_SPIKE_VELOCITY = {16, 0};
+	private static final int[] STONE_COLLISION = {0, 15, 50, 30};
+	private static final int[] STONE_VELOCITY = {17, 0};
+	private static final int[] ROCK_WALL_COLLISION = {0, 0, 50, 100};
+	private static final int[] ROCK_WALL_VELOCITY = {0, 0};
+	private static final int[] SCORCH_COLLISION = {0, 0, 50, 50};
+	private static final int[] SCORCH_VELOCITY = {0, 0};
+	private static final int[] WILD_FIRE_COLLISION = {0, 0, 50, 50};
+	private static final int[] WILD_FIRE_VELOCITY = {15, 0};
+	private static final int[] SMALL_HEAL_COLLISION = {0, 0, 0, 0};
+	private static final int[] SMALL_HEAL_VELOCITY = {0, 0};
+	private static final int[] STRIKE_VELOCITY = {17, 0};
+	private static final int[] AREA_EFFECT_VELOCITY = {0, 0};
+
 	/**
 	 * Method to get a spell object for the spell name specified. Initialises it with the values given.
 	 * @param spell
@@ -17,53 +59,53 @@ public class SpellList {
 		
 		if (spell.equals("FireBall"))
 		{
-			s = new Spell("FireBall", 60, pos, new int[]{0,0,37,30},
-					new boolean[]{true, false, false, false, false}, new int[]{17, 0}, "fireball.png", 0, true, true, 2000, 700, Entity.FIRE, 2, exclude);	
+			s = create("FireBall", 60, pos, FIRE_BALL_COLLISION,
+					BEHAVIOUR_PROJECTILE, FIRE_BALL_VELOCITY, "fireball.png", 0, true, true, 2000, 700, Entity.FIRE, 2, exclude);	
 		}
 		else if (spell.equals("RockSpike"))
 		{
-			s = new Spell("RockSpike", 100, pos, new int[]{0,15,50,30},
-					new boolean[]{false, true, false, false, false}, new int[]{10, 0}, "rockspike.png", 3, true, true, 2000, 1300, Entity.EARTH, 50, exclude);
+			s = create("RockSpike", 100, pos, ROCK_SPIKE_COLLISION,
+					BEHAVIOUR_GROUNDED, ROCK_SPIKE_VELOCITY, "rockspike.png", 3, true, true, 2000, 1300, Entity.EARTH, 50, exclude);
 		}
 		else if (spell.equals("FlameWall"))
 		{
-			s = new Spell("FlameWall", 100, pos, new int[]{0,0,50,100},
-					new boolean[]{false, true, false, false, false}, new int[]{4, 0}, "flamewall.png", 3, true, true, 2000, 1300, Entity.FIRE, 50, exclude);
+			s = create("FlameWall", 100, pos, FLAME_WALL_COLLISION,
+					BEHAVIOUR_GROUNDED, FLAME_WALL_VELOCITY, "flamewall.png", 3, true, true, 2000, 1300, Entity.FIRE, 50, exclude);
 		}
 		else if (spell.equals("WindBlade"))
 		{
-			s = new Spell("WindBlade", 100, pos, new int[]{0,15,50,30},
-					new boolean[]{true, false, false, false, false}, new int[]{15, 0}, "windblade.png", 0, true, true, 2000, 700, Entity.AIR, 50, exclude);
+			s = create("WindBlade", 100, pos, WIND_BLADE_COLLISION,
+					BEHAVIOUR_PROJECTILE, WIND_BLADE_VELOCITY, "windblade.png", 0, true, true, 2000, 700, Entity.AIR, 50, exclude);
 		}
 		else if (spell.equals("IceSpike"))
 		{
-			s = new Spell("IceSpike", 100, pos, new int[]{0,15,50,30},
-					new boolean[]{true, false, false, false, false}, new int[]{16, 0}, "icespike.png", 3, true, true, 2000, 700, Entity.WATER, 50, exclude);
+			s = create("IceSpike", 100, pos, ICE_SPIKE_COLLISION,
+					BEHAVIOUR_PROJECTILE, ICE_SPIKE_VELOCITY, "icespike.png", 3, true, true, 2000, 700, Entity.WATER, 50, exclude);
 		}
 		else if (spell.equals("Stone"))
 		{
-			s = new Spell("Stone", 100, pos, new int[]{0,15,50,30},
-					new boolean[]{true, false, false, false, false}, new int[]{17, 0}, "stone.png", 3, true, true, 2000, 700, Entity.EARTH, 50, exclude);
+			s = create("Stone", 100, pos, STONE_COLLISION,
+					BEHAVIOUR_PROJECTILE, STONE_VELOCITY, "stone.png", 3, true, true, 2000, 700, Entity.EARTH, 50, exclude);
 		}
 		else if (spell.equals("RockWall"))
 		{
-			s = new Spell("RockWall", 100, pos, new int[]{0,0,50,100},
-					new boolean[]{false, false, false, false, false}, new int[]{0, 0}, "rockwall.png", 3, false, true, 2000, 2300, Entity.EARTH, 0, exclude);
+			s = create("RockWall", 100, pos, ROCK_WALL_COLLISION,
+					BEHAVIOUR_STILL, ROCK_WALL_VELOCITY, "rockwall.png", 3, false, true, 2000, 2300, Entity.EARTH, 0, exclude);
 		}
 		else if (spell.equals("Scorch"))
 		{
-			s = new Spell("Scorch", 110, pos, new int[]{0,0,50,50},
-					new boolean[]{false, false, false, true, false}, new int[]{0, 0}, "scorch.png", 3, true, true, 2000, 1300, Entity.FIRE, 5, exclude);
+			s = create("Scorch", 110, pos, SCORCH_COLLISION,
+					BEHAVIOUR_AREA_EFFECT, SCORCH_VELOCITY, "scorch.png", 3, true, true, 2000, 1300, Entity.FIRE, 5, exclude);
 		}
 		else if (spell.equals("WildFire"))
 		{
-			s = new Spell("WildFire", 110, pos, new int[]{0,0,50,50},
-					new boolean[]{false, false, false, false, true}, new int[]{15, 0}, "scorch.png", 3, true, true, 2000, 300, Entity.FIRE, 1, exclude);
+			s = create("WildFire", 110, pos, WILD_FIRE_COLLISION,
+					BEHAVIOUR_SPREAD, WILD_FIRE_VELOCITY, "scorch.png", 3, true, true, 2000, 300, Entity.FIRE, 1, exclude);
 		}
 		else if (spell.equals("SmallHeal"))
 		{
-			s = new Spell("SmallHeal", 1100, pos, new int[]{0,0,0,0},
-					new boolean[]{false, false, false, false, false, true}, new int[]{0, 0}, null, 0, true, false, 2000, 2000, Entity.LIFE, 1, exclude);
+			s = create("SmallHeal", 1100, pos, SMALL_HEAL_COLLISION,
+					BEHAVIOUR_HEAL, SMALL_HEAL_VELOCITY, null, 0, true, false, 2000, 2000, Entity.LIFE, 1, exclude);
 		}
 		
 		if (pos[2] == 0)
@@ -76,11 +118,55 @@ public class SpellList {
 	{
 		Spell s = null;
 		
-		s = new Spell(type+" Strike", 60, pos, collision,
-				new boolean[]{false, false, true, false, false}, new int[]{17, 0}, null, 0, true, false, 700, 200, type, amount, exclude);
+		s = create(type+" Strike", 60, pos, collision,
+				BEHAVIOUR_STRIKE, STRIKE_VELOCITY, null, 0, true, false, 700, 200, type, amount, exclude);
 		
 		s.setVisible(false);
 		
 		return s;
 	}
+	
+	/**
+	 * Method to get one of the area effect spells left behind by a spreading spell (e.g. WildFire) as it moves along
+	 * the ground
+	 * @param parent the spreading spell
+	 * @param pos
+	 * @return
+	 */
+	public static Spell getAreaEffect(Spell parent, int[] pos)
+	{
+		return create(parent.name+" Effect", (int)parent.animateTime, pos, parent.collisionShape,
+				BEHAVIOUR_AREA_EFFECT, AREA_EFFECT_VELOCITY, parent.spriteFile, 3, true, true, 0, 1000, parent.damageType, parent.damageAmount, parent.exclude);
+	}
+	
+	/**
+	 * Method to put a spell that has been removed from the game back in the pool. It must not be used again after this
+	 * @param s
+	 */
+	public static void recycle(Spell s)
+	{
+		pool.recycle(s);
+	}
+	
+	/**
+	 * Method to get a spell from the pool initialised with the given values, or create a new one if the pool is
+	 * empty. The arrays are copied, so the spell never shares them with whatever passed them in
+	 */
+	private static Spell create(String name, int animateTime, int[] pos, int[] collision, boolean[] behaviour,
+			int[] velocity, String spriteFile, int weight, boolean passable, boolean visible, int spellCDTime, int aliveTime,
+			String damageType, int damageAmount, String exclude)
+	{
+		Spell s = pool.obtain();
+		
+		if (s == null)
+		{
+			return new Spell(name, animateTime, pos, collision.clone(), behaviour.clone(), velocity.clone(), spriteFile,
+					weight, passable, visible, spellCDTime, aliveTime, damageType, damageAmount, exclude);
+		}
+		
+		s.reinit(name, animateTime, pos, collision, behaviour, velocity, spriteFile,
+				weight, passable, visible, spellCDTime, aliveTime, damageType, damageAmount, exclude);
+		
+		return s;
+	}
 }
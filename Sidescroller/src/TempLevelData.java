@@ -1,16 +1,34 @@
 import java.awt.image.BufferedImage;
 
 /**
- * Class used to store the data for a level's images and collision to speed up loading recently visited levels.
+ * Class used to store the data for a level's images and collision to speed up loading recently visited levels. See
+ * {@link LevelCache}
  * @author Lyeeedar
  *
  */
 public class TempLevelData {
 	BufferedImage background[];
 	String name;
-	int[][] collisionMap;
+	CollisionMap collisionMap;
+
+	/**
+	 * The memory (in bytes) the level takes up. Set by {@link LevelCache#put(TempLevelData)}
+	 */
+	long size;
+
+	/**
+	 * The chunks of the level if it is streamed (see {@link LevelStream}). Streamed levels are never kept in
+	 * {@link LevelCache}
+	 */
+	LevelStream stream;
+
+	/**
+	 * The level's data file, read ahead of time by {@link LevelPrefetcher}. Taken by the first load of the level, as the
+	 * game changes its entities. Null if it has not been read or has been taken
+	 */
+	Level data;
 	
-	public TempLevelData(BufferedImage background[], String name, int[][] collisionMap)
+	public TempLevelData(BufferedImage background[], String name, CollisionMap collisionMap)
 	{
 		this.background = background;
 		this.name = name;
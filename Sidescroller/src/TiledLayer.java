@@ -0,0 +1,384 @@
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+/**
+ * Class used to draw one of the level's layers (see {@link GameData#background}) as a grid of tiles, so only the part
+ * of the layer on the screen is drawn and kept in video memory. <p>
+ * Each tile is a {@link VolatileImage} copied from the layer the first time the tile is on screen. The contents of a
+ * volatile image can be lost at any time (e.g. when the display mode changes), so each tile is checked every time it
+ * is drawn and copied again if needed. Tiles that have not been drawn for {@link TiledLayer#evictFrames} frames are
+ * released, so the video memory used stays at about what the screen needs whatever the size of the level. Tiles
+ * that are completely transparent are never created or drawn. <p>
+ * The layer image itself stays in system memory (it is also where the collision map is read from), and is only drawn
+ * from when a tile is copied. If there is no graphics configuration to create volatile images with (e.g. when drawing
+ * off screen without a display) the tiles are drawn straight from the layer image. <p>
+ * A layer of a streamed level (see {@link LevelStream}) has no layer image. Its tiles are copied from the stream's
+ * chunks instead, which are the same size as the tiles. A tile whose chunk has not been loaded yet is not drawn until
+ * it has. <p>
+ * Only used while drawing, which happens on one thread at a time.
+ * @author Lyeeedar
+ *
+ */
+public class TiledLayer {
+
+	/**
+	 * The width and height of a tile in pixels
+	 */
+	public static final int TILE_SIZE = 256;
+
+	/**
+	 * The number of frames a tile can go without being drawn before it is released
+	 */
+	public static int evictFrames = 120;
+
+	/**
+	 * The layer being drawn. Null if the layer is streamed
+	 */
+	private final BufferedImage source;
+
+	/**
+	 * The stream the layer is drawn from, and which of its layers it is. Null if the layer is not streamed
+	 */
+	private final LevelStream stream;
+	private final int layer;
+
+	/**
+	 * The size of the layer in pixels
+	 */
+	private final int width, height;
+
+	/**
+	 * The number of tiles across and down the layer
+	 */
+	private final int columns, rows;
+
+	/**
+	 * The volatile image of each tile. Null if it has not been created or has been released
+	 */
+	private final VolatileImage[] tiles;
+
+	/**
+	 * The frame each tile was last drawn in
+	 */
+	private final long[] lastDrawn;
+
+	/**
+	 * Whether each tile has anything in it. 0 = not checked yet, 1 = empty, 2 = not empty
+	 */
+	private final byte[] contents;
+
+	/**
+	 * The number of tiles currently created
+	 */
+	private int resident = 0;
+
+	/**
+	 * The number of times {@link TiledLayer#draw} has been called
+	 */
+	private long frame = 0;
+
+	public TiledLayer(BufferedImage source)
+	{
+		this(source, null, 0, source.getWidth(), source.getHeight());
+	}
+
+	public TiledLayer(LevelStream stream, int layer)
+	{
+		this(null, stream, layer, stream.getWidth(layer), stream.getHeight(layer));
+	}
+
+	private TiledLayer(BufferedImage source, LevelStream stream, int layer, int width, int height)
+	{
+		this.source = source;
+		this.stream = stream;
+		this.layer = layer;
+		this.width = width;
+		this.height = height;
+
+		columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+		rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+
+		tiles = new VolatileImage[columns * rows];
+		lastDrawn = new long[columns * rows];
+		contents = new byte[columns * rows];
+	}
+
+	/**
+	 * Returns the layer image the tiles are copied from. Null if the layer is streamed
+	 * @return
+	 */
+	public BufferedImage getSource()
+	{
+		return source;
+	}
+
+	/**
+	 * Returns the stream the tiles are copied from. Null if the layer is not streamed
+	 * @return
+	 */
+	public LevelStream getStream()
+	{
+		return stream;
+	}
+
+	/**
+	 * Returns the number of tiles currently held in video memory
+	 * @return
+	 */
+	public int getResident()
+	{
+		return resident;
+	}
+
+	/**
+	 * Method to draw the part of the layer starting at (x, y) in the layer to the top left of the screen. Only the
+	 * tiles that overlap the screen are drawn.
+	 * @param g2d
+	 * @param gc the graphics configuration to create the tiles for. Null = draw straight from the layer image
+	 * @param x
+	 * @param y
+	 * @param viewWidth the width of the screen
+	 * @param viewHeight the height of the screen
+	 */
+	public void draw(Graphics2D g2d, GraphicsConfiguration gc, int x, int y, int viewWidth, int viewHeight)
+	{
+		frame++;
+
+		int cx0 = Math.max(0, x / TILE_SIZE);
+		int cy0 = Math.max(0, y / TILE_SIZE);
+		int cx1 = Math.min(columns - 1, (x + viewWidth - 1) / TILE_SIZE);
+		int cy1 = Math.min(rows - 1, (y + viewHeight - 1) / TILE_SIZE);
+
+		for (int cy = cy0; cy <= cy1; cy++)
+		{
+			for (int cx = cx0; cx <= cx1; cx++)
+			{
+				int tile = (cy * columns) + cx;
+
+				if (isEmpty(tile, cx, cy))
+					continue;
+
+				lastDrawn[tile] = frame;
+
+				int tx = cx * TILE_SIZE;
+				int ty = cy * TILE_SIZE;
+				int tw = Math.min(TILE_SIZE, width - tx);
+				int th = Math.min(TILE_SIZE, height - ty);
+
+				if (gc != null)
+				{
+					drawTile(g2d, gc, tile, cx, cy, tw, th, tx - x, ty - y);
+				}
+				else if (stream == null)
+				{
+					g2d.drawImage(source, tx - x, ty - y, tx - x + tw, ty - y + th, tx, ty, tx + tw, ty + th, null);
+				}
+				else
+				{
+					BufferedImage chunk = stream.getChunk(layer, cx, cy);
+
+					if (chunk != null)
+						g2d.drawImage(chunk, tx - x, ty - y, null);
+				}
+			}
+		}
+
+		// Only look for old tiles now and then, it does not need to be exact
+		if ((frame % 30) == 0)
+			evict();
+	}
+
+	/**
+	 * Method to draw a tile from video memory, creating it or copying it again first if needed. Nothing is drawn if
+	 * the tile's chunk has not been loaded yet
+	 * @param g2d
+	 * @param gc
+	 * @param tile
+	 * @param cx the column and row of the tile
+	 * @param cy
+	 * @param tw the size of the tile
+	 * @param th
+	 * @param dx where to draw the tile
+	 * @param dy
+	 */
+	private void drawTile(Graphics2D g2d, GraphicsConfiguration gc, int tile, int cx, int cy, int tw, int th, int dx, int dy)
+	{
+		VolatileImage image = tiles[tile];
+
+		// Try again if the contents are lost while the tile is being drawn
+		int attempts = 0;
+		do
+		{
+			if (image == null)
+			{
+				// Streamed layers may have transparency anywhere
+				int transparency = (source == null) ? Transparency.TRANSLUCENT : source.getTransparency();
+
+				image = gc.createCompatibleVolatileImage(tw, th, transparency);
+				tiles[tile] = image;
+				resident++;
+
+				if (!copy(image, cx, cy, tw, th))
+				{
+					release(tile);
+					return;
+				}
+			}
+			else
+			{
+				int status = image.validate(gc);
+
+				if (status == VolatileImage.IMAGE_INCOMPATIBLE)
+				{
+					// Made for a different display, so make it again
+					release(tile);
+					image = null;
+					continue;
+				}
+				else if (status == VolatileImage.IMAGE_RESTORED)
+				{
+					if (!copy(image, cx, cy, tw, th))
+					{
+						release(tile);
+						return;
+					}
+				}
+			}
+
+			g2d.drawImage(image, dx, dy, null);
+
+			attempts++;
+		}
+		while ((image == null) || ((image.contentsLost()) && (attempts < 3)));
+	}
+
+	/**
+	 * Method to copy the given tile of the layer into a tile's image. Returns false if the layer is streamed and the
+	 * tile's chunk has not been loaded yet
+	 * @param image
+	 * @param cx
+	 * @param cy
+	 * @param tw
+	 * @param th
+	 * @return
+	 */
+	private boolean copy(VolatileImage image, int cx, int cy, int tw, int th)
+	{
+		BufferedImage from = source;
+		int tx = cx * TILE_SIZE;
+		int ty = cy * TILE_SIZE;
+
+		if (stream != null)
+		{
+			from = stream.getChunk(layer, cx, cy);
+			if (from == null)
+				return false;
+
+			// Each chunk is a tile on its own
+			tx = 0;
+			ty = 0;
+		}
+
+		Graphics2D g = image.createGraphics();
+		try {
+			// Replace the old contents, transparent pixels included
+			g.setComposite(AlphaComposite.Src);
+			g.drawImage(from, 0, 0, tw, th, tx, ty, tx + tw, ty + th, null);
+		} finally {
+			g.dispose();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns true if every pixel of the tile is transparent. Worked out the first time the tile is drawn
+	 * @param tile
+	 * @param cx
+	 * @param cy
+	 * @return
+	 */
+	private boolean isEmpty(int tile, int cx, int cy)
+	{
+		// The stream already knows which of its chunks are empty
+		if (stream != null)
+			return stream.isEmpty(layer, cx, cy);
+
+		if (contents[tile] == 0)
+		{
+			contents[tile] = 1;
+
+			// Layers without transparency always have something in them
+			if (source.getTransparency() == Transparency.OPAQUE)
+			{
+				contents[tile] = 2;
+				return false;
+			}
+
+			int tx = cx * TILE_SIZE;
+			int ty = cy * TILE_SIZE;
+			int tw = Math.min(TILE_SIZE, width - tx);
+			int th = Math.min(TILE_SIZE, height - ty);
+
+			int[] row = new int[tw];
+
+			for (int y = ty; (y < ty + th) && (contents[tile] == 1); y++)
+			{
+				source.getRGB(tx, y, tw, 1, row, 0, tw);
+
+				for (int x = 0; x < tw; x++)
+				{
+					if ((row[x] >>> 24) != 0)
+					{
+						contents[tile] = 2;
+						break;
+					}
+				}
+			}
+		}
+
+		return contents[tile] == 1;
+	}
+
+	/**
+	 * Method to release every tile that has not been drawn for {@link TiledLayer#evictFrames} frames
+	 */
+	private void evict()
+	{
+		for (int i = 0; i < tiles.length; i++)
+		{
+			if ((tiles[i] != null) && (frame - lastDrawn[i] > evictFrames))
+				release(i);
+		}
+	}
+
+	/**
+	 * Method to release a tile's video memory
+	 * @param tile
+	 */
+	private void release(int tile)
+	{
+		if (tiles[tile] == null)
+			return;
+
+		tiles[tile].flush();
+		tiles[tile] = null;
+		resident--;
+	}
+
+	/**
+	 * Method to release every tile. The layer can still be drawn afterwards, the tiles are just created again
+	 */
+	public void flush()
+	{
+		for (int i = 0; i < tiles.length; i++)
+		{
+			release(i);
+		}
+	}
+
+}
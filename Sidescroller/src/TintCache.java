@@ -0,0 +1,130 @@
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+/**
+ * Class used to keep the red tinted frames drawn for damaged entities, so each frame is only tinted once instead of
+ * every time it is drawn. <p>
+ * The frames are stored against the spritesheet they were cut from, which is held weakly, so once nothing else uses
+ * a spritesheet all of its tinted frames are thrown away with it. Each tinted frame is its own image the size of the
+ * frame, so it is drawn from (0, 0) rather than from the frame's position in the spritesheet. <p>
+ * Only used while drawing, which happens on one thread at a time.
+ * @author Lyeeedar
+ *
+ */
+public class TintCache {
+
+	/**
+	 * The tinted frames of each spritesheet, keyed by the frame's rectangle (see {@link TintCache#key})
+	 */
+	private final WeakHashMap<BufferedImage, HashMap<Long, BufferedImage>> sheets = new WeakHashMap<BufferedImage, HashMap<Long, BufferedImage>>();
+
+	/**
+	 * Returns the given frame of the spritesheet tinted with red, tinting it if this is the first time it was asked for.
+	 * Any part of the frame outside the spritesheet is left transparent.
+	 * @param sheet
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public BufferedImage get(BufferedImage sheet, int x, int y, int width, int height)
+	{
+		HashMap<Long, BufferedImage> frames = sheets.get(sheet);
+		if (frames == null)
+		{
+			frames = new HashMap<Long, BufferedImage>();
+			sheets.put(sheet, frames);
+		}
+
+		Long key = key(x, y, width, height);
+
+		BufferedImage frame = frames.get(key);
+		if (frame == null)
+		{
+			frame = tint(sheet, x, y, width, height);
+			frames.put(key, frame);
+		}
+
+		return frame;
+	}
+
+	/**
+	 * Returns the key for a frame. 16 bits each for the position and size, which is far more than any spritesheet needs
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	private static Long key(int x, int y, int width, int height)
+	{
+		return Long.valueOf(((long) (x & 0xFFFF) << 48) | ((long) (y & 0xFFFF) << 32) | ((width & 0xFFFF) << 16) | (height & 0xFFFF));
+	}
+
+	/**
+	 * Method to copy the given frame out of the spritesheet and tint it red. Fully transparent pixels are left alone. <p>
+	 * The pixels are tinted in an int array and written to the raster in one go. The raster's own array is not used
+	 * directly, as that would stop java2d from keeping the frame in video memory
+	 * @param sheet
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	static BufferedImage tint(BufferedImage sheet, int x, int y, int width, int height)
+	{
+		width = Math.max(1, width);
+		height = Math.max(1, height);
+
+		BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = new int[width * height];
+
+		// The part of the frame inside the spritesheet
+		int minX = Math.max(x, 0);
+		int minY = Math.max(y, 0);
+		int maxX = Math.min(x + width, sheet.getWidth());
+		int maxY = Math.min(y + height, sheet.getHeight());
+
+		if ((maxX <= minX) || (maxY <= minY))
+			return frame;
+
+		int offset = ((minY - y) * width) + (minX - x);
+		sheet.getRGB(minX, minY, maxX - minX, maxY - minY, pixels, offset, width);
+
+		for (int i = 0; i < pixels.length; i++)
+		{
+			int colour = pixels[i];
+
+			int alpha = (colour >>> 24);
+
+			if (alpha == 0)
+				continue;
+
+			int blue = colour & 0xFF;
+			int green = (colour >> 8) & 0xFF;
+			int red = (colour >> 16) & 0xFF;
+
+			blue -= 60;
+			if (blue < 0)
+				blue = 0;
+
+			green -= 60;
+			if (green < 0)
+				green = 0;
+
+			red += 100;
+			if (red > 250)
+				red = 250;
+
+			pixels[i] = (alpha << 24) | (red << 16) | (green << 8) | blue;
+		}
+
+		frame.getRaster().setDataElements(0, 0, width, height, pixels);
+
+		return frame;
+	}
+
+}
@@ -0,0 +1,331 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+
+/**
+ * Class that holds a copy of everything needed to draw a single frame of the game. <p>
+ * It is filled in by the simulation at the end of a tick and then read by the renderer, so the renderer never has to
+ * touch the live game data. Snapshots are reused between ticks, the {@link EntitySnapshot} objects inside are pooled
+ * and only grow when there are more entities than ever before.
+ * @author Lyeeedar
+ *
+ */
+public class WorldSnapshot {
+
+	/**
+	 * The maximum number of system messages drawn in the chatbox
+	 */
+	public static final int maxMessages = 10;
+
+	/**
+	 * Whether this snapshot has been filled in yet
+	 */
+	boolean valid = false;
+
+	/**
+	 * The time (from System.nanoTime) this snapshot was published
+	 */
+	long publishTime;
+
+	/**
+	 * The pool of entity snapshots. Only the first {@link WorldSnapshot#entityCount} are in use
+	 */
+	EntitySnapshot[] entities = new EntitySnapshot[64];
+	int entityCount = 0;
+
+	/**
+	 * The snapshot of the player, or null if there is no player
+	 */
+	EntitySnapshot player;
+
+	/**
+	 * The level images. These are never modified once loaded so the reference can be shared
+	 */
+	BufferedImage[] background;
+
+	/**
+	 * The level's chunks if it is streamed, in which case they are drawn instead of the level images
+	 */
+	LevelStream stream;
+
+	int[] levelSize = new int[2];
+
+	// ----------- HUD ----------- //
+	double playerHealth;
+	double playerMaxHealth;
+	long[] spellCooldown = new long[5];
+	int[] spellUnlocked = new int[5];
+	BufferedImage[] spellIcons = new BufferedImage[5];
+	BufferedImage[] spellMasteredIcons = new BufferedImage[5];
+	int gender;
+	boolean transformAllowed;
+	long genderSwapCD;
+	boolean genderSwapAnimating;
+	int genderSwapAnimStage;
+
+	String[] messages = new String[maxMessages];
+	Color[] messageColours = new Color[maxMessages];
+	int messageCount = 0;
+	// ----------- HUD ----------- //
+
+	public WorldSnapshot()
+	{
+		for (int i = 0; i < entities.length; i++)
+		{
+			entities[i] = new EntitySnapshot();
+		}
+	}
+
+	/**
+	 * Method to copy the current state of the game into this snapshot. Must be called from the simulation thread.
+	 * @param gamedata
+	 * @param captureSpeech whether to evaluate the dialogue of talking entities. Dialogue can trigger game events
+	 * (such as changing level), so this should only be true while the game is running.
+	 */
+	public void capture(GameData gamedata, boolean captureSpeech)
+	{
+		entityCount = 0;
+		player = null;
+
+		EntityRegistry registry = gamedata.getEntities();
+		int loads = registry.getLoadCount();
+
+		for (int i = 0; i < registry.size(); i++)
+		{
+			Entity e = registry.get(i);
+
+			// Grow the pool if there are more entities than there are snapshots
+			if (entityCount == entities.length)
+			{
+				EntitySnapshot[] newEntities = new EntitySnapshot[entities.length*2];
+				System.arraycopy(entities, 0, newEntities, 0, entities.length);
+				for (int j = entities.length; j < newEntities.length; j++)
+				{
+					newEntities[j] = new EntitySnapshot();
+				}
+				entities = newEntities;
+			}
+
+			EntitySnapshot es = entities[entityCount];
+			es.capture(e, captureSpeech);
+
+			if (es.isPlayer)
+				player = es;
+
+			entityCount++;
+
+			// If the dialogue changed level then start again with the new level's entities
+			if (registry.getLoadCount() != loads)
+			{
+				loads = registry.getLoadCount();
+				entityCount = 0;
+				player = null;
+				i = -1;
+			}
+		}
+
+		background = gamedata.getBackground();
+		stream = gamedata.getLevelStream();
+		levelSize[0] = GameData.levelSize[0];
+		levelSize[1] = GameData.levelSize[1];
+
+		if (player != null)
+		{
+			playerHealth = player.health;
+			playerMaxHealth = player.maxHealth;
+		}
+
+		for (int i = 0; i < 5; i++)
+		{
+			spellCooldown[i] = Character.spellCooldown[i];
+
+			SpellsStageEntry sse = Character.socketedSpells[i];
+			if (sse == null)
+			{
+				spellUnlocked[i] = 0;
+				spellIcons[i] = null;
+				spellMasteredIcons[i] = null;
+			}
+			else
+			{
+				spellUnlocked[i] = sse.unlocked;
+				spellIcons[i] = (sse.images != null) ? sse.images[0] : null;
+				spellMasteredIcons[i] = (sse.images != null) ? sse.images[1] : null;
+			}
+		}
+
+		gender = Character.gender;
+		transformAllowed = gamedata.transformAllowed;
+		genderSwapCD = Character.genderSwapCD;
+		genderSwapAnimating = Character.genderSwapAnimating;
+		genderSwapAnimStage = Character.genderSwapAnimStage;
+
+		ArrayList<SystemMessage> systemMessages = gamedata.systemMessages;
+		messageCount = 0;
+		for (int i = 0; (i < maxMessages) && (i < systemMessages.size()); i++)
+		{
+			SystemMessage sys = systemMessages.get(i);
+			messages[i] = sys.message;
+			messageColours[i] = sys.getColour();
+			messageCount++;
+		}
+
+		valid = true;
+	}
+
+}
+
+/**
+ * Class that holds a copy of everything needed to draw a single entity. See {@link WorldSnapshot}
+ * @author Lyeeedar
+ *
+ */
+class EntitySnapshot
+{
+	/**
+	 * Position at the end of the tick. X, Y, direction
+	 */
+	int x, y, dir;
+	/**
+	 * Position at the start of the tick. Used for interpolation
+	 */
+	int lastX, lastY;
+
+	int width, height;
+
+	/**
+	 * The top left corner of the current animation frame in the spritesheet
+	 */
+	int frameX, frameY;
+
+	BufferedImage spriteSheet;
+	boolean visible;
+	boolean damaged;
+	boolean alerted;
+	boolean isPlayer;
+
+	double health, maxHealth;
+	/**
+	 * Whether to draw a health bar above the entity (only for enemies)
+	 */
+	boolean showHealthBar;
+
+	int[] collisionShape = new int[4];
+
+	boolean talking;
+	/**
+	 * The current dialogue text, only valid if {@link EntitySnapshot#talking}
+	 */
+	String speech;
+	int speechType;
+	long talkingTimer;
+
+	String[] infoText = new String[4];
+	Color[] infoColour = new Color[4];
+	int[] infoAliveTime = new int[4];
+	int infoCount = 0;
+
+	/**
+	 * Method to copy the state of the given entity into this snapshot
+	 * @param e
+	 * @param captureSpeech
+	 */
+	void capture(Entity e, boolean captureSpeech)
+	{
+		int[] pos = e.getPos();
+		x = pos[0];
+		y = pos[1];
+		dir = pos[2];
+
+		int[] lastPos = e.getLastPos();
+		if (lastPos == null)
+		{
+			lastX = x;
+			lastY = y;
+		}
+		else
+		{
+			lastX = lastPos[0];
+			lastY = lastPos[1];
+		}
+
+		width = e.getSize()[0];
+		height = e.getSize()[1];
+		frameX = width*(e.getAnimateStage()-1);
+		frameY = height*(e.getAnimateStrip()-1);
+
+		spriteSheet = e.getSpriteSheet();
+		visible = e.isVisible();
+		damaged = e.getDamaged() > 0;
+		alerted = e.isAlerted();
+		isPlayer = e.getName().equals("Player");
+
+		health = e.getHealth();
+		maxHealth = e.getMaxHealth();
+		showHealthBar = (!isPlayer) && (! (e instanceof Spell)) && (! (e instanceof Item)) && (!(e.getFaction().equals("")));
+
+		int[] shape = e.getCollisionShape();
+		collisionShape[0] = shape[0];
+		collisionShape[1] = shape[1];
+		collisionShape[2] = shape[2];
+		collisionShape[3] = shape[3];
+
+		talking = false;
+		speech = null;
+		if (captureSpeech && e.isTalking())
+		{
+			String text = e.getDialogue().getText();
+
+			if (text == null)
+			{
+				e.setTalking(false);
+			}
+			else
+			{
+				talking = true;
+				speech = text;
+				speechType = e.getDialogue().getType();
+				talkingTimer = e.getTalkingTimer();
+			}
+		}
+
+		ArrayList<SystemMessage> info = e.getInfoText();
+		if (info.size() > infoText.length)
+		{
+			infoText = new String[info.size()];
+			infoColour = new Color[info.size()];
+			infoAliveTime = new int[info.size()];
+		}
+
+		infoCount = 0;
+		// An index loop, so no iterator is made for every entity every tick
+		for (int i = 0; i < info.size(); i++)
+		{
+			SystemMessage sysM = info.get(i);
+			infoText[infoCount] = sysM.message;
+			infoColour[infoCount] = sysM.colour;
+			infoAliveTime[infoCount] = sysM.aliveTime;
+			infoCount++;
+		}
+	}
+
+	/**
+	 * Returns the X position the entity should be drawn at
+	 * @param interpolation how far between the start (0) and the end (1) of the tick to draw the entity
+	 * @return
+	 */
+	int getRenderX(double interpolation)
+	{
+		return lastX + (int) Math.round((x - lastX) * interpolation);
+	}
+
+	/**
+	 * Returns the Y position the entity should be drawn at
+	 * @param interpolation how far between the start (0) and the end (1) of the tick to draw the entity
+	 * @return
+	 */
+	int getRenderY(double interpolation)
+	{
+		return lastY + (int) Math.round((y - lastY) * interpolation);
+	}
+}